@@ -12,6 +12,7 @@ package com.searchcode.app;
 
 import com.searchcode.app.config.Values;
 import com.searchcode.app.dao.Api;
+import com.searchcode.app.dao.Blame;
 import com.searchcode.app.dao.Data;
 import com.searchcode.app.dao.Repo;
 import com.searchcode.app.model.RepoResult;
@@ -55,6 +56,12 @@ public class App {
 
         Singleton.getJobService().initialJobs();
 
+        // Ensure anything indexed but not yet committed is written out when the process is stopped
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            Singleton.getJobService().stopIndexerJob();
+            Singleton.getCodeIndexer().closeIndexWriters();
+        }));
+
 
         ////////////////////////////////////////////////////
         //          Search/Code Routes Below
@@ -128,6 +135,12 @@ public class App {
                 return searchRouteService.codeSearch(request, response);
             }, new JsonTransformer());
 
+            get("/completion/", (request, response) -> {
+                addJsonHeaders(response);
+                SearchRouteService searchRouteService = new SearchRouteService();
+                return searchRouteService.completion(request, response);
+            }, new JsonTransformer());
+
             get("/timecodesearch/", (request, response) -> {
                 addJsonHeaders(response);
                 TimeSearchRouteService ars = new TimeSearchRouteService();
@@ -350,6 +363,7 @@ public class App {
             post("/resetspellingcorrector/", "application/json", (request, response) -> {
                 checkLoggedIn(request, response);
                 Singleton.getSpellingCorrector().reset();
+                Singleton.getSpellingCorrector().save();
                 return Values.EMPTYSTRING;
             }, new JsonTransformer());
 
@@ -423,9 +437,11 @@ public class App {
         Data data = Singleton.getData();
         Repo repo = Singleton.getRepo();
         Api api = Singleton.getApi();
+        Blame blame = Singleton.getBlame();
 
         data.createTableIfMissing();
         api.createTableIfMissing();
+        blame.createTableIfMissing();
         repo.createTableIfMissing();
         repo.addSourceToTable();
         repo.addBranchToTable();
@@ -59,8 +59,34 @@ public class Values {
     public static final String DEFAULTMAXDOCUMENTQUEUESIZE ="1000";
     public static final String MAXDOCUMENTQUEUELINESIZE = "max_document_queue_line_size";
     public static final String DEFAULTMAXDOCUMENTQUEUELINESIZE ="100000";
+    public static final String MAXDOCUMENTQUEUEBYTES = "max_document_queue_bytes";
+    public static final String DEFAULTMAXDOCUMENTQUEUEBYTES ="104857600";
     public static final String INDEX_QUEUE_BATCH_SIZE = "index_queue_batch_size";
     public static final String DEFAULT_INDEX_QUEUE_BATCH_SIZE ="1000";
+    public static final String INDEX_COMMIT_SECONDS = "index_commit_seconds";
+    public static final String DEFAULT_INDEX_COMMIT_SECONDS = "60";
+    public static final String INDEX_COMMIT_DOCUMENTS = "index_commit_documents";
+    public static final String DEFAULT_INDEX_COMMIT_DOCUMENTS = "10000";
+    public static final String INDEX_STORE_CONTENT = "index_store_content";
+    public static final String DEFAULT_INDEX_STORE_CONTENT = "false";
+    public static final String INDEX_CONTENT_OFFSETS = "index_content_offsets";
+    public static final String DEFAULT_INDEX_CONTENT_OFFSETS = "false";
+    public static final String INDEX_TRIGRAMS = "index_trigrams";
+    public static final String DEFAULT_INDEX_TRIGRAMS = "false";
+    public static final String INDEX_SHARDS = "index_shards";
+    public static final String DEFAULT_INDEX_SHARDS = "1";
+    public static final String INDEX_PER_REPOSITORY = "index_per_repository";
+    public static final String DEFAULT_INDEX_PER_REPOSITORY = "false";
+    public static final String SEARCH_CACHE_BYTES = "search_cache_bytes";
+    public static final String DEFAULT_SEARCH_CACHE_BYTES = "52428800";
+    public static final String FILTER_CACHE_BYTES = "filter_cache_bytes";
+    public static final String DEFAULT_FILTER_CACHE_BYTES = "33554432";
+    public static final String REGEX_TIMEOUT_MILLIS = "regex_timeout_millis";
+    public static final String DEFAULT_REGEX_TIMEOUT_MILLIS = "5000";
+    public static final String REGEX_MAX_CANDIDATES = "regex_max_candidates";
+    public static final String DEFAULT_REGEX_MAX_CANDIDATES = "10000";
+    public static final String SPELLING_CORRECTOR_LOCATION = "spelling_corrector_location";
+    public static final String DEFAULT_SPELLING_CORRECTOR_LOCATION = "./index/spelling/";
     public static final String MAXFILELINEDEPTH = "max_file_line_depth";
     public static final String DEFAULTMAXFILELINEDEPTH = "10000";
     public static final String OWASPDATABASELOCATION = "owasp_database_location";
@@ -85,6 +111,14 @@ public class Values {
     public static final String DEFAULT_NUMBER_SVN_PROCESSORS = "2";
     public static final String NUMBER_FILE_PROCESSORS = "number_file_processors";
     public static final String DEFAULT_NUMBER_FILE_PROCESSORS = "1";
+    public static final String NUMBER_GIT_INDEX_WORKERS = "number_git_index_workers";
+    public static final String DEFAULT_NUMBER_GIT_INDEX_WORKERS = "1";
+    public static final String NUMBER_SVN_INDEX_WORKERS = "number_svn_index_workers";
+    public static final String DEFAULT_NUMBER_SVN_INDEX_WORKERS = "1";
+    public static final String NUMBER_FILE_INDEX_WORKERS = "number_file_index_workers";
+    public static final String DEFAULT_NUMBER_FILE_INDEX_WORKERS = "1";
+    public static final String NUMBER_INDEXER_THREADS = "number_indexer_threads";
+    public static final String DEFAULT_NUMBER_INDEXER_THREADS = "2";
     public static final String AND_MATCH = "default_and_match";
     public static final String DEFAULT_AND_MATCH = "true";
     public static final String LOG_INDEXED = "log_indexed";
@@ -108,6 +142,8 @@ public class Values {
     public static final String FILELOCATION = "filelocation";
     public static final String FILELOCATIONFILENAME = "filelocationfilename";
     public static final String FILENAME = "filename";
+    public static final String FILENAMETERMS = "filenameterms"; // File name split into the identifiers inside it
+    public static final String PATHTERMS = "pathterms"; // Location and file name split into directories and identifiers
     public static final String LANGUAGENAME = "languagename";
     public static final String MD5HASH = "md5hash";
     public static final String CODELINES = "codelines";
@@ -122,6 +158,11 @@ public class Values {
     public static final String MESSAGE = "message"; // Contains git commit message
     public static final String DELETED = "deleted";
     public static final String CODEID = "codeid";
+    public static final String STOREDCONTENTS = "storedcontents"; // Original file contents when index_store_content is enabled
+    public static final String CONTENTOFFSETS = "contentoffsets"; // Original file contents tokenised with offsets when index_content_offsets is enabled
+    public static final String CONTENTTRIGRAMS = "contenttrigrams"; // Every three characters of the file contents when index_trigrams is enabled
+    public static final String FILESIZE = "filesize"; // Size on disk when indexed used to skip unchanged files
+    public static final String FILEMODIFIED = "filemodified"; // Modified time on disk when indexed used to skip unchanged files
 
     // Random
     public static final String USERSESSIONID = "admin_user";
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.10
+ */
+
+package com.searchcode.app.dao;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import com.searchcode.app.config.IDatabaseConfig;
+import com.searchcode.app.dto.CodeOwner;
+import com.searchcode.app.service.Singleton;
+import com.searchcode.app.util.Helpers;
+
+import java.lang.reflect.Type;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Provides access to the code owners worked out by blaming files in git repositories. Owners are stored
+ * against the git blob id of the file so they only need to be worked out again when the file changes.
+ */
+public class Blame implements IBlame {
+    private final Helpers helpers;
+    private final IDatabaseConfig dbConfig;
+    private final Gson gson = new Gson();
+    private final Type codeOwnerListType = new TypeToken<List<CodeOwner>>(){}.getType();
+
+    public Blame() {
+        this(Singleton.getDatabaseConfig(), Singleton.getHelpers());
+    }
+
+    public Blame(IDatabaseConfig dbConfig, Helpers helpers) {
+        this.dbConfig = dbConfig;
+        this.helpers = helpers;
+    }
+
+    /**
+     * Returns the owners for the file if they were saved for the same blob otherwise null
+     */
+    @Override
+    public synchronized List<CodeOwner> getCodeOwners(String repoName, String fileName, String blobId) {
+        List<CodeOwner> codeOwners = null;
+
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+
+        try {
+            connection = this.dbConfig.getConnection();
+            preparedStatement = connection.prepareStatement("select owners from \"blame\" where reponame = ? and filename = ? and blobid = ?;");
+            preparedStatement.setString(1, repoName);
+            preparedStatement.setString(2, fileName);
+            preparedStatement.setString(3, blobId);
+
+            resultSet = preparedStatement.executeQuery();
+
+            while (resultSet.next()) {
+                codeOwners = this.gson.fromJson(resultSet.getString("owners"), this.codeOwnerListType);
+            }
+        }
+        catch(SQLException | JsonSyntaxException ex) {
+            Singleton.getLogger().severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage() + " while trying to get owners for " + repoName + " " + fileName);
+        }
+        finally {
+            this.helpers.closeQuietly(resultSet);
+            this.helpers.closeQuietly(preparedStatement);
+        }
+
+        return codeOwners;
+    }
+
+    @Override
+    public synchronized void saveCodeOwners(String repoName, String fileName, String blobId, List<CodeOwner> codeOwners) {
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+
+        try {
+            connection = this.dbConfig.getConnection();
+            preparedStatement = connection.prepareStatement("INSERT OR REPLACE INTO \"blame\"(\"reponame\",\"filename\",\"blobid\",\"owners\") VALUES (?,?,?,?)");
+            preparedStatement.setString(1, repoName);
+            preparedStatement.setString(2, fileName);
+            preparedStatement.setString(3, blobId);
+            preparedStatement.setString(4, this.gson.toJson(codeOwners, this.codeOwnerListType));
+
+            preparedStatement.execute();
+        }
+        catch(SQLException ex) {
+            Singleton.getLogger().severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        }
+        finally {
+            this.helpers.closeQuietly(preparedStatement);
+        }
+    }
+
+    @Override
+    public synchronized void deleteByReponame(String repoName) {
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+
+        try {
+            connection = this.dbConfig.getConnection();
+            preparedStatement = connection.prepareStatement("delete from \"blame\" where reponame = ?;");
+            preparedStatement.setString(1, repoName);
+
+            preparedStatement.execute();
+        }
+        catch(SQLException ex) {
+            Singleton.getLogger().severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        }
+        finally {
+            this.helpers.closeQuietly(preparedStatement);
+        }
+    }
+
+    @Override
+    public synchronized void createTableIfMissing() {
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+
+        try {
+            connection = this.dbConfig.getConnection();
+            preparedStatement = connection.prepareStatement("SELECT name FROM sqlite_master WHERE type='table' AND name='blame';");
+
+            resultSet = preparedStatement.executeQuery();
+            String value = "";
+            while (resultSet.next()) {
+                value = resultSet.getString("name");
+            }
+
+            if (Singleton.getHelpers().isNullEmptyOrWhitespace(value)) {
+                preparedStatement = connection.prepareStatement("CREATE TABLE \"blame\" (\"reponame\" VARCHAR NOT NULL, \"filename\" VARCHAR NOT NULL, \"blobid\" VARCHAR NOT NULL, \"owners\" VARCHAR, PRIMARY KEY (\"reponame\", \"filename\"))");
+                preparedStatement.execute();
+            }
+        }
+        catch(SQLException ex) {
+            Singleton.getLogger().severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        }
+        finally {
+            this.helpers.closeQuietly(resultSet);
+            this.helpers.closeQuietly(preparedStatement);
+        }
+    }
+}
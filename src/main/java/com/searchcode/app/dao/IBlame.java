@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.10
+ */
+
+package com.searchcode.app.dao;
+
+import com.searchcode.app.dto.CodeOwner;
+
+import java.util.List;
+
+public interface IBlame {
+    List<CodeOwner> getCodeOwners(String repoName, String fileName, String blobId);
+    void saveCodeOwners(String repoName, String fileName, String blobId, List<CodeOwner> codeOwners);
+    void deleteByReponame(String repoName);
+    void createTableIfMissing();
+}
@@ -30,6 +30,8 @@ public class CodeIndexDocument {
     private String year;
     private String message;
     private String deleted; // Used for time filter to know when this entry was removed
+    private long fileSize = -1; // Size and modified time on disk if known used to skip unchanged files
+    private long fileModified = -1;
 
     public CodeIndexDocument() {}
 
@@ -189,4 +191,20 @@ public class CodeIndexDocument {
     public void setYear(String year) {
         this.year = year;
     }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public long getFileModified() {
+        return fileModified;
+    }
+
+    public void setFileModified(long fileModified) {
+        this.fileModified = fileModified;
+    }
 }
@@ -12,6 +12,7 @@ package com.searchcode.app.dto;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 // Holds a result after a search with full text
 // and metadata
@@ -34,12 +35,37 @@ public class CodeResult {
     public String deleted = "";
     public String message = "";
     public String codeId = "";
+    public transient Map<Integer, Integer> matchingLines = null; // Line number to number of terms matched when known from the index
 
     public CodeResult(List<String> code, List<CodeMatchResult>matchingResults) {
         this.setCode(code);
         this.setMatchingResults(matchingResults);
     }
 
+    /**
+     * Copies the result so it can be changed without affecting the original. The code and matches are shared.
+     */
+    public CodeResult(CodeResult codeResult) {
+        this(codeResult.code, codeResult.matchingResults);
+        this.filePath = codeResult.filePath;
+        this.codePath = codeResult.codePath;
+        this.fileName = codeResult.fileName;
+        this.fileLocation = codeResult.fileLocation;
+        this.md5hash = codeResult.md5hash;
+        this.languageName = codeResult.languageName;
+        this.codeLines = codeResult.codeLines;
+        this.documentId = codeResult.documentId;
+        this.repoName = codeResult.repoName;
+        this.repoLocation = codeResult.repoLocation;
+        this.codeOwner = codeResult.codeOwner;
+        this.revision = codeResult.revision;
+        this.yearMonthDay = codeResult.yearMonthDay;
+        this.deleted = codeResult.deleted;
+        this.message = codeResult.message;
+        this.codeId = codeResult.codeId;
+        this.matchingLines = codeResult.matchingLines;
+    }
+
     public List<String> getCode() {
         return code;
     }
@@ -183,4 +209,12 @@ public class CodeResult {
     public void setFilePath(String path) {
         this.filePath = path;
     }
+
+    public Map<Integer, Integer> getMatchingLines() {
+        return matchingLines;
+    }
+
+    public void setMatchingLines(Map<Integer, Integer> matchingLines) {
+        this.matchingLines = matchingLines;
+    }
 }
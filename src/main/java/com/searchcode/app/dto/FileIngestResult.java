@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.10
+ */
+
+package com.searchcode.app.dto;
+
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Everything the indexer needs from a file on disk produced from a single read of it
+ */
+public class FileIngestResult {
+    private final List<String> codeLines;
+    private final String md5Hash;
+    private final Charset charset;
+
+    public FileIngestResult(List<String> codeLines, String md5Hash, Charset charset) {
+        this.codeLines = codeLines;
+        this.md5Hash = md5Hash;
+        this.charset = charset;
+    }
+
+    public List<String> getCodeLines() {
+        return codeLines;
+    }
+
+    public String getMd5Hash() {
+        return md5Hash;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.10
+ */
+
+package com.searchcode.app.dto;
+
+/**
+ * What the index knows about a file as it was on disk when indexed
+ */
+public class FileManifestEntry {
+    private final String md5hash;
+    private final long fileSize;
+    private final long fileModified;
+
+    public FileManifestEntry(String md5hash, long fileSize, long fileModified) {
+        this.md5hash = md5hash;
+        this.fileSize = fileSize;
+        this.fileModified = fileModified;
+    }
+
+    public String getMd5hash() {
+        return md5hash;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public long getFileModified() {
+        return fileModified;
+    }
+
+    /**
+     * True if the file on disk has the same size and modified time as when it was indexed
+     */
+    public boolean isUnchanged(long fileSize, long fileModified) {
+        return this.fileSize != -1 && this.fileSize == fileSize && this.fileModified == fileModified;
+    }
+}
@@ -60,6 +60,7 @@ public class DeleteRepositoryJob implements Job {
 
             Singleton.getLogger().info("Deleting repository. " + rr.getName());
             Singleton.getCodeIndexer().deleteByReponame(rr.getName());
+            Singleton.getBlameService().deleteCodeOwners(rr.getName());
 
             // remove the directory
             String repoLocations = Properties.getProperties().getProperty(Values.REPOSITORYLOCATION, Values.DEFAULTREPOSITORYLOCATION);
@@ -0,0 +1,22 @@
+package com.searchcode.app.jobs;
+
+import com.searchcode.app.service.Singleton;
+import org.quartz.*;
+
+/**
+ * Rebuilds the query completions from any segments added to the index since they were last built. Does nothing
+ * if the index has not changed.
+ */
+@PersistJobDataAfterExecution
+@DisallowConcurrentExecution
+public class PopulateCompletionsJob implements Job {
+
+    public void execute(JobExecutionContext context) throws JobExecutionException {
+        if (Singleton.getBackgroundJobsEnabled() == false) {
+            return;
+        }
+
+        Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+        Singleton.getCompletionService().refresh();
+    }
+}
@@ -73,5 +73,8 @@ public class PopulateSpellingCorrectorJob implements Job {
         } catch (IOException ex) {
             Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() +  " PopulateSpellingCorrectorJob\n with message: " + ex.getMessage());
         }
+
+        // Keep what was found so corrections work straight after a restart
+        Singleton.getSpellingCorrector().save();
     }
 }
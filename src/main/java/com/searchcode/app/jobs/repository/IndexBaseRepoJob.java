@@ -15,12 +15,15 @@ import au.com.bytecode.opencsv.CSVWriter;
 import com.searchcode.app.config.Values;
 import com.searchcode.app.dto.BinaryFinding;
 import com.searchcode.app.dto.CodeIndexDocument;
+import com.searchcode.app.dto.FileIngestResult;
+import com.searchcode.app.dto.FileManifestEntry;
 import com.searchcode.app.dto.RepositoryChanged;
 import com.searchcode.app.dto.RunningIndexJob;
 import com.searchcode.app.model.RepoResult;
 import com.searchcode.app.service.CodeIndexer;
 import com.searchcode.app.service.CodeSearcher;
 import com.searchcode.app.service.Singleton;
+import com.searchcode.app.util.CodeIndexQueue;
 import com.searchcode.app.util.Properties;
 import com.searchcode.app.util.SearchcodeLib;
 import com.searchcode.app.util.UniqueRepoQueue;
@@ -91,6 +94,14 @@ public abstract class IndexBaseRepoJob implements Job {
         return true;
     }
 
+    /**
+     * This method can be implemented by extending class but is not required
+     * returns how many threads should be used to process files when walking a repository
+     */
+    public int getIndexWorkers() {
+        return 1;
+    }
+
     /**
      * This method can be implemented by extending class but is not required
      * as it requires project name at the front
@@ -246,7 +257,7 @@ public abstract class IndexBaseRepoJob implements Job {
      */
     public void indexDocsByDelta(Path path, String repoName, String repoLocations, String repoRemoteLocation, RepositoryChanged repositoryChanged) {
         SearchcodeLib scl = Singleton.getSearchCodeLib(); // Should have data object by this point
-        Queue<CodeIndexDocument> codeIndexDocumentQueue = Singleton.getCodeIndexQueue();
+        CodeIndexQueue codeIndexDocumentQueue = Singleton.getCodeIndexQueue();
         String fileRepoLocations = FilenameUtils.separatorsToUnix(repoLocations);
 
         // Used to hold the reports of what was indexed
@@ -276,7 +287,7 @@ public abstract class IndexBaseRepoJob implements Job {
                 break;
             }
 
-            String md5Hash = this.getFileMd5(changedFile);
+            String md5Hash = codeLinesReturn.getMd5Hash();
             String languageName = Singleton.getFileClassifier().languageGuesser(changedFile, codeLinesReturn.getCodeLines());
             String fileLocation = this.getRelativeToProjectPath(path.toString(), changedFile);
             String fileLocationFilename = changedFile.replace(fileRepoLocations, Values.EMPTYSTRING);
@@ -286,13 +297,17 @@ public abstract class IndexBaseRepoJob implements Job {
 
             if (this.LOWMEMORY) {
                 try {
-                    Singleton.getCodeIndexer().indexDocument(new CodeIndexDocument(repoLocationRepoNameLocationFilename, repoName, fileName, fileLocation, fileLocationFilename, md5Hash, languageName, codeLinesReturn.getCodeLines().size(), StringUtils.join(codeLinesReturn.getCodeLines(), " "), repoRemoteLocation, codeOwner));
+                    Singleton.getCodeIndexer().indexDocument(new CodeIndexDocument(repoLocationRepoNameLocationFilename, repoName, fileName, fileLocation, fileLocationFilename, md5Hash, languageName, codeLinesReturn.getCodeLines().size(), StringUtils.join(codeLinesReturn.getCodeLines(), "\n"), repoRemoteLocation, codeOwner));
                 } catch (IOException ex) {
                     Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() +  "\n with message: " + ex.getMessage());
                 }
             } else {
-                Singleton.incrementCodeIndexLinesCount(codeLinesReturn.getCodeLines().size());
-                codeIndexDocumentQueue.add(new CodeIndexDocument(repoLocationRepoNameLocationFilename, repoName, fileName, fileLocation, fileLocationFilename, md5Hash, languageName, codeLinesReturn.getCodeLines().size(), StringUtils.join(codeLinesReturn.getCodeLines(), " "), repoRemoteLocation, codeOwner));
+                try {
+                    codeIndexDocumentQueue.put(new CodeIndexDocument(repoLocationRepoNameLocationFilename, repoName, fileName, fileLocation, fileLocationFilename, md5Hash, languageName, codeLinesReturn.getCodeLines().size(), StringUtils.join(codeLinesReturn.getCodeLines(), "\n"), repoRemoteLocation, codeOwner));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
             }
 
             if (this.LOGINDEXED) {
@@ -309,7 +324,7 @@ public abstract class IndexBaseRepoJob implements Job {
             deletedFile = deletedFile.replace("//", "/");
             Singleton.getLogger().info("Missing from disk, removing from index " + deletedFile);
             try {
-                Singleton.getCodeIndexer().deleteByCodeId(DigestUtils.sha1Hex(deletedFile));
+                Singleton.getCodeIndexer().deleteByCodeId(repoName, DigestUtils.sha1Hex(deletedFile));
             } catch (IOException ex) {
                 Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() +  " indexDocsByDelta deleteByFileLocationFilename for " + repoName + " " + deletedFile + "\n with message: " + ex.getMessage());
             }
@@ -324,7 +339,14 @@ public abstract class IndexBaseRepoJob implements Job {
     public void indexDocsByPath(Path path, String repoName, String repoLocations, String repoRemoteLocation, boolean existingRepo) {
 
         String fileRepoLocations = FilenameUtils.separatorsToUnix(repoLocations);
-        SearchcodeFileVisitor<Path> searchcodeFileVisitor = new SearchcodeFileVisitor<>(this, repoName, fileRepoLocations, repoRemoteLocation);
+
+        // Anything already indexed for this repository and unchanged on disk does not need to be indexed again. The
+        // searchers are refreshed first as sizes and modified times recorded by the last walk do not refresh them
+        if (existingRepo) {
+            Singleton.getCodeIndexer().refreshSearchers();
+        }
+        Map<String, FileManifestEntry> manifest = existingRepo ? new CodeSearcher().getRepoManifest(repoName) : Collections.emptyMap();
+        SearchcodeFileVisitor<Path> searchcodeFileVisitor = new SearchcodeFileVisitor<>(this, repoName, fileRepoLocations, repoRemoteLocation, manifest);
 
         try {
             if (this.FOLLOWLINKS) {
@@ -337,6 +359,10 @@ public abstract class IndexBaseRepoJob implements Job {
         } catch (IOException ex) {
             Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() +  " indexDocsByPath walkFileTree\n with message: " + ex.getMessage());
         }
+        finally {
+            // Wait for the workers to finish as everything below depends on every file having been processed
+            searchcodeFileVisitor.awaitCompletion();
+        }
 
         if (this.LOGINDEXED) {
             logIndexed(repoName, searchcodeFileVisitor.reportList);
@@ -349,32 +375,26 @@ public abstract class IndexBaseRepoJob implements Job {
     }
 
     /**
-     * Method to remove from the index files that are no longer required
+     * Method to remove from the index files that are no longer required. Every path in the index for the
+     * repository is compared against what was found on disk and the missing ones are deleted in one batch.
      */
     public void cleanMissingPathFiles(CodeSearcher codeSearcher, String repoName, Map<String, String> fileLocations) {
-        int page = 0;
-        boolean doClean = true;
+        Set<String> indexLocations = codeSearcher.getRepoPaths(repoName);
+        List<String> missingLocations = new ArrayList<>();
 
-        while (doClean) {
-            List<String> indexLocations = codeSearcher.getRepoDocuments(repoName, page);
-            Singleton.getLogger().info("cleanMissingPathFiles doClean " + page + " " + indexLocations.size());
-
-            if (indexLocations.isEmpty()) {
-                doClean = false;
+        for (String file: indexLocations) {
+            if (!fileLocations.containsKey(file)) {
+                Singleton.getLogger().info("Missing from disk, removing from index " + file);
+                missingLocations.add(file);
             }
+        }
 
-            for (String file: indexLocations) {
-                if (!fileLocations.containsKey(file)) {
-                    Singleton.getLogger().info("Missing from disk, removing from index " + file);
-                    try {
-                        Singleton.getCodeIndexer().deleteByCodeId(DigestUtils.sha1Hex(file));
-                    } catch (IOException ex) {
-                        Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() + " indexDocsByPath deleteByFileLocationFilename for " + repoName + " " + file + "\n with message: " + ex.getMessage());
-                    }
-                }
-            }
+        Singleton.getLogger().info("cleanMissingPathFiles " + repoName + " indexed " + indexLocations.size() + " removing " + missingLocations.size());
 
-            page++;
+        try {
+            Singleton.getCodeIndexer().deleteByPaths(repoName, missingLocations);
+        } catch (IOException ex) {
+            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() + " cleanMissingPathFiles for " + repoName + "\n with message: " + ex.getMessage());
         }
     }
 
@@ -457,12 +477,18 @@ public abstract class IndexBaseRepoJob implements Job {
      * The below are shared between the delta updates and path walk
      */
 
+    /**
+     * Reads the file once returning its lines along with the MD5 of the file so it does not need to be read again
+     */
     public CodeLinesReturn getCodeLines(String changedFile, List<String[]> reportList) {
         List<String> codeLines = new ArrayList<>();
+        String md5Hash = Values.EMPTYSTRING;
         boolean error = false;
 
         try {
-            codeLines = Singleton.getHelpers().readFileLinesGuessEncoding(changedFile, this.MAXFILELINEDEPTH);
+            FileIngestResult fileIngestResult = Singleton.getHelpers().ingestFile(changedFile, this.MAXFILELINEDEPTH);
+            codeLines = fileIngestResult.getCodeLines();
+            md5Hash = fileIngestResult.getMd5Hash();
         } catch (IOException ex) {
             error = true;
             Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() +  "\n with message: " + ex.getMessage());
@@ -471,7 +497,7 @@ public abstract class IndexBaseRepoJob implements Job {
             }
         }
 
-        return new CodeLinesReturn(codeLines, reportList, error);
+        return new CodeLinesReturn(codeLines, md5Hash, reportList, error);
     }
 
     public IsMinifiedReturn getIsMinified(List<String> codeLines, String fileName, List<String[]> reportList) {
@@ -590,11 +616,13 @@ public abstract class IndexBaseRepoJob implements Job {
 
     public class CodeLinesReturn {
         private final List<String> codeLines;
+        private final String md5Hash;
         private final boolean error;
         private final List<String[]> reportList;
 
-        public CodeLinesReturn(List<String> codeLines, List<String[]> reportList, boolean error) {
+        public CodeLinesReturn(List<String> codeLines, String md5Hash, List<String[]> reportList, boolean error) {
             this.codeLines = codeLines;
+            this.md5Hash = md5Hash;
             this.reportList = reportList;
             this.error = error;
         }
@@ -603,6 +631,10 @@ public abstract class IndexBaseRepoJob implements Job {
             return codeLines;
         }
 
+        public String getMd5Hash() {
+            return md5Hash;
+        }
+
         public List<String[]> getReportList() {
             return reportList;
         }
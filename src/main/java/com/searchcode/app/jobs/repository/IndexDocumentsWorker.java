@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.10
+ */
+
+package com.searchcode.app.jobs.repository;
+
+import com.searchcode.app.service.CodeIndexer;
+import com.searchcode.app.service.Singleton;
+import com.searchcode.app.service.StatsService;
+import com.searchcode.app.util.CodeIndexQueue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs on its own thread for the life of the application passing documents from the queue to the indexer
+ * as soon as they are added. When there is nothing to index it wakes every wait period so that pending
+ * changes are still committed according to the commit policy.
+ */
+public class IndexDocumentsWorker implements Runnable {
+
+    private final CodeIndexQueue codeIndexQueue;
+    private final CodeIndexer codeIndexer;
+    private final long waitMillis;
+    private volatile boolean running = true;
+
+    public IndexDocumentsWorker(CodeIndexQueue codeIndexQueue, CodeIndexer codeIndexer, long waitMillis) {
+        this.codeIndexQueue = codeIndexQueue;
+        this.codeIndexer = codeIndexer;
+        this.waitMillis = waitMillis;
+    }
+
+    @Override
+    public void run() {
+        while (this.running) {
+            try {
+                if (Singleton.getBackgroundJobsEnabled() == false) {
+                    Thread.sleep(this.waitMillis);
+                    continue;
+                }
+
+                if (this.codeIndexQueue.awaitNotEmpty(this.waitMillis, TimeUnit.MILLISECONDS)) {
+                    StatsService statsService = Singleton.getStatsService();
+                    Singleton.getLogger().info("Documents to index: " + this.codeIndexQueue.size());
+                    Singleton.getLogger().info("Lines to index: " + this.codeIndexQueue.getQueueLines());
+                    Singleton.getLogger().info("Bytes to index: " + this.codeIndexQueue.getQueueBytes());
+                    Singleton.getLogger().info("Memory Usage: " + statsService.getMemoryUsage(", "));
+                    this.codeIndexer.indexDocuments(this.codeIndexQueue);
+                }
+                else {
+                    // Nothing to index so make sure anything pending is committed according to the policy
+                    this.codeIndexer.maybeCommit();
+                }
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (Exception ex) {
+                // Continue at all costs
+                Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() +  "\n with message: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops the worker after the batch it is indexing is finished. It is not interrupted as that can
+     * close the files the index writer is working on.
+     */
+    public void shutdown() {
+        this.running = false;
+    }
+}
@@ -17,6 +17,7 @@ import com.searchcode.app.model.RepoResult;
 import com.searchcode.app.service.CodeIndexer;
 import com.searchcode.app.service.Singleton;
 import com.searchcode.app.util.Helpers;
+import com.searchcode.app.util.Properties;
 import com.searchcode.app.util.SearchcodeLib;
 import com.searchcode.app.util.UniqueRepoQueue;
 import org.quartz.*;
@@ -106,6 +107,11 @@ public class IndexFileRepoJob extends IndexBaseRepoJob {
         return this.repoName + fileToString.replace(fileRepoLocations, Values.EMPTYSTRING);
     }
 
+    @Override
+    public int getIndexWorkers() {
+        return Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.NUMBER_FILE_INDEX_WORKERS, Values.DEFAULT_NUMBER_FILE_INDEX_WORKERS), Values.DEFAULT_NUMBER_FILE_INDEX_WORKERS);
+    }
+
     @Override
     public UniqueRepoQueue getNextQueuedRepo() {
         return Singleton.getUniqueFileRepoQueue();
@@ -16,6 +16,7 @@ package com.searchcode.app.jobs.repository;
 import com.searchcode.app.config.Values;
 import com.searchcode.app.dto.CodeOwner;
 import com.searchcode.app.dto.RepositoryChanged;
+import com.searchcode.app.service.BlameService;
 import com.searchcode.app.service.Singleton;
 import com.searchcode.app.util.Helpers;
 import com.searchcode.app.util.Properties;
@@ -81,18 +82,49 @@ public class IndexGitRepoJob extends IndexBaseRepoJob {
         return this.cloneGitRepository(repoName, repoRemoteLocation, repoUserName, repoPassword, repoLocations, repoBranch, useCredentials);
     }
 
+    @Override
+    public int getIndexWorkers() {
+        return Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.NUMBER_GIT_INDEX_WORKERS, Values.DEFAULT_NUMBER_GIT_INDEX_WORKERS), Values.DEFAULT_NUMBER_GIT_INDEX_WORKERS);
+    }
+
     @Override
     public UniqueRepoQueue getNextQueuedRepo() {
         return Singleton.getUniqueGitRepoQueue();
     }
 
+    /**
+     * Makes sure the repository held open for blaming is released once the run is finished
+     */
+    @Override
+    public void updateIndex(String repoName, String repoLocations, String repoRemoteLocation, boolean existingRepo, RepositoryChanged repositoryChanged) {
+        try {
+            super.updateIndex(repoName, repoLocations, repoRemoteLocation, existingRepo, repositoryChanged);
+        }
+        finally {
+            Singleton.getBlameService().closeRepository(repoName);
+        }
+    }
+
+    /**
+     * Owners are only worked out for files whose blob has not been blamed before
+     */
     @Override
     public String getCodeOwner(List<String> codeLines, String newString, String repoName, String fileRepoLocations, SearchcodeLib scl) {
-        List<CodeOwner> owners;
-        if (this.USESYSTEMGIT) {
-            owners = this.getBlameInfoExternal(codeLines.size(), repoName, fileRepoLocations, newString);
-        } else {
-            owners = this.getBlameInfo(codeLines.size(), repoName, fileRepoLocations, newString);
+        BlameService blameService = Singleton.getBlameService();
+        String blobId = blameService.getBlobId(repoName, fileRepoLocations, newString);
+        List<CodeOwner> owners = blameService.getCodeOwners(repoName, newString, blobId);
+
+        if (owners == null) {
+            if (this.USESYSTEMGIT) {
+                owners = this.getBlameInfoExternal(codeLines.size(), repoName, fileRepoLocations, newString);
+            } else {
+                owners = this.getBlameInfo(codeLines.size(), repoName, fileRepoLocations, newString);
+            }
+
+            // Blame returns no owners when it fails, which is not worth remembering as it would stick until the file changes
+            if (!owners.isEmpty()) {
+                blameService.saveCodeOwners(repoName, newString, blobId, owners);
+            }
         }
 
         return scl.codeOwner(owners);
@@ -196,8 +228,7 @@ public class IndexGitRepoJob extends IndexBaseRepoJob {
     }
 
     /**
-     * Uses the inbuilt git
-     * TODO this method appears to leak memory like crazy... need to investigate
+     * Uses the inbuilt git with the repository held open by the blame service for this run
      * TODO lots of hairy bits in here need tests to capture issues
      */
     public List<CodeOwner> getBlameInfo(int codeLinesSize, String repoName, String repoLocations, String fileName) {
@@ -207,7 +238,7 @@ public class IndexGitRepoJob extends IndexBaseRepoJob {
             // This appears to be correct
             String repoLoc = repoLocations + "/" + repoName + "/.git";
 
-            Repository localRepository = new FileRepository(new File(repoLoc));
+            Repository localRepository = Singleton.getBlameService().getRepository(repoName, repoLocations);
             BlameCommand blamer = new BlameCommand(localRepository);
 
             ObjectId commitID = localRepository.resolve("HEAD");
@@ -288,7 +319,6 @@ public class IndexGitRepoJob extends IndexBaseRepoJob {
             Singleton.getLogger().info("IllegalArgumentException getBlameInfo when trying to get blame for " + repoName + " " + fileName + " " + ex.toString());
         }
 
-        System.gc(); // Try to clean up
         return codeOwners;
     }
 
@@ -68,6 +68,11 @@ public class IndexSvnRepoJob extends IndexBaseRepoJob {
         return this.checkoutSvnRepository(repoName, repoRemoteLocation, repoUserName, repoPassword, repoLocations, useCredentials);
     }
 
+    @Override
+    public int getIndexWorkers() {
+        return Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.NUMBER_SVN_INDEX_WORKERS, Values.DEFAULT_NUMBER_SVN_INDEX_WORKERS), Values.DEFAULT_NUMBER_SVN_INDEX_WORKERS);
+    }
+
     @Override
     public UniqueRepoQueue getNextQueuedRepo() {
         return Singleton.getUniqueSvnRepoQueue();
@@ -2,6 +2,7 @@ package com.searchcode.app.jobs.repository;
 
 import com.searchcode.app.config.Values;
 import com.searchcode.app.dto.CodeIndexDocument;
+import com.searchcode.app.dto.FileManifestEntry;
 import com.searchcode.app.service.Singleton;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -11,24 +12,51 @@ import java.nio.file.FileVisitResult;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
-
-
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Walks the repository discovering files to index. When the job is configured with more than one index worker
+ * the walking thread only discovers paths and hands them to a bounded pool of workers which read, classify, hash
+ * and blame each file. When the pool is full the walking thread processes the file itself which stops discovery
+ * racing ahead of the workers. Call awaitCompletion once the walk has finished.
+ */
 public class SearchcodeFileVisitor<Path> extends SimpleFileVisitor<Path> {
 
     private final IndexBaseRepoJob indexBaseRepoJob;
     private final String repoName;
     private final String fileRepoLocations;
     private final String repoRemoteLocation;
+    private final Map<String, FileManifestEntry> manifest;
+
+    private ExecutorService executorService = null;
 
     // Used to hold the reports of what was indexed and what needs to be removed
-    public List<String[]> reportList = new ArrayList<>();
-    public Map<String, String> fileLocationsMap = new HashMap<>();
+    // synchronized as they can be modified by the index workers
+    public List<String[]> reportList = Collections.synchronizedList(new ArrayList<>());
+    public Map<String, String> fileLocationsMap = Collections.synchronizedMap(new HashMap<>());
 
     public SearchcodeFileVisitor(IndexBaseRepoJob indexBaseRepoJob, String repoName, String fileRepoLocations, String repoRemoteLocation) {
+        this(indexBaseRepoJob, repoName, fileRepoLocations, repoRemoteLocation, Collections.emptyMap());
+    }
+
+    /**
+     * The manifest is what the index already holds for this repository, files matching it are not indexed again
+     */
+    public SearchcodeFileVisitor(IndexBaseRepoJob indexBaseRepoJob, String repoName, String fileRepoLocations, String repoRemoteLocation, Map<String, FileManifestEntry> manifest) {
         this.indexBaseRepoJob = indexBaseRepoJob;
         this.repoName = repoName;
         this.fileRepoLocations = fileRepoLocations;
         this.repoRemoteLocation = repoRemoteLocation;
+        this.manifest = manifest;
+
+        int indexWorkers = indexBaseRepoJob.getIndexWorkers();
+        if (indexWorkers > 1) {
+            this.executorService = new ThreadPoolExecutor(indexWorkers, indexWorkers, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(indexWorkers * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+        }
     }
 
     @Override
@@ -59,53 +87,118 @@ public class SearchcodeFileVisitor<Path> extends SimpleFileVisitor<Path> {
             // This needs to be the primary key of the file
             fileLocationsMap.put(repoLocationRepoNameLocationFilename, null);
 
+            // Same size and modified time as when it was indexed so nothing to do beyond the stat
+            long fileSize = attrs.size();
+            long fileModified = attrs.lastModifiedTime().toMillis();
+            FileManifestEntry manifestEntry = this.manifest.get(repoLocationRepoNameLocationFilename);
+
+            if (manifestEntry != null && manifestEntry.isUnchanged(fileSize, fileModified)) {
+                if (this.indexBaseRepoJob.LOGINDEXED) {
+                    reportList.add(new String[]{fileToString, "unchanged", "size and modified time match index"});
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            if (this.executorService == null) {
+                this.processFile(filePath, fileToString, fileName, repoLocationRepoNameLocationFilename, manifestEntry, fileSize, fileModified);
+            }
+            else {
+                this.executorService.execute(() -> this.processFile(filePath, fileToString, fileName, repoLocationRepoNameLocationFilename, manifestEntry, fileSize, fileModified));
+            }
+        }
+        catch(Exception ex) {
+            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() + " indexDocsByPath walkFileTree\n with message: " + ex.getMessage() + " for file " + file.toString() + " in path " + file + " in repo " + this.repoName);
+        }
 
+        // Continue at all costs
+        return FileVisitResult.CONTINUE;
+    }
+
+    /**
+     * Does the reading, checking, classifying, hashing and blaming of a single file and then passes it along
+     * to be indexed. Runs on the index workers if there are any otherwise on the walking thread.
+     */
+    private void processFile(java.nio.file.Path filePath, String fileToString, String fileName, String repoLocationRepoNameLocationFilename, FileManifestEntry manifestEntry, long fileSize, long fileModified) {
+        try {
             IndexBaseRepoJob.CodeLinesReturn codeLinesReturn = this.indexBaseRepoJob.getCodeLines(fileToString, reportList);
             if (codeLinesReturn.isError()) {
                 fileLocationsMap.remove(repoLocationRepoNameLocationFilename);
-                return FileVisitResult.CONTINUE;
+                return;
+            }
+
+            // Touched but the contents are what was indexed so skip classifying, blaming and indexing it. The new size
+            // and modified time are recorded so the next walk can skip it without reading it again
+            if (manifestEntry != null && codeLinesReturn.getMd5Hash().equals(manifestEntry.getMd5hash())
+                    && Singleton.getCodeIndexer().updateFileStat(this.repoName, repoLocationRepoNameLocationFilename, fileSize, fileModified)) {
+                if (this.indexBaseRepoJob.LOGINDEXED) {
+                    reportList.add(new String[]{fileToString, "unchanged", "hash matches index"});
+                }
+                return;
             }
 
 
             IndexBaseRepoJob.IsMinifiedReturn isMinified = this.indexBaseRepoJob.getIsMinified(codeLinesReturn.getCodeLines(), fileName, reportList);
-            if (isMinified.isMinified()) { return FileVisitResult.CONTINUE; }
+            if (isMinified.isMinified()) { return; }
 
 
             if (this.indexBaseRepoJob.checkIfEmpty(codeLinesReturn.getCodeLines(), fileName, reportList)) {
-                return FileVisitResult.CONTINUE;
+                return;
             }
 
 
             if (this.indexBaseRepoJob.determineBinary(fileToString, fileName, codeLinesReturn.getCodeLines(), reportList)) {
                 fileLocationsMap.remove(repoLocationRepoNameLocationFilename);
-                return FileVisitResult.CONTINUE;
+                return;
             }
 
-            String md5Hash = this.indexBaseRepoJob.getFileMd5(fileToString);
+            String md5Hash = codeLinesReturn.getMd5Hash();
             String languageName = Singleton.getFileClassifier().languageGuesser(fileName, codeLinesReturn.getCodeLines());
-            String fileLocation = this.indexBaseRepoJob.getRelativeToProjectPath(file.toString(), fileToString);
+            String fileLocation = this.indexBaseRepoJob.getRelativeToProjectPath(filePath.toString(), fileToString);
             String fileLocationFilename = this.indexBaseRepoJob.getFileLocationFilename(fileToString, fileRepoLocations);
             String newString = this.indexBaseRepoJob.getBlameFilePath(fileLocationFilename);
             String codeOwner = this.indexBaseRepoJob.getCodeOwner(codeLinesReturn.getCodeLines(), newString, this.repoName, fileRepoLocations, Singleton.getSearchCodeLib());
 
+            CodeIndexDocument codeIndexDocument = new CodeIndexDocument(repoLocationRepoNameLocationFilename, this.repoName, fileName, fileLocation, fileLocationFilename, md5Hash, languageName, codeLinesReturn.getCodeLines().size(), StringUtils.join(codeLinesReturn.getCodeLines(), "\n"), repoRemoteLocation, codeOwner);
+            codeIndexDocument.setFileSize(fileSize);
+            codeIndexDocument.setFileModified(fileModified);
+
             if (this.indexBaseRepoJob.LOWMEMORY) {
-                Singleton.getCodeIndexer().indexDocument(new CodeIndexDocument(repoLocationRepoNameLocationFilename, this.repoName, fileName, fileLocation, fileLocationFilename, md5Hash, languageName, codeLinesReturn.getCodeLines().size(), StringUtils.join(codeLinesReturn.getCodeLines(), " "), repoRemoteLocation, codeOwner));
+                Singleton.getCodeIndexer().indexDocument(codeIndexDocument);
 
             } else {
-                Singleton.incrementCodeIndexLinesCount(codeLinesReturn.getCodeLines().size());
-                Singleton.getCodeIndexQueue().add(new CodeIndexDocument(repoLocationRepoNameLocationFilename, this.repoName, fileName, fileLocation, fileLocationFilename, md5Hash, languageName, codeLinesReturn.getCodeLines().size(), StringUtils.join(codeLinesReturn.getCodeLines(), " "), repoRemoteLocation, codeOwner));
+                // Blocks until the indexer has made room which throttles the walk to the speed of indexing
+                Singleton.getCodeIndexQueue().put(codeIndexDocument);
             }
 
             if (this.indexBaseRepoJob.LOGINDEXED) {
                 reportList.add(new String[]{fileToString, "included", Values.EMPTYSTRING});
             }
         }
+        catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
         catch(Exception ex) {
-            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() + " indexDocsByPath walkFileTree\n with message: " + ex.getMessage() + " for file " + file.toString() + " in path " + file + " in repo " + this.repoName);
+            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in " + this.getClass() + " indexDocsByPath processFile\n with message: " + ex.getMessage() + " for file " + fileToString + " in repo " + this.repoName);
         }
+    }
 
-        // Continue at all costs
-        return FileVisitResult.CONTINUE;
+    /**
+     * Blocks until every file handed to the index workers has been processed
+     */
+    public void awaitCompletion() {
+        if (this.executorService == null) {
+            return;
+        }
+
+        this.executorService.shutdown();
+
+        try {
+            this.executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException ex) {
+            this.executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
     }
 
     @Override
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.10
+ */
+
+package com.searchcode.app.service;
+
+import com.searchcode.app.dao.IBlame;
+import com.searchcode.app.dto.CodeOwner;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps each git repository open for the length of an index run so that blaming every file does not open
+ * the repository again, and saves the owners found for each file against its blob id so that files which
+ * have not changed are never blamed again, including across restarts and full rebuilds of the index.
+ */
+public class BlameService {
+
+    private final IBlame blame;
+    private final Map<String, Repository> repositories = new HashMap<>();
+    private final Map<String, ObjectId> headTrees = new HashMap<>();
+
+    public BlameService() {
+        this(Singleton.getBlame());
+    }
+
+    public BlameService(IBlame blame) {
+        this.blame = blame;
+    }
+
+    /**
+     * Returns the open repository for this repository name opening it if this is the first request this run
+     */
+    public synchronized Repository getRepository(String repoName, String repoLocations) throws IOException {
+        Repository repository = this.repositories.get(repoName);
+
+        if (repository == null) {
+            // The / part is required due to centos bug for version 1.1.1
+            repository = new FileRepository(new File(repoLocations + "/" + repoName + "/.git"));
+            this.repositories.put(repoName, repository);
+        }
+
+        return repository;
+    }
+
+    /**
+     * Should be called once the index run for the repository is finished
+     */
+    public synchronized void closeRepository(String repoName) {
+        Repository repository = this.repositories.remove(repoName);
+        this.headTrees.remove(repoName);
+
+        if (repository != null) {
+            Singleton.getHelpers().closeQuietly(repository);
+        }
+    }
+
+    /**
+     * Returns the git blob id of the file at HEAD or null if it cannot be found. The file name is expected
+     * to be prefixed with the repository name as it is when passed in for blaming.
+     */
+    public String getBlobId(String repoName, String repoLocations, String fileName) {
+        String relativePath = fileName.startsWith(repoName + "/") ? fileName.substring(repoName.length() + 1) : fileName;
+
+        try {
+            Repository repository = this.getRepository(repoName, repoLocations);
+            ObjectId headTree = this.getHeadTree(repoName, repository);
+
+            if (headTree == null) {
+                return null;
+            }
+
+            TreeWalk treeWalk = TreeWalk.forPath(repository, relativePath, headTree);
+
+            if (treeWalk == null) {
+                return null;
+            }
+
+            try {
+                return treeWalk.getObjectId(0).getName();
+            }
+            finally {
+                treeWalk.close();
+            }
+        }
+        catch (IOException | IllegalArgumentException ex) {
+            Singleton.getLogger().info("Unable to get blob id for " + repoName + " " + fileName + " " + ex.toString());
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the previously saved owners for the file if it has not changed since or null if it needs to be blamed
+     */
+    public List<CodeOwner> getCodeOwners(String repoName, String fileName, String blobId) {
+        if (blobId == null) {
+            return null;
+        }
+
+        return this.blame.getCodeOwners(repoName, fileName, blobId);
+    }
+
+    public void saveCodeOwners(String repoName, String fileName, String blobId, List<CodeOwner> codeOwners) {
+        if (blobId == null) {
+            return;
+        }
+
+        this.blame.saveCodeOwners(repoName, fileName, blobId, codeOwners);
+    }
+
+    public void deleteCodeOwners(String repoName) {
+        this.blame.deleteByReponame(repoName);
+    }
+
+    /**
+     * HEAD does not move during an index run so the tree is only resolved once per run
+     */
+    private synchronized ObjectId getHeadTree(String repoName, Repository repository) throws IOException {
+        ObjectId headTree = this.headTrees.get(repoName);
+
+        if (headTree == null) {
+            ObjectId head = repository.resolve("HEAD");
+
+            if (head == null) {
+                return null;
+            }
+
+            RevWalk revWalk = new RevWalk(repository);
+            try {
+                RevCommit commit = revWalk.parseCommit(head);
+                headTree = commit.getTree().getId();
+            }
+            finally {
+                revWalk.close();
+            }
+
+            this.headTrees.put(repoName, headTree);
+        }
+
+        return headTree;
+    }
+}
@@ -14,37 +14,141 @@ import com.searchcode.app.config.Values;
 import com.searchcode.app.dao.Data;
 import com.searchcode.app.dto.CodeIndexDocument;
 import com.searchcode.app.util.CodeAnalyzer;
+import com.searchcode.app.util.CodeIndexAnalyzer;
+import com.searchcode.app.util.CodeOffsetsAnalyzer;
+import com.searchcode.app.util.CodeSymbolAnalyzer;
+import com.searchcode.app.util.CodeTrigramAnalyzer;
 import com.searchcode.app.util.Properties;
 import com.searchcode.app.util.SearchcodeLib;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat;
+import org.apache.lucene.codecs.lucene54.Lucene54Codec;
 import org.apache.lucene.document.*;
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
 import org.apache.lucene.facet.taxonomy.TaxonomyWriter;
 import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
 
 import java.io.IOException;
+import java.io.File;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Responsible for dealing with any updates to the index be they inserts updates or deletes.
- * The main reason for this single entry point is that all methods are synchronized and static
+ * The main reason for this single entry point is that deletes and commits are synchronized here
+ * while documents can be indexed from any number of threads against the same shared writers
  */
 public class CodeIndexer {
 
     private static int MAX_INDEX_SIZE = Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.MAXDOCUMENTQUEUESIZE, Values.DEFAULTMAXDOCUMENTQUEUESIZE), Values.DEFAULTMAXDOCUMENTQUEUESIZE);
     private static int MAX_LINES_INDEX_SIZE = Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.MAXDOCUMENTQUEUELINESIZE, Values.DEFAULTMAXDOCUMENTQUEUELINESIZE), Values.DEFAULTMAXDOCUMENTQUEUELINESIZE);
     private static int INDEX_QUEUE_BATCH_SIZE = Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.INDEX_QUEUE_BATCH_SIZE, Values.DEFAULT_INDEX_QUEUE_BATCH_SIZE), Values.DEFAULT_INDEX_QUEUE_BATCH_SIZE);
+    private static int INDEX_COMMIT_SECONDS = Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.INDEX_COMMIT_SECONDS, Values.DEFAULT_INDEX_COMMIT_SECONDS), Values.DEFAULT_INDEX_COMMIT_SECONDS);
+    private static int INDEX_COMMIT_DOCUMENTS = Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.INDEX_COMMIT_DOCUMENTS, Values.DEFAULT_INDEX_COMMIT_DOCUMENTS), Values.DEFAULT_INDEX_COMMIT_DOCUMENTS);
+    private static boolean INDEX_STORE_CONTENT = Boolean.parseBoolean(Properties.getProperties().getProperty(Values.INDEX_STORE_CONTENT, Values.DEFAULT_INDEX_STORE_CONTENT));
+    private static boolean INDEX_CONTENT_OFFSETS = Boolean.parseBoolean(Properties.getProperties().getProperty(Values.INDEX_CONTENT_OFFSETS, Values.DEFAULT_INDEX_CONTENT_OFFSETS));
+    private static boolean INDEX_TRIGRAMS = Boolean.parseBoolean(Properties.getProperties().getProperty(Values.INDEX_TRIGRAMS, Values.DEFAULT_INDEX_TRIGRAMS));
+    private static int INDEX_SHARDS = Math.max(1, Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.INDEX_SHARDS, Values.DEFAULT_INDEX_SHARDS), Values.DEFAULT_INDEX_SHARDS));
+    private static boolean INDEX_PER_REPOSITORY = Boolean.parseBoolean(Properties.getProperties().getProperty(Values.INDEX_PER_REPOSITORY, Values.DEFAULT_INDEX_PER_REPOSITORY));
+    private static int FILTER_CACHE_BYTES = Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.FILTER_CACHE_BYTES, Values.DEFAULT_FILTER_CACHE_BYTES), Values.DEFAULT_FILTER_CACHE_BYTES);
+
+    // Shared by every searcher so the documents matching a filter are kept for each segment across refreshes
+    // and only dropped once the segment itself is merged away or deleted
+    private static final LRUQueryCache FILTER_CACHE = new LRUQueryCache(1000, Math.max(0, FILTER_CACHE_BYTES));
+    private static final QueryCachingPolicy FILTER_CACHING_POLICY = new FilterCachingPolicy();
+    private static final SearcherFactory SEARCHER_FACTORY = new SearcherFactory() {
+        @Override
+        public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) {
+            return CodeIndexer.newSearcher(reader, null);
+        }
+    };
+
+    // Directory inside the index location holding the index of each repository when indexing per repository
+    private static final String REPOSITORY_INDEX_DIRECTORY = "repository";
+
+    // Term vectors with offsets let the searcher find which lines of the stored contents matched
+    private static final FieldType CONTENT_OFFSETS_TYPE = new FieldType(TextField.TYPE_NOT_STORED);
+    static {
+        CONTENT_OFFSETS_TYPE.setStoreTermVectors(true);
+        CONTENT_OFFSETS_TYPE.setStoreTermVectorOffsets(true);
+        CONTENT_OFFSETS_TYPE.freeze();
+    }
+
+    // Trigrams are only used to find which files may contain some text so frequencies, positions and norms are left out
+    private static final FieldType CONTENT_TRIGRAMS_TYPE = new FieldType();
+    static {
+        CONTENT_TRIGRAMS_TYPE.setIndexOptions(IndexOptions.DOCS);
+        CONTENT_TRIGRAMS_TYPE.setTokenized(true);
+        CONTENT_TRIGRAMS_TYPE.setOmitNorms(true);
+        CONTENT_TRIGRAMS_TYPE.freeze();
+    }
+
+    // Writers are opened lazily and held for the lifetime of the process as opening them
+    // requires acquiring the write lock and closing them forces a full commit
+    // One writer for each shard of the main index keyed by its directory inside the index location, with a single
+    // shard it is the whole index
+    private final Map<String, IndexWriter> indexWriters = new TreeMap<>();
+    // When indexing per repository writers which have not been used for a while are closed, see closeIdleIndexWriters
+    private final Map<String, Long> indexWritersLastUsed = new HashMap<>();
+    private TaxonomyWriter taxonomyWriter = null;
+    private IndexWriter timeIndexWriter = null;
+    private TaxonomyWriter timeTaxonomyWriter = null;
+
+    // Searchers are pooled off the writers so queries reuse warmed readers and only see a new reader after a refresh
+    private ReferenceManager<IndexSearcher> searcherManager = null;
+    private SearcherManager timeSearcherManager = null;
+
+    // Separate from the instance lock so that searchers can get the writer while a batch is being indexed
+    private final Object writerLock = new Object();
+
+    // Any number of threads can index at once holding the read lock, closing the writers waits for them to finish
+    private final ReentrantReadWriteLock indexingLock = new ReentrantReadWriteLock();
+
+    private final AtomicInteger flushCount = new AtomicInteger(0);
+    private int commitCount = 0;
+    private final AtomicInteger documentsSinceCommit = new AtomicInteger(0);
+    private long lastCommitTime = System.currentTimeMillis();
+
+    // Changes every time the main index searchers change so anything cached from a search can tell it is stale
+    private final AtomicLong searcherGeneration = new AtomicLong(0);
 
     /**
      * Returns true if indexing should be paused, false otherwise
@@ -61,7 +165,7 @@ public class CodeIndexer {
         }
 
         int indexQueueSize = Singleton.getCodeIndexQueue().size();
-        int codeIndexLinesCount = Singleton.getCodeIndexLinesCount();
+        long codeIndexLinesCount = Singleton.getCodeIndexQueue().getQueueLines();
 
         if (indexQueueSize > MAX_INDEX_SIZE) {
             Singleton.getLogger().info("indexQueueSize " + indexQueueSize + " larger then " + MAX_INDEX_SIZE);
@@ -100,20 +204,64 @@ public class CodeIndexer {
     }
 
     /**
-     * Deletes all files that belong to a repository.
+     * Deletes all files that belong to a repository. They are all in the shard the repository name hashes to
+     * so only that shard needs to be touched. When indexing per repository the whole index of the repository
+     * is dropped instead.
      * TODO I don't think this clears anything from the facets, which it should
      */
-    public synchronized void deleteByReponame(String repoName) throws IOException {
-        Directory dir = FSDirectory.open(Paths.get(Properties.getProperties().getProperty(Values.INDEXLOCATION, Values.DEFAULTINDEXLOCATION)));
+    public void deleteByReponame(String repoName) throws IOException {
+        if (INDEX_PER_REPOSITORY) {
+            this.dropRepositoryIndex(repoName);
+            return;
+        }
+
+        synchronized (this) {
+            IndexWriter writer = this.getIndexWriter(this.getShard(repoName));
+
+            writer.deleteDocuments(new Term(Values.REPONAME, repoName));
+            this.documentsSinceCommit.incrementAndGet();
+            this.maybeCommit();
+            this.refreshSearchers();
+        }
+    }
+
+    /**
+     * Removes the index of a repository by deleting its directory which unlike deleting its documents leaves
+     * nothing behind to be merged away. Waits for any batches being indexed to finish first. Searches already
+     * running keep using the files they have open.
+     */
+    private void dropRepositoryIndex(String repoName) throws IOException {
+        String shard = this.getShard(repoName);
+        IndexWriter writer;
+        ReferenceManager<IndexSearcher> searcherManager;
+
+        this.indexingLock.writeLock().lock();
+
+        try {
+            synchronized (this) {
+                synchronized (this.writerLock) {
+                    writer = this.indexWriters.remove(shard);
+                    this.indexWritersLastUsed.remove(shard);
+                    searcherManager = this.searcherManager;
+                }
 
-        Analyzer analyzer = new CodeAnalyzer();
-        IndexWriterConfig iwc = new IndexWriterConfig(analyzer);
-        iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+                // Nothing written to it needs to be kept so there is no point committing
+                if (writer != null) {
+                    writer.rollback();
+                }
 
-        IndexWriter writer = new IndexWriter(dir, iwc);
+                FileUtils.deleteDirectory(this.getShardPath(shard).toFile());
 
-        writer.deleteDocuments(new Term(Values.REPONAME, repoName));
-        writer.close();
+                // New searches no longer see the repository once its directory is gone, searches already running
+                // keep using the files they have open
+                if (searcherManager != null) {
+                    searcherManager.maybeRefreshBlocking();
+                }
+            }
+        }
+        finally {
+            this.indexingLock.writeLock().unlock();
+        }
     }
 
     /**
@@ -121,48 +269,89 @@ public class CodeIndexer {
      * the most reliable way of doing it
      * TODO Update the record and set the facets to a value we can ignore
      */
-    public synchronized void deleteByCodeId(String codeId) throws IOException {
-        Directory dir = FSDirectory.open(Paths.get(Properties.getProperties().getProperty(Values.INDEXLOCATION, Values.DEFAULTINDEXLOCATION)));
-
-        Analyzer analyzer = new CodeAnalyzer();
-        IndexWriterConfig iwc = new IndexWriterConfig(analyzer);
-        iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+    public void deleteByCodeId(String repoName, String codeId) throws IOException {
+        this.deleteByCodeId(Collections.singletonList(this.getShard(repoName)), codeId);
+    }
 
-        IndexWriter writer = new IndexWriter(dir, iwc);
+    /**
+     * Deletes a file from every shard of the index for callers which do not know the repository of the file.
+     * When indexing per repository this opens a writer for every repository on disk so prefer the method
+     * taking the repository name.
+     */
+    public void deleteByCodeId(String codeId) throws IOException {
+        this.deleteByCodeId(this.getShards(), codeId);
+    }
 
+    private synchronized void deleteByCodeId(List<String> shards, String codeId) throws IOException {
         try {
-            QueryParser parser = new QueryParser(Values.CONTENTS, analyzer);
+            QueryParser parser = new QueryParser(Values.CONTENTS, new CodeAnalyzer());
             Query query = parser.parse(Values.CODEID + ":" + QueryParser.escape(codeId));
-            writer.deleteDocuments(query);
+
+            for (String shard: shards) {
+                this.getIndexWriter(shard).deleteDocuments(query);
+            }
+            this.documentsSinceCommit.incrementAndGet();
         }
         catch(Exception ex) {
             Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in CodeIndexer\n with message: " + ex.getMessage());
         }
         finally {
-            writer.close();
+            this.maybeCommit();
+            this.refreshSearchers();
+        }
+    }
+
+    /**
+     * Deletes all of the documents with the supplied paths from the index of the repository as a single batch
+     */
+    public synchronized void deleteByPaths(String repoName, Collection<String> paths) throws IOException {
+        if (paths.isEmpty()) {
+            return;
+        }
+
+        try {
+            Term[] terms = new Term[paths.size()];
+            int i = 0;
+            for (String path: paths) {
+                terms[i++] = new Term(Values.PATH, path);
+            }
+
+            this.getIndexWriter(this.getShard(repoName)).deleteDocuments(terms);
+            this.documentsSinceCommit.addAndGet(terms.length);
+        }
+        finally {
+            this.maybeCommit();
+            this.refreshSearchers();
         }
     }
 
     /**
      * Given a queue of documents to index, index them by popping the queue limited to 1000 items.
-     * This method must be synchronized as we have not added any logic to deal with multiple threads writing to the
-     * index.
-     * TODO investigate how Lucene deals with multiple writes
+     * Safe to call from multiple threads at once as the index and taxonomy writers are thread safe, which lets
+     * the analysis of documents run on as many cores as there are indexer threads. Deletes and commits are
+     * still synchronized.
      */
-    public synchronized void indexDocuments(Queue<CodeIndexDocument> codeIndexDocumentQueue) throws IOException {
-        // Index all documents and commit at the end for performance gains
-        Directory indexDirectory = FSDirectory.open(Paths.get(Properties.getProperties().getProperty(Values.INDEXLOCATION, Values.DEFAULTINDEXLOCATION)));
-        Directory facetDirectory = FSDirectory.open(Paths.get(Properties.getProperties().getProperty(Values.FACETSLOCATION, Values.DEFAULTFACETSLOCATION)));
+    public void indexDocuments(Queue<CodeIndexDocument> codeIndexDocumentQueue) throws IOException {
+        this.indexingLock.readLock().lock();
 
-        Analyzer analyzer = new CodeAnalyzer();
-        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer);
-        FacetsConfig facetsConfig;
-        SearchcodeLib searchcodeLib = new SearchcodeLib();
+        try {
+            this.indexDocumentsBatch(codeIndexDocumentQueue);
+        }
+        finally {
+            this.indexingLock.readLock().unlock();
+        }
 
-        indexWriterConfig.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        this.maybeCommit();
+        this.refreshSearchers();
+    }
+
+    private void indexDocumentsBatch(Queue<CodeIndexDocument> codeIndexDocumentQueue) throws IOException {
+        // Index all documents using the shared writers and only commit when the commit policy says so
+        TaxonomyWriter taxonomyWriter = this.getTaxonomyWriter();
+        Set<String> shardsWritten = new HashSet<>();
 
-        IndexWriter writer = new IndexWriter(indexDirectory, indexWriterConfig);
-        TaxonomyWriter taxonomyWriter = new DirectoryTaxonomyWriter(facetDirectory);
+        FacetsConfig facetsConfig;
+        SearchcodeLib searchcodeLib = new SearchcodeLib();
 
         try {
             CodeIndexDocument codeIndexDocument = codeIndexDocumentQueue.poll();
@@ -170,13 +359,14 @@ public class CodeIndexer {
 
             while (codeIndexDocument != null) {
                 Singleton.getLogger().info("Indexing file " + codeIndexDocument.getRepoLocationRepoNameLocationFilename());
-                Singleton.decrementCodeIndexLinesCount(codeIndexDocument.getCodeLines());
 
                 Document doc = new Document();
                 // Path is the primary key for documents
                 // needs to include repo location, project name and then filepath including file
                 Field pathField = new StringField("path", codeIndexDocument.getRepoLocationRepoNameLocationFilename(), Field.Store.YES);
                 doc.add(pathField);
+                // Allows every path in a repository to be listed without loading stored fields
+                doc.add(new SortedDocValuesField(Values.PATH, new BytesRef(codeIndexDocument.getRepoLocationRepoNameLocationFilename())));
 
                 // Add in facets
                 facetsConfig = new FacetsConfig();
@@ -197,18 +387,6 @@ public class CodeIndexer {
                 // TODO Is this even required anymore?
                 searchcodeLib.addToSpellingCorrector(codeIndexDocument.getContents()); // Store in spelling corrector
 
-                StringBuilder indexContents = new StringBuilder();
-
-                indexContents.append(searchcodeLib.codeCleanPipeline(codeIndexDocument.getFileName())).append(" ");
-                indexContents.append(searchcodeLib.splitKeywords(codeIndexDocument.getFileName())).append(" ");
-                indexContents.append(codeIndexDocument.getFileLocationFilename()).append(" ");
-                indexContents.append(codeIndexDocument.getFileLocation());
-                indexContents.append(searchcodeLib.splitKeywords(codeIndexDocument.getContents()));
-                indexContents.append(searchcodeLib.codeCleanPipeline(codeIndexDocument.getContents()));
-                indexContents.append(searchcodeLib.findInterestingKeywords(codeIndexDocument.getContents()));
-                indexContents.append(searchcodeLib.findInterestingCharacters(codeIndexDocument.getContents()));
-                String toIndex = indexContents.toString().toLowerCase();
-
                 doc.add(new TextField(Values.REPONAME,             codeIndexDocument.getRepoName().replace(" ", "_"), Field.Store.YES));
                 doc.add(new TextField(Values.FILENAME,             codeIndexDocument.getFileName(), Field.Store.YES));
                 doc.add(new TextField(Values.FILELOCATION,         codeIndexDocument.getFileLocation(), Field.Store.YES));
@@ -216,15 +394,42 @@ public class CodeIndexer {
                 doc.add(new TextField(Values.MD5HASH,              codeIndexDocument.getMd5hash(), Field.Store.YES));
                 doc.add(new TextField(Values.LANGUAGENAME,         codeIndexDocument.getLanguageName().replace(" ", "_"), Field.Store.YES));
                 doc.add(new  IntField(Values.CODELINES,            codeIndexDocument.getCodeLines(), Field.Store.YES));
-                doc.add(new TextField(Values.CONTENTS,             toIndex, Field.Store.NO));
+                doc.add(new TextField(Values.FILENAMETERMS,        codeIndexDocument.getFileName(), Field.Store.NO));
+                doc.add(new TextField(Values.PATHTERMS,            codeIndexDocument.getFileLocationFilename(), Field.Store.NO));
                 doc.add(new TextField(Values.REPOLOCATION,         codeIndexDocument.getRepoRemoteLocation(), Field.Store.YES));
                 doc.add(new TextField(Values.CODEOWNER,            codeIndexDocument.getCodeOwner().replace(" ", "_"), Field.Store.YES));
                 doc.add(new TextField(Values.CODEID,               codeIndexDocument.getHash(), Field.Store.YES));
 
+                if (codeIndexDocument.getContents() != null) {
+                    doc.add(new TextField(Values.CONTENTS, codeIndexDocument.getContents(), Field.Store.NO));
+                }
+
+                // Keep the original file so results can be displayed without going back to disk
+                if (INDEX_STORE_CONTENT && codeIndexDocument.getContents() != null) {
+                    doc.add(new StoredField(Values.STOREDCONTENTS, codeIndexDocument.getContents()));
+
+                    if (INDEX_CONTENT_OFFSETS) {
+                        doc.add(new Field(Values.CONTENTOFFSETS, codeIndexDocument.getContents(), CONTENT_OFFSETS_TYPE));
+                    }
+                }
+
+                if (INDEX_TRIGRAMS && codeIndexDocument.getContents() != null) {
+                    doc.add(new Field(Values.CONTENTTRIGRAMS, codeIndexDocument.getContents(), CONTENT_TRIGRAMS_TYPE));
+                }
+
+                // Lets the next walk of the repository skip this file if it is unchanged on disk. Kept as doc values so the
+                // manifest of a repository is read without decompressing any stored fields
+                doc.add(new SortedDocValuesField(Values.MD5HASH, new BytesRef(codeIndexDocument.getMd5hash())));
+                doc.add(new NumericDocValuesField(Values.FILESIZE, codeIndexDocument.getFileSize()));
+                doc.add(new NumericDocValuesField(Values.FILEMODIFIED, codeIndexDocument.getFileModified()));
+
                 // Extra metadata in this case when it was last indexed
                 doc.add(new LongField(Values.MODIFIED, new Date().getTime(), Field.Store.YES));
 
-                writer.updateDocument(new Term(Values.PATH, codeIndexDocument.getRepoLocationRepoNameLocationFilename()), facetsConfig.build(taxonomyWriter, doc));
+                String shard = this.getShard(codeIndexDocument.getRepoName());
+                this.getIndexWriter(shard).updateDocument(new Term(Values.PATH, codeIndexDocument.getRepoLocationRepoNameLocationFilename()), facetsConfig.build(taxonomyWriter, doc));
+                shardsWritten.add(shard);
+                this.documentsSinceCommit.incrementAndGet();
 
                 count++;
                 if (count >= INDEX_QUEUE_BATCH_SIZE) {
@@ -236,47 +441,32 @@ public class CodeIndexer {
             }
         }
         finally {
-            try {
-                writer.close();
+            for (String shard: shardsWritten) {
+                this.flush(this.getIndexWriter(shard));
             }
-            finally {
-                taxonomyWriter.close();
-            }
-            Singleton.getLogger().info("Closing writers");
         }
     }
 
     /**
-     * Given a queue of documents to index, index them by popping the queue limited to 1000 items.
-     * This method must be synchronized as we have not added any logic to deal with multiple threads writing to the
-     * index.
-     * TODO investigate how Lucene deals with multiple writes
-     * TODO make the 1000 limit configurable
-     * TODO there appears to be something in here causing some serious slowdowns
+     * Given a queue of documents to index into the time index, index them by popping the queue limited to the
+     * index queue batch size. Synchronized so time batches run one at a time and cannot interleave with deletes
+     * or commits, the shared time writers are thread safe. Closing the writers waits for the batch as it needs
+     * the same monitor.
      */
     public synchronized void indexTimeDocuments(Queue<CodeIndexDocument> codeIndexDocumentQueue) throws IOException {
-        // Index all documents and commit at the end for performance gains
-        Directory dir = FSDirectory.open(Paths.get(Properties.getProperties().getProperty(Values.TIMEINDEXLOCATION, Values.DEFAULTTIMEINDEXLOCATION)));
-        Directory facetsdir = FSDirectory.open(Paths.get(Properties.getProperties().getProperty(Values.TIMEINDEXFACETLOCATION, Values.DEFAULTTIMEINDEXFACETLOCATION)));
+        // Index all documents using the shared writers and only commit when the commit policy says so
+        IndexWriter writer = this.getTimeIndexWriter();
+        TaxonomyWriter taxoWriter = this.getTimeTaxonomyWriter();
 
-        Analyzer analyzer = new CodeAnalyzer();
-        IndexWriterConfig iwc = new IndexWriterConfig(analyzer);
         FacetsConfig facetsConfig;
         SearchcodeLib scl = new SearchcodeLib();
 
-        iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-
-        IndexWriter writer = new IndexWriter(dir, iwc);
-        TaxonomyWriter taxoWriter = new DirectoryTaxonomyWriter(facetsdir);
-
-
         try {
             CodeIndexDocument codeIndexDocument = codeIndexDocumentQueue.poll();
             int count = 0;
 
             while (codeIndexDocument != null) {
                 Singleton.getLogger().info("Indexing time file " + codeIndexDocument.getRepoLocationRepoNameLocationFilename());
-                Singleton.decrementCodeIndexLinesCount(codeIndexDocument.getCodeLines());
 
                 Document doc = new Document();
                 // Path is the primary key for documents
@@ -320,14 +510,8 @@ public class CodeIndexer {
                     doc.add(new SortedSetDocValuesFacetField(Values.DELETED, codeIndexDocument.isDeleted()));
                 }
 
-                String indexContents = Values.EMPTYSTRING;
-
-                indexContents += scl.splitKeywords(codeIndexDocument.getContents());
-                indexContents += scl.codeCleanPipeline(codeIndexDocument.getContents());
                 scl.addToSpellingCorrector(codeIndexDocument.getContents()); // Store in spelling corrector
 
-                indexContents = indexContents.toLowerCase();
-
                 doc.add(new TextField(Values.REPONAME, codeIndexDocument.getRepoName(), Field.Store.YES));
                 doc.add(new TextField(Values.FILENAME, codeIndexDocument.getFileName(), Field.Store.YES));
                 doc.add(new TextField(Values.FILELOCATION, codeIndexDocument.getFileLocation(), Field.Store.YES));
@@ -335,7 +519,9 @@ public class CodeIndexer {
                 doc.add(new TextField(Values.MD5HASH, codeIndexDocument.getMd5hash(), Field.Store.YES));
                 doc.add(new TextField(Values.LANGUAGENAME, codeIndexDocument.getLanguageName(), Field.Store.YES));
                 doc.add(new IntField(Values.CODELINES, codeIndexDocument.getCodeLines(), Field.Store.YES));
-                doc.add(new TextField(Values.CONTENTS, indexContents, Field.Store.NO));
+                if (codeIndexDocument.getContents() != null) {
+                    doc.add(new TextField(Values.CONTENTS, codeIndexDocument.getContents(), Field.Store.NO));
+                }
                 doc.add(new TextField(Values.REPOLOCATION, codeIndexDocument.getRepoRemoteLocation(), Field.Store.YES));
                 doc.add(new TextField(Values.CODEOWNER, codeIndexDocument.getCodeOwner(), Field.Store.YES));
                 doc.add(new TextField(Values.REVISION, codeIndexDocument.getRevision(), Field.Store.YES));
@@ -349,6 +535,7 @@ public class CodeIndexer {
                 doc.add(new LongField(Values.MODIFIED, new Date().getTime(), Field.Store.YES));
 
                 writer.updateDocument(new Term(Values.PATH, codeIndexDocument.getRepoLocationRepoNameLocationFilename()), facetsConfig.build(taxoWriter, doc));
+                this.documentsSinceCommit.incrementAndGet();
 
                 count++;
                 if (count >= INDEX_QUEUE_BATCH_SIZE) {
@@ -360,9 +547,9 @@ public class CodeIndexer {
             }
         }
         finally {
-            Singleton.getLogger().info("Closing writers");
-            writer.close();
-            taxoWriter.close();
+            this.flush(writer);
+            this.maybeCommit();
+            this.refreshSearchers();
         }
     }
 
@@ -370,12 +557,37 @@ public class CodeIndexer {
      * Possibly better in ultra low memory environments? Reuses the above method by creating a queue with one
      * element and passes it in.
      */
-    public synchronized void indexDocument(CodeIndexDocument codeIndexDocument) throws IOException {
+    public void indexDocument(CodeIndexDocument codeIndexDocument) throws IOException {
         Queue<CodeIndexDocument> queue = new ConcurrentLinkedQueue<>();
         queue.add(codeIndexDocument);
         indexDocuments(queue);
     }
 
+    /**
+     * Records the size and modified time on disk of an indexed file whose contents have not changed so the next walk
+     * of the repository can skip it without reading it. Only the doc values are updated so nothing is analyzed again.
+     * Returns false if the index has no such doc values to update, in which case the file needs indexing again.
+     */
+    public boolean updateFileStat(String repoName, String path, long fileSize, long fileModified) {
+        this.indexingLock.readLock().lock();
+
+        try {
+            this.getIndexWriter(this.getShard(repoName)).updateDocValues(new Term(Values.PATH, path),
+                    new NumericDocValuesField(Values.FILESIZE, fileSize), new NumericDocValuesField(Values.FILEMODIFIED, fileModified));
+            this.documentsSinceCommit.incrementAndGet();
+        }
+        catch (IllegalArgumentException | IOException ex) {
+            Singleton.getLogger().info("Unable to update size and modified time of " + path + " will index again: " + ex.getMessage());
+            return false;
+        }
+        finally {
+            this.indexingLock.readLock().unlock();
+        }
+
+        this.maybeCommit();
+        return true;
+    }
+
     /**
      * Possibly better in ultra low memory environments? Reuses the above method by creating a queue with one
      * element and passes it in.
@@ -385,4 +597,460 @@ public class CodeIndexer {
         queue.add(codeIndexDocument);
         indexTimeDocuments(queue);
     }
+
+    /**
+     * Returns the shard of the main index which holds the documents of a repository as the directory it lives in
+     * inside the index location. Every document of a repository is in the same shard so it can be removed without
+     * touching the others. When the index is not sharded the only shard is the index location itself.
+     */
+    public String getShard(String repoName) {
+        if (INDEX_PER_REPOSITORY) {
+            return REPOSITORY_INDEX_DIRECTORY + "/" + this.getRepositoryIndexDirectory(repoName);
+        }
+
+        if (INDEX_SHARDS == 1) {
+            return Values.EMPTYSTRING;
+        }
+
+        return "shard" + Math.floorMod(Objects.hashCode(repoName), INDEX_SHARDS);
+    }
+
+    /**
+     * Repository names are used as is where they are safe as a directory name. Anything else, including a leading
+     * dot, is replaced and has the hash of the name appended so that names which clean up to the same thing do not
+     * share an index.
+     */
+    public String getRepositoryIndexDirectory(String repoName) {
+        String directory = repoName == null ? Values.EMPTYSTRING : repoName.replaceAll("[^a-zA-Z0-9_.-]|^\\.", "_");
+
+        if (directory.isEmpty() || !directory.equals(repoName)) {
+            directory += "_" + Integer.toHexString(Objects.hashCode(repoName));
+        }
+
+        return directory;
+    }
+
+    /**
+     * Returns the shared writer for a shard of the main index opening it if required. The writer is kept open for
+     * the lifetime of the process and is safe to use from multiple threads.
+     */
+    public IndexWriter getIndexWriter(String shard) throws IOException {
+        synchronized (this.writerLock) {
+            IndexWriter writer = this.indexWriters.get(shard);
+
+            if (writer == null || !writer.isOpen()) {
+                writer = this.openIndexWriter(this.getShardPath(shard).toString());
+                this.indexWriters.put(shard, writer);
+            }
+
+            this.indexWritersLastUsed.put(shard, System.currentTimeMillis());
+            return writer;
+        }
+    }
+
+    /**
+     * Returns the writers for every shard of the main index opening them if required. When indexing per repository
+     * this is every repository with an index on disk.
+     */
+    public List<IndexWriter> getIndexWriters() throws IOException {
+        synchronized (this.writerLock) {
+            for (String shard: this.getShards()) {
+                this.getIndexWriter(shard);
+            }
+
+            return this.getOpenIndexWriters();
+        }
+    }
+
+    /**
+     * Returns every shard of the main index. When indexing per repository this is every repository with an
+     * index on disk.
+     */
+    public List<String> getShards() {
+        List<String> shards = new ArrayList<>();
+
+        if (INDEX_PER_REPOSITORY) {
+            File[] directories = this.getShardPath(REPOSITORY_INDEX_DIRECTORY).toFile().listFiles(File::isDirectory);
+
+            if (directories != null) {
+                for (File directory: directories) {
+                    shards.add(REPOSITORY_INDEX_DIRECTORY + "/" + directory.getName());
+                }
+            }
+        }
+        else if (INDEX_SHARDS == 1) {
+            shards.add(Values.EMPTYSTRING);
+        }
+        else {
+            for (int shard = 0; shard < INDEX_SHARDS; shard++) {
+                shards.add("shard" + shard);
+            }
+        }
+
+        return shards;
+    }
+
+    /**
+     * Returns the writers of the main index which are currently open without opening any
+     */
+    public List<IndexWriter> getOpenIndexWriters() {
+        synchronized (this.writerLock) {
+            return new ArrayList<>(this.indexWriters.values());
+        }
+    }
+
+    /**
+     * Returns the writer of the shard if it is open otherwise null without opening it
+     */
+    public IndexWriter getOpenIndexWriter(String shard) {
+        synchronized (this.writerLock) {
+            IndexWriter writer = this.indexWriters.get(shard);
+            return writer != null && writer.isOpen() ? writer : null;
+        }
+    }
+
+    /**
+     * Returns the directory of a shard of the main index for reading it when its writer is not open
+     */
+    public Directory getShardDirectory(String shard) throws IOException {
+        return FSDirectory.open(this.getShardPath(shard));
+    }
+
+    /**
+     * Returns the shared writer for the main index facets opening it if required.
+     */
+    public TaxonomyWriter getTaxonomyWriter() throws IOException {
+        synchronized (this.writerLock) {
+            if (this.taxonomyWriter == null) {
+                this.taxonomyWriter = new DirectoryTaxonomyWriter(FSDirectory.open(Paths.get(Properties.getProperties().getProperty(Values.FACETSLOCATION, Values.DEFAULTFACETSLOCATION))));
+            }
+
+            return this.taxonomyWriter;
+        }
+    }
+
+    /**
+     * Returns the shared writer for the time index opening it if required.
+     */
+    public IndexWriter getTimeIndexWriter() throws IOException {
+        synchronized (this.writerLock) {
+            if (this.timeIndexWriter == null || !this.timeIndexWriter.isOpen()) {
+                this.timeIndexWriter = this.openIndexWriter(Properties.getProperties().getProperty(Values.TIMEINDEXLOCATION, Values.DEFAULTTIMEINDEXLOCATION));
+            }
+
+            return this.timeIndexWriter;
+        }
+    }
+
+    /**
+     * Returns the shared writer for the time index facets opening it if required.
+     */
+    public TaxonomyWriter getTimeTaxonomyWriter() throws IOException {
+        synchronized (this.writerLock) {
+            if (this.timeTaxonomyWriter == null) {
+                this.timeTaxonomyWriter = new DirectoryTaxonomyWriter(FSDirectory.open(Paths.get(Properties.getProperties().getProperty(Values.TIMEINDEXFACETLOCATION, Values.DEFAULTTIMEINDEXFACETLOCATION))));
+            }
+
+            return this.timeTaxonomyWriter;
+        }
+    }
+
+    /**
+     * Returns the shared searcher pool for the main index. Callers must acquire a searcher and release it
+     * when finished rather than closing the reader. When sharded the searchers cover every shard.
+     */
+    public ReferenceManager<IndexSearcher> getSearcherManager() throws IOException {
+        synchronized (this.writerLock) {
+            if (this.searcherManager == null) {
+                if (INDEX_SHARDS == 1 && !INDEX_PER_REPOSITORY) {
+                    this.searcherManager = new SearcherManager(this.getIndexWriter(Values.EMPTYSTRING), true, SEARCHER_FACTORY);
+                }
+                else {
+                    this.searcherManager = new ShardedSearcherManager(this);
+                }
+
+                this.searcherManager.addListener(new ReferenceManager.RefreshListener() {
+                    @Override
+                    public void beforeRefresh() {}
+
+                    @Override
+                    public void afterRefresh(boolean didRefresh) {
+                        if (didRefresh) {
+                            searcherGeneration.incrementAndGet();
+                        }
+                    }
+                });
+            }
+
+            return this.searcherManager;
+        }
+    }
+
+    /**
+     * Creates a searcher over the reader which caches filters in the shared filter cache. The executor
+     * if not null is used to search the segments of the reader in parallel.
+     */
+    public static IndexSearcher newSearcher(IndexReader reader, ExecutorService executorService) {
+        IndexSearcher searcher = new IndexSearcher(reader, executorService);
+        searcher.setQueryCache(FILTER_CACHE_BYTES > 0 ? FILTER_CACHE : null);
+        searcher.setQueryCachingPolicy(FILTER_CACHING_POLICY);
+        return searcher;
+    }
+
+    /**
+     * Returns the cache of filter matches shared by all searchers
+     */
+    public static LRUQueryCache getFilterCache() {
+        return FILTER_CACHE;
+    }
+
+    /**
+     * Returns the shared searcher pool for the time index.
+     */
+    public SearcherManager getTimeSearcherManager() throws IOException {
+        synchronized (this.writerLock) {
+            if (this.timeSearcherManager == null) {
+                this.timeSearcherManager = new SearcherManager(this.getTimeIndexWriter(), true, SEARCHER_FACTORY);
+            }
+
+            return this.timeSearcherManager;
+        }
+    }
+
+    /**
+     * Swaps in a new reader for the searcher pools if anything has changed since they were last refreshed.
+     * Searches currently holding the old reader continue to use it until they release it.
+     */
+    public void refreshSearchers() {
+        ReferenceManager<IndexSearcher> searcherManager;
+        SearcherManager timeSearcherManager;
+
+        synchronized (this.writerLock) {
+            searcherManager = this.searcherManager;
+            timeSearcherManager = this.timeSearcherManager;
+        }
+
+        try {
+            if (searcherManager != null) {
+                searcherManager.maybeRefresh();
+            }
+            if (timeSearcherManager != null) {
+                timeSearcherManager.maybeRefresh();
+            }
+        }
+        catch (IOException ex) {
+            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in CodeIndexer\n with message: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Commits any pending changes if enough documents have been changed or enough time has passed
+     * since the last commit. Called after every batch and periodically by the index documents job
+     * so that changes are not left uncommitted when indexing goes quiet.
+     */
+    public synchronized void maybeCommit() {
+        this.closeIdleIndexWriters();
+
+        if (this.documentsSinceCommit.get() == 0) {
+            return;
+        }
+
+        long secondsSinceCommit = (System.currentTimeMillis() - this.lastCommitTime) / 1000;
+
+        if (this.documentsSinceCommit.get() >= INDEX_COMMIT_DOCUMENTS || secondsSinceCommit >= INDEX_COMMIT_SECONDS) {
+            this.commit();
+        }
+    }
+
+    /**
+     * Commits all open writers to disk regardless of the commit policy.
+     */
+    public synchronized void commit() {
+        // Documents can be added while committing without holding the monitor so only those counted before
+        // the commit started are known to be in it
+        int documentsCommitted = this.documentsSinceCommit.get();
+
+        try {
+            if (this.taxonomyWriter != null) {
+                this.taxonomyWriter.commit();
+            }
+            for (IndexWriter indexWriter: this.getOpenIndexWriters()) {
+                if (indexWriter.isOpen()) {
+                    indexWriter.commit();
+                }
+            }
+            if (this.timeTaxonomyWriter != null) {
+                this.timeTaxonomyWriter.commit();
+            }
+            if (this.timeIndexWriter != null && this.timeIndexWriter.isOpen()) {
+                this.timeIndexWriter.commit();
+            }
+
+            this.commitCount++;
+            this.documentsSinceCommit.addAndGet(-documentsCommitted);
+            this.lastCommitTime = System.currentTimeMillis();
+        }
+        catch (IOException ex) {
+            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in CodeIndexer\n with message: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * When indexing per repository closes the writers of repositories which have not been used for index_commit_seconds
+     * so that the memory, file handles and write lock of every repository indexed are not held for the life of the
+     * process. Searches read the index of a repository from disk while it has no writer and a writer is opened again
+     * when it is next written to. Skipped while any batch is being indexed as it could be using them.
+     */
+    private synchronized void closeIdleIndexWriters() {
+        if (!INDEX_PER_REPOSITORY || !this.indexingLock.writeLock().tryLock()) {
+            return;
+        }
+
+        List<IndexWriter> idleWriters = new ArrayList<>();
+
+        try {
+            long idleSince = System.currentTimeMillis() - INDEX_COMMIT_SECONDS * 1000L;
+
+            synchronized (this.writerLock) {
+                Iterator<Map.Entry<String, IndexWriter>> iterator = this.indexWriters.entrySet().iterator();
+
+                while (iterator.hasNext()) {
+                    Map.Entry<String, IndexWriter> entry = iterator.next();
+                    Long lastUsed = this.indexWritersLastUsed.get(entry.getKey());
+
+                    if (lastUsed == null || lastUsed < idleSince) {
+                        idleWriters.add(entry.getValue());
+                        this.indexWritersLastUsed.remove(entry.getKey());
+                        iterator.remove();
+                    }
+                }
+            }
+
+            if (idleWriters.isEmpty()) {
+                return;
+            }
+
+            // The facets of what the writers hold need to be on disk before the writers commit on close
+            if (this.taxonomyWriter != null) {
+                this.taxonomyWriter.commit();
+            }
+
+            for (IndexWriter indexWriter: idleWriters) {
+                indexWriter.close();
+            }
+        }
+        catch (IOException ex) {
+            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in CodeIndexer\n with message: " + ex.getMessage());
+        }
+        finally {
+            this.indexingLock.writeLock().unlock();
+        }
+
+        if (!idleWriters.isEmpty()) {
+            this.refreshSearchers();
+        }
+    }
+
+    /**
+     * Commits and closes all open writers. Needs to be called before the index directories are removed
+     * and when shutting down. Waits for any batches being indexed to finish first. The writers will be
+     * reopened on next use.
+     */
+    public void closeIndexWriters() {
+        this.indexingLock.writeLock().lock();
+
+        try {
+            synchronized (this) {
+                this.commit();
+
+                synchronized (this.writerLock) {
+                    Singleton.getLogger().info("Closing writers");
+                    IOUtils.closeQuietly(this.searcherManager);
+                    IOUtils.closeQuietly(this.timeSearcherManager);
+                    for (IndexWriter indexWriter: this.indexWriters.values()) {
+                        IOUtils.closeQuietly(indexWriter);
+                    }
+                    IOUtils.closeQuietly(this.taxonomyWriter);
+                    IOUtils.closeQuietly(this.timeIndexWriter);
+                    IOUtils.closeQuietly(this.timeTaxonomyWriter);
+
+                    this.searcherManager = null;
+                    this.searcherGeneration.incrementAndGet();
+                    this.timeSearcherManager = null;
+                    this.indexWriters.clear();
+                    this.indexWritersLastUsed.clear();
+                    this.taxonomyWriter = null;
+                    this.timeIndexWriter = null;
+                    this.timeTaxonomyWriter = null;
+                }
+            }
+        }
+        finally {
+            this.indexingLock.writeLock().unlock();
+        }
+
+        Singleton.getFacetStateCache().clear();
+    }
+
+    /**
+     * Read before acquiring a searcher so anything cached using it is never newer than the generation it is stored as
+     */
+    public long getSearcherGeneration() {
+        return this.searcherGeneration.get();
+    }
+
+    public int getFlushCount() {
+        return this.flushCount.get();
+    }
+
+    public synchronized int getCommitCount() {
+        return this.commitCount;
+    }
+
+    public int getDocumentsSinceCommit() {
+        return this.documentsSinceCommit.get();
+    }
+
+    /**
+     * Writes the buffered documents out as a segment so they are cheap to pick up by near real time
+     * readers without having to pay for a commit.
+     */
+    private void flush(IndexWriter writer) {
+        try {
+            writer.flush();
+            this.flushCount.incrementAndGet();
+        }
+        catch (IOException ex) {
+            Singleton.getLogger().warning("ERROR - caught a " + ex.getClass() + " in CodeIndexer\n with message: " + ex.getMessage());
+        }
+    }
+
+    private Path getShardPath(String shard) {
+        return Paths.get(Properties.getProperties().getProperty(Values.INDEXLOCATION, Values.DEFAULTINDEXLOCATION), shard);
+    }
+
+    private IndexWriter openIndexWriter(String location) throws IOException {
+        Directory directory = FSDirectory.open(Paths.get(location));
+
+        // Contents are expanded into every token searches may use as they are indexed. File names and locations are
+        // split into directories and identifiers. The offsets field is split on words in the original text so it
+        // lines up with what is displayed
+        Map<String, Analyzer> fieldAnalyzers = new HashMap<>();
+        fieldAnalyzers.put(Values.CONTENTS, new CodeIndexAnalyzer());
+        fieldAnalyzers.put(Values.FILENAMETERMS, new CodeSymbolAnalyzer());
+        fieldAnalyzers.put(Values.PATHTERMS, new CodeSymbolAnalyzer());
+        fieldAnalyzers.put(Values.CONTENTOFFSETS, new CodeOffsetsAnalyzer());
+        fieldAnalyzers.put(Values.CONTENTTRIGRAMS, new CodeTrigramAnalyzer());
+        Analyzer analyzer = new PerFieldAnalyzerWrapper(new CodeAnalyzer(), fieldAnalyzers);
+
+        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer);
+        indexWriterConfig.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+
+        // File contents compress very well so trade a little CPU for a much smaller index when storing them
+        if (INDEX_STORE_CONTENT) {
+            indexWriterConfig.setCodec(new Lucene54Codec(Lucene50StoredFieldsFormat.Mode.BEST_COMPRESSION));
+        }
+
+        return new IndexWriter(directory, indexWriterConfig);
+    }
 }
@@ -43,11 +43,12 @@ public class CodeMatcher {
      */
     public List<CodeResult> formatResults(List<CodeResult> codeResult, String matchTerms, boolean highlightLine) {
         List<String> lstMatchTerms = splitTerms(matchTerms);
+        TermMatcher termMatcher = new TermMatcher(lstMatchTerms); // Built once and shared by every result
 
         List<CodeResult> results = new ArrayList<>();
 
         for(CodeResult code: codeResult) {
-            List<CodeMatchResult> result = matchResults(code.getCode(), lstMatchTerms, highlightLine);
+            List<CodeMatchResult> result = matchResults(code.getCode(), lstMatchTerms, termMatcher, code.getMatchingLines(), highlightLine);
 
             if (result != null) {
                 code.setMatchingResults(result);
@@ -62,29 +63,32 @@ public class CodeMatcher {
      * Actually does the matching for a single code result given the match terms
      */
     public List<CodeMatchResult> matchResults(List<String> code, List<String> matchTerms, boolean highlightLine) {
-        List<CodeMatchResult> resultLines = findMatchingLines(code, matchTerms, highlightLine);
+        return this.matchResults(code, matchTerms, new TermMatcher(matchTerms), null, highlightLine);
+    }
+
+    private List<CodeMatchResult> matchResults(List<String> code, List<String> matchTerms, TermMatcher termMatcher, Map<Integer, Integer> indexedMatches, boolean highlightLine) {
+        List<CodeMatchResult> resultLines = findMatchingLines(code, matchTerms, termMatcher, indexedMatches, highlightLine);
         List<CodeMatchResult> newResultLines = new ArrayList<>();
 
         // get the top matching lines for this result
         resultLines.sort((p1, p2) -> Integer.valueOf(p2.getLineMatches()).compareTo(p1.getLineMatches()));
 
-        // gets the best snippets based on number of matches
-        for(int i = 0; i < resultLines.size(); i++) {
-            CodeMatchResult match = resultLines.get(i);
-            match.setLineNumber(match.getLineNumber() + 1);
-
-            if (!resultExists(newResultLines, match.getLineNumber())) {
-                newResultLines.add(match);
-            }
+        // Index the lines by line number so the lines either side of a match can be found without searching
+        CodeMatchResult[] linesByNumber = new CodeMatchResult[code.size()];
+        for (CodeMatchResult match: resultLines) {
+            linesByNumber[match.getLineNumber()] = match;
+        }
+        BitSet addedLines = new BitSet(code.size());
 
-            CodeMatchResult resultBefore = getResultByLineNumber(resultLines, match.getLineNumber() - 1);
-            CodeMatchResult resultAfter  = getResultByLineNumber(resultLines, match.getLineNumber() + 1);
+        // gets the best snippets based on number of matches
+        for(CodeMatchResult match: resultLines) {
+            int lineNumber = match.getLineNumber();
 
-            if (resultBefore != null && !resultExists(newResultLines, match.getLineNumber() - 1)) {
-                newResultLines.add(resultBefore);
-            }
-            if (resultAfter != null && !resultExists(newResultLines, match.getLineNumber() + 1)) {
-                newResultLines.add(resultAfter);
+            for (int i = Math.max(0, lineNumber - 1); i <= lineNumber + 1 && i < linesByNumber.length; i++) {
+                if (linesByNumber[i] != null && !addedLines.get(i)) {
+                    addedLines.set(i);
+                    newResultLines.add(linesByNumber[i]);
+                }
             }
 
             if (newResultLines.size() >= MATCHLINES) {
@@ -92,6 +96,10 @@ public class CodeMatcher {
             }
         }
 
+        for (CodeMatchResult match: newResultLines) {
+            match.setLineNumber(match.getLineNumber() + 1);
+        }
+
         newResultLines.sort((p1, p2) -> Integer.valueOf(p1.getLineNumber()).compareTo(p2.getLineNumber()));
 
         if (!newResultLines.isEmpty()) {
@@ -104,50 +112,59 @@ public class CodeMatcher {
 
     /**
      * If changing anything in here be wary of performance issues as it is the slowest method by a long shot.
-     * Be especially careful of branch prediction issues which is why this method has been re-written several times
-     * just to avoid those issues even though the result was a LONGER method
-     * TODO wring more performance out of this method where possible
+     * The terms are compiled into a single matcher so each line is scanned once without allocating, and the
+     * matching and adjacent lines are tracked using bitsets rather than searching the results. Where the
+     * matching lines are already known from the offsets in the index the scan is skipped entirely.
      */
     public List<CodeMatchResult> findMatchingLines(List<String> code, List<String> matchTerms, boolean highlightLine) {
-        List<CodeMatchResult> resultLines = new LinkedList<>();
+        return this.findMatchingLines(code, matchTerms, new TermMatcher(matchTerms), null, highlightLine);
+    }
+
+    private List<CodeMatchResult> findMatchingLines(List<String> code, List<String> matchTerms, TermMatcher termMatcher, Map<Integer, Integer> indexedMatches, boolean highlightLine) {
+        List<CodeMatchResult> resultLines = new ArrayList<>();
 
         int codesize = code.size();
         int searchThrough = codesize > this.MAXLINEDEPTH ? this.MAXLINEDEPTH : codesize;
-        int matching = 0;
+        BitSet matchingLines = new BitSet(searchThrough);
 
-        // Go through each line finding matching lines
-        for(int i = 0; i < searchThrough; i++) {
-            String matchRes = code.get(i).toLowerCase().replaceAll("\\s+", " ");
-            matching = 0;
+        if (indexedMatches != null) {
+            for (Map.Entry<Integer, Integer> entry: indexedMatches.entrySet()) {
+                int i = entry.getKey();
 
-            for (String matchTerm: matchTerms) {
-                if (matchRes.contains(matchTerm.replace("*", ""))) {
-                    matching++;
+                if (i < searchThrough) {
+                    matchingLines.set(i);
+                    resultLines.add(new CodeMatchResult(code.get(i), true, false, entry.getValue(), i));
                 }
             }
-
-            if (matching != 0) {
-                resultLines.add(new CodeMatchResult(code.get(i), true, false, matching, i));
-            }
         }
 
-        // Get the adjacent lines
-        List<CodeMatchResult> adajacentLines = new LinkedList<>();
-        for(CodeMatchResult cmr: resultLines) {
-            int linenumber = cmr.getLineNumber();
-            int previouslinenumber = linenumber - 1;
-            int nextlinenumber = linenumber + 1;
+        // Go through each line finding matching lines if the index could not tell us
+        if (matchingLines.isEmpty()) {
+            for(int i = 0; i < searchThrough; i++) {
+                int matching = termMatcher.countMatches(code.get(i));
 
-            if (previouslinenumber >= 0 && !this.resultExists(resultLines, previouslinenumber)) {
-                adajacentLines.add(new CodeMatchResult(code.get(previouslinenumber), false, false, 0, previouslinenumber));
+                if (matching != 0) {
+                    matchingLines.set(i);
+                    resultLines.add(new CodeMatchResult(code.get(i), true, false, matching, i));
+                }
             }
+        }
 
-            if (nextlinenumber < codesize && !this.resultExists(resultLines, nextlinenumber)) {
-                adajacentLines.add(new CodeMatchResult(code.get(nextlinenumber), false, false, 0, nextlinenumber));
+        // Get the adjacent lines which did not match themselves
+        BitSet adjacentLines = new BitSet(codesize);
+        for (int i = matchingLines.nextSetBit(0); i >= 0; i = matchingLines.nextSetBit(i + 1)) {
+            if (i > 0) {
+                adjacentLines.set(i - 1);
+            }
+            if (i + 1 < codesize) {
+                adjacentLines.set(i + 1);
             }
         }
+        adjacentLines.andNot(matchingLines);
 
-        resultLines.addAll(adajacentLines);
+        for (int i = adjacentLines.nextSetBit(0); i >= 0; i = adjacentLines.nextSetBit(i + 1)) {
+            resultLines.add(new CodeMatchResult(code.get(i), false, false, 0, i));
+        }
 
         // If not matching we probably matched on the filename or past 10000
         if (resultLines.size() == 0) {
@@ -307,26 +324,156 @@ public class CodeMatcher {
     }
 
     /**
-     * Helper to check if result exists in the collection based on line number
+     * Aho-Corasick automaton over all of the match terms. Counts how many of the terms appear in a line as if the
+     * line had been lower cased and had runs of whitespace collapsed to a single space, but does so in a single
+     * pass over the characters of the line without creating any new strings. Not thread safe.
      */
-    private boolean resultExists(List<CodeMatchResult> lst, int value) {
-        for(CodeMatchResult s: lst){
-            if (s.getLineNumber() == value) {
-                return true;
+    static final class TermMatcher {
+        private final char[] alphabet;
+        private final int[][] transitions;
+        private final int[][] outputs;
+        private final int termCount;
+        private final int alwaysMatching;
+        private final int[] lastSeen;
+        private int line = 0;
+
+        TermMatcher(List<String> terms) {
+            this.termCount = terms.size();
+            this.lastSeen = new int[this.termCount];
+
+            String[] patterns = new String[this.termCount];
+            StringBuilder chars = new StringBuilder();
+            int empty = 0;
+
+            for (int i = 0; i < this.termCount; i++) {
+                patterns[i] = terms.get(i).replace("*", "");
+                chars.append(patterns[i]);
+                if (patterns[i].isEmpty()) {
+                    empty++; // Matches every line
+                }
+            }
+
+            this.alwaysMatching = empty;
+            this.alphabet = chars.chars().distinct().sorted().collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append).toString().toCharArray();
+
+            // Build the trie of all the patterns
+            List<int[]> trie = new ArrayList<>();
+            List<List<Integer>> trieOutputs = new ArrayList<>();
+            trie.add(this.newState());
+            trieOutputs.add(new ArrayList<>());
+
+            for (int i = 0; i < this.termCount; i++) {
+                if (patterns[i].isEmpty()) {
+                    continue;
+                }
+
+                int state = 0;
+                for (int j = 0; j < patterns[i].length(); j++) {
+                    int symbol = Arrays.binarySearch(this.alphabet, patterns[i].charAt(j));
+                    if (trie.get(state)[symbol] == -1) {
+                        trie.get(state)[symbol] = trie.size();
+                        trie.add(this.newState());
+                        trieOutputs.add(new ArrayList<>());
+                    }
+                    state = trie.get(state)[symbol];
+                }
+                trieOutputs.get(state).add(i);
+            }
+
+            // Turn it into a full automaton by following failure links breadth first
+            int[] failure = new int[trie.size()];
+            Deque<Integer> queue = new ArrayDeque<>();
+
+            for (int symbol = 0; symbol < this.alphabet.length; symbol++) {
+                int next = trie.get(0)[symbol];
+                if (next == -1) {
+                    trie.get(0)[symbol] = 0;
+                }
+                else {
+                    failure[next] = 0;
+                    queue.add(next);
+                }
+            }
+
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                trieOutputs.get(state).addAll(trieOutputs.get(failure[state]));
+
+                for (int symbol = 0; symbol < this.alphabet.length; symbol++) {
+                    int next = trie.get(state)[symbol];
+                    if (next == -1) {
+                        trie.get(state)[symbol] = trie.get(failure[state])[symbol];
+                    }
+                    else {
+                        failure[next] = trie.get(failure[state])[symbol];
+                        queue.add(next);
+                    }
+                }
+            }
+
+            this.transitions = trie.toArray(new int[trie.size()][]);
+            this.outputs = new int[trie.size()][];
+            for (int i = 0; i < trie.size(); i++) {
+                this.outputs[i] = trieOutputs.get(i).stream().distinct().mapToInt(Integer::intValue).toArray();
             }
         }
-        return false;
-    }
 
-    /**
-     * Helper to pull value out of the list based on line number
-     */
-    private CodeMatchResult getResultByLineNumber(List<CodeMatchResult> lst, int value) {
-        for(CodeMatchResult s: lst){
-            if (s.getLineNumber() == value) {
-                return s;
+        /**
+         * Returns the number of terms found in the line
+         */
+        int countMatches(String code) {
+            int matching = this.alwaysMatching;
+
+            if (matching == this.termCount) {
+                return matching;
+            }
+
+            this.line++;
+            int state = 0;
+            boolean lastWhitespace = false;
+
+            for (int i = 0; i < code.length(); i++) {
+                char c = code.charAt(i);
+
+                if (isWhitespace(c)) {
+                    if (lastWhitespace) {
+                        continue;
+                    }
+                    lastWhitespace = true;
+                    c = ' ';
+                }
+                else {
+                    lastWhitespace = false;
+                    c = Character.toLowerCase(c);
+                }
+
+                int symbol = Arrays.binarySearch(this.alphabet, c);
+                state = symbol < 0 ? 0 : this.transitions[state][symbol];
+
+                for (int term: this.outputs[state]) {
+                    if (this.lastSeen[term] != this.line) {
+                        this.lastSeen[term] = this.line;
+                        matching++;
+                    }
+                }
+
+                if (matching == this.termCount) {
+                    break;
+                }
             }
+
+            return matching;
+        }
+
+        private int[] newState() {
+            int[] state = new int[this.alphabet.length];
+            Arrays.fill(state, -1);
+            return state;
+        }
+
+        // Same characters as \s in a regular expression
+        private static boolean isWhitespace(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\013' || c == '\f' || c == '\r';
         }
-        return null;
     }
-}
\ No newline at end of file
+}
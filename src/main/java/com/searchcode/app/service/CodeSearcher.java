@@ -19,22 +19,62 @@ import org.apache.lucene.facet.FacetResult;
 import org.apache.lucene.facet.Facets;
 import org.apache.lucene.facet.FacetsCollector;
 import org.apache.lucene.facet.LabelAndValue;
-import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
-import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MultiCollector;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
 
 import java.io.IOException;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 /**
  * Does all of the queries which happen against the Lucene index, including search queries and working out
@@ -45,9 +85,33 @@ public class CodeSearcher implements ICodeSearcher {
     public String INDEXPATH = Properties.getProperties().getProperty(Values.INDEXLOCATION, Values.DEFAULTINDEXLOCATION);
     public String CODEFIELD = Values.CONTENTS;
     public int PAGELIMIT = 20;
+    public boolean INDEXTRIGRAMS = Boolean.parseBoolean(Properties.getProperties().getProperty(Values.INDEX_TRIGRAMS, Values.DEFAULT_INDEX_TRIGRAMS));
+    public boolean INDEXSTORECONTENT = Boolean.parseBoolean(Properties.getProperties().getProperty(Values.INDEX_STORE_CONTENT, Values.DEFAULT_INDEX_STORE_CONTENT));
+    public int REGEXTIMEOUTMILLIS = Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.REGEX_TIMEOUT_MILLIS, Values.DEFAULT_REGEX_TIMEOUT_MILLIS), Values.DEFAULT_REGEX_TIMEOUT_MILLIS);
+    public int REGEXMAXCANDIDATES = Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.REGEX_MAX_CANDIDATES, Values.DEFAULT_REGEX_MAX_CANDIDATES), Values.DEFAULT_REGEX_MAX_CANDIDATES);
 
     private static final LoggerWrapper LOGGER = Singleton.getLogger();
 
+    // Only load what is needed when walking many documents so stored file contents are not decompressed
+    private static final Set<String> PROJECTSTATSFIELDS = new HashSet<>(Arrays.asList(Values.LANGUAGENAME, Values.CODELINES));
+    private static final Set<String> REPODOCUMENTFIELDS = Collections.singleton(Values.PATH);
+    private static final Set<String> MANIFESTFIELDS = new HashSet<>(Arrays.asList(Values.PATH, Values.MD5HASH, Values.FILESIZE, Values.FILEMODIFIED));
+
+    // Shared by every regex search so checking files never uses more threads than there are cores
+    private static final int REGEX_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private static final ExecutorService REGEX_EXECUTOR = Executors.newFixedThreadPool(REGEX_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "regexsearch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Matches in the name of a file say more about it than matches in its location or contents
+    private static final Map<String, Float> SEARCHFIELDBOOSTS = new HashMap<>();
+    static {
+        SEARCHFIELDBOOSTS.put(Values.FILENAMETERMS, 4.0f);
+        SEARCHFIELDBOOSTS.put(Values.PATHTERMS, 2.0f);
+    }
+
     private StatsService statsService = new StatsService();
 
     /**
@@ -55,15 +119,20 @@ public class CodeSearcher implements ICodeSearcher {
      */
     public int getTotalNumberDocumentsIndexed() {
         int numDocs = 0;
-        try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
+        ReferenceManager<IndexSearcher> searcherManager = null;
+        IndexSearcher searcher = null;
 
-            numDocs = reader.numDocs();
-            reader.close();
+        try {
+            searcherManager = Singleton.getCodeIndexer().getSearcherManager();
+            searcher = searcherManager.acquire();
+            numDocs = searcher.getIndexReader().numDocs();
         }
         catch(Exception ex) {
             LOGGER.info(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.releaseSearcher(searcherManager, searcher);
+        }
 
         return numDocs;
     }
@@ -72,32 +141,80 @@ public class CodeSearcher implements ICodeSearcher {
      * Given a query and what page of results we are on return the matching results for that search
      */
     public SearchResult search(String queryString, int page) {
+        return this.search(queryString, Collections.emptyList(), page);
+    }
+
+    /**
+     * Given a query, filters such as reponame:x || reponame:y which every result must match and what page of
+     * results we are on return the matching results for that search
+     */
+    public SearchResult search(String queryString, List<String> filters, int page) {
         SearchResult searchResult = new SearchResult();
         statsService.incrementSearchCount();
 
 
-        try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
-            IndexSearcher searcher = new IndexSearcher(reader);
+        ReferenceManager<IndexSearcher> searcherManager = null;
+        IndexSearcher searcher = null;
 
+        try {
             Analyzer analyzer = new CodeAnalyzer();
 
-            QueryParser parser = new QueryParser(CODEFIELD, analyzer);
+            // Terms without a field are looked for in the file name and location as well as the contents
+            QueryParser parser = new MultiFieldQueryParser(new String[] { CODEFIELD, Values.FILENAMETERMS, Values.PATHTERMS }, analyzer, SEARCHFIELDBOOSTS);
 
-            Query query = parser.parse(queryString);
+            Query query = getFilteredQuery(parser, queryString, filters);
             LOGGER.info("Searching for: " + query.toString(CODEFIELD));
             LOGGER.searchLog(query.toString(CODEFIELD) + " " + page);
 
+            // The parsed query is used as the key so that queries which only differ in spacing or case share results
+            SearchResultCache searchResultCache = Singleton.getSearchResultCache();
+            String cacheKey = query.toString(CODEFIELD) + "\n" + page + "\n" + this.PAGELIMIT;
+            long generation = Singleton.getCodeIndexer().getSearcherGeneration();
+
+            SearchResult cachedSearchResult = searchResultCache.get(cacheKey, generation);
+            if (cachedSearchResult != null) {
+                return cachedSearchResult;
+            }
+
+            searcherManager = Singleton.getCodeIndexer().getSearcherManager();
+            searcher = searcherManager.acquire();
+            IndexReader reader = searcher.getIndexReader();
+
             searchResult = this.doPagingSearch(reader, searcher, query, page);
-            reader.close();
+            searchResultCache.put(cacheKey, generation, searchResult);
         }
         catch(Exception ex) {
             LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.releaseSearcher(searcherManager, searcher);
+        }
 
         return searchResult;
     }
 
+    /**
+     * Filters do not change the score so are added as filter clauses rather than and'ed into the query. This lets
+     * the searcher cache the documents matching each filter for every segment and reuse them for later searches
+     * until the segment changes.
+     */
+    public static Query getFilteredQuery(QueryParser parser, String queryString, List<String> filters) throws ParseException {
+        Query query = parser.parse(queryString);
+
+        if (filters.isEmpty()) {
+            return query;
+        }
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        builder.add(query, BooleanClause.Occur.MUST);
+
+        for (String filter: filters) {
+            builder.add(parser.parse(filter), BooleanClause.Occur.FILTER);
+        }
+
+        return builder.build();
+    }
+
     /**
      * Only used as fallback if getByRepoFileName fails for some reason due to what appears to be a lucene index bug
      * this should always work as the path used is sha1 and should be unique for anything the current codebase can
@@ -106,9 +223,12 @@ public class CodeSearcher implements ICodeSearcher {
     public CodeResult getByCodeId(String codeId) {
         CodeResult codeResult = null;
 
+        ReferenceManager<IndexSearcher> searcherManager = null;
+        IndexSearcher searcher = null;
+
         try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
-            IndexSearcher searcher = new IndexSearcher(reader);
+            searcherManager = Singleton.getCodeIndexer().getSearcherManager();
+            searcher = searcherManager.acquire();
             Analyzer analyzer = new CodeAnalyzer();
             QueryParser parser = new QueryParser(CODEFIELD, analyzer);
 
@@ -123,12 +243,7 @@ public class CodeSearcher implements ICodeSearcher {
 
                 String filepath = doc.get(Values.PATH);
 
-                List<String> code = new ArrayList<>();
-                try {
-                    code = Singleton.getHelpers().readFileLinesGuessEncoding(filepath, Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.MAXFILELINEDEPTH, Values.DEFAULTMAXFILELINEDEPTH), Values.DEFAULTMAXFILELINEDEPTH));
-                } catch (Exception ex) {
-                    Singleton.getLogger().info("Indexed file appears to binary: " + filepath);
-                }
+                List<String> code = this.getCode(doc, filepath);
 
                 codeResult = new CodeResult(code, null);
                 codeResult.setFilePath(filepath);
@@ -143,12 +258,13 @@ public class CodeSearcher implements ICodeSearcher {
                 codeResult.setCodeOwner(doc.get(Values.CODEOWNER));
                 codeResult.setCodeId(doc.get(Values.CODEID));
             }
-
-            reader.close();
         }
         catch(Exception ex) {
             LOGGER.severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.releaseSearcher(searcherManager, searcher);
+        }
 
         return codeResult;
     }
@@ -161,19 +277,24 @@ public class CodeSearcher implements ICodeSearcher {
         List<CodeFacetOwner> repoFacetOwners = new ArrayList<>();
         SearchcodeLib searchcodeLib = Singleton.getSearchCodeLib();
 
+        ReferenceManager<IndexSearcher> searcherManager = null;
+        IndexSearcher searcher = null;
+
         try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
-            IndexSearcher searcher = new IndexSearcher(reader);
+            searcherManager = Singleton.getCodeIndexer().getSearcherManager();
+            searcher = searcherManager.acquire();
+            IndexReader reader = searcher.getIndexReader();
 
             Analyzer analyzer = new CodeAnalyzer();
             QueryParser parser = new QueryParser(CODEFIELD, analyzer);
             Query query = parser.parse(Values.REPONAME + ":" + repoName);
 
-            TopDocs results = searcher.search(query, Integer.MAX_VALUE);
+            FacetsCollector facetsCollector = new FacetsCollector();
+            TopDocs results = FacetsCollector.search(searcher, query, Integer.MAX_VALUE, facetsCollector);
             ScoreDoc[] hits = results.scoreDocs;
 
             for (int i = 0; i < results.totalHits; i++) {
-                Document doc = searcher.doc(hits[i].doc);
+                Document doc = searcher.doc(hits[i].doc, PROJECTSTATSFIELDS);
 
                 if (!searchcodeLib.languageCostIgnore(doc.get(Values.LANGUAGENAME))) {
                     totalCodeLines += Singleton.getHelpers().tryParseInt(doc.get(Values.CODELINES), "0");
@@ -181,14 +302,15 @@ public class CodeSearcher implements ICodeSearcher {
             }
 
             totalFiles = results.totalHits;
-            codeFacetLanguages = this.getLanguageFacetResults(searcher, reader, query);
-            repoFacetOwners = this.getOwnerFacetResults(searcher, reader, query);
-
-            reader.close();
+            codeFacetLanguages = this.getLanguageFacetResults(reader, facetsCollector);
+            repoFacetOwners = this.getOwnerFacetResults(reader, facetsCollector);
         }
         catch(Exception ex) {
             LOGGER.severe("CodeSearcher getProjectStats caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.releaseSearcher(searcherManager, searcher);
+        }
 
         return new ProjectStats(totalCodeLines, totalFiles, codeFacetLanguages, repoFacetOwners);
     }
@@ -203,9 +325,12 @@ public class CodeSearcher implements ICodeSearcher {
         List<String> fileLocations = new ArrayList<>(REPOPAGELIMIT);
         int start = REPOPAGELIMIT * page;
 
+        ReferenceManager<IndexSearcher> searcherManager = null;
+        IndexSearcher searcher = null;
+
         try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
-            IndexSearcher searcher = new IndexSearcher(reader);
+            searcherManager = Singleton.getCodeIndexer().getSearcherManager();
+            searcher = searcherManager.acquire();
 
             Analyzer analyzer = new CodeAnalyzer();
             QueryParser parser = new QueryParser(CODEFIELD, analyzer);
@@ -216,25 +341,167 @@ public class CodeSearcher implements ICodeSearcher {
             ScoreDoc[] hits = results.scoreDocs;
 
             for (int i = start; i < end; i++) {
-                Document doc = searcher.doc(hits[i].doc);
+                Document doc = searcher.doc(hits[i].doc, REPODOCUMENTFIELDS);
                 fileLocations.add(doc.get(Values.PATH));
             }
-
-            reader.close();
         }
         catch(Exception ex) {
             LOGGER.severe("CodeSearcher getRepoDocuments caught a " + ex.getClass() + " on page " + page + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.releaseSearcher(searcherManager, searcher);
+        }
 
         return fileLocations;
     }
 
+    /**
+     * Returns the path of every document in the repository in one pass over the index. Paths are read from
+     * doc values so no stored fields need to be loaded except for documents indexed before they were added.
+     */
+    public Set<String> getRepoPaths(String repoName) {
+        Set<String> paths = new HashSet<>();
+
+        ReferenceManager<IndexSearcher> searcherManager = null;
+        IndexSearcher searcher = null;
+
+        try {
+            searcherManager = Singleton.getCodeIndexer().getSearcherManager();
+            searcher = searcherManager.acquire();
+
+            Analyzer analyzer = new CodeAnalyzer();
+            QueryParser parser = new QueryParser(CODEFIELD, analyzer);
+            Query query = parser.parse(Values.REPONAME + ":" + repoName);
+
+            searcher.search(query, new SimpleCollector() {
+                private LeafReader reader;
+                private SortedDocValues pathValues;
+
+                @Override
+                protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                    this.reader = context.reader();
+                    // Null for segments written before the path was kept as doc values
+                    this.pathValues = this.reader.getSortedDocValues(Values.PATH);
+                }
+
+                @Override
+                public void collect(int doc) throws IOException {
+                    String path = getSortedValue(this.pathValues, doc);
+                    paths.add(path != null ? path : this.reader.document(doc, REPODOCUMENTFIELDS).get(Values.PATH));
+                }
+
+                @Override
+                public boolean needsScores() {
+                    return false;
+                }
+            });
+        }
+        catch(Exception ex) {
+            LOGGER.severe("CodeSearcher getRepoPaths caught a " + ex.getClass() + " for " + repoName + "\n with message: " + ex.getMessage());
+        }
+        finally {
+            this.releaseSearcher(searcherManager, searcher);
+        }
+
+        return paths;
+    }
+
+    /**
+     * Returns what the index holds for every file in the repository keyed by path. Loaded once at the start of a walk
+     * over the repository so files which have not changed since they were indexed can be skipped. Everything is read
+     * from doc values in one pass over the index, stored fields are only loaded for documents indexed before them.
+     */
+    public Map<String, FileManifestEntry> getRepoManifest(String repoName) {
+        Map<String, FileManifestEntry> manifest = new HashMap<>();
+
+        ReferenceManager<IndexSearcher> searcherManager = null;
+        IndexSearcher searcher = null;
+
+        try {
+            searcherManager = Singleton.getCodeIndexer().getSearcherManager();
+            searcher = searcherManager.acquire();
+
+            Analyzer analyzer = new CodeAnalyzer();
+            QueryParser parser = new QueryParser(CODEFIELD, analyzer);
+            Query query = parser.parse(Values.REPONAME + ":" + repoName);
+
+            searcher.search(query, new SimpleCollector() {
+                private LeafReader reader;
+                private SortedDocValues pathValues;
+                private SortedDocValues md5Values;
+                private NumericDocValues sizeValues;
+                private NumericDocValues modifiedValues;
+                private Bits hasStat;
+
+                @Override
+                protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                    // Segments written before the doc values were added do not have them
+                    this.reader = context.reader();
+                    this.pathValues = this.reader.getSortedDocValues(Values.PATH);
+                    this.md5Values = this.reader.getSortedDocValues(Values.MD5HASH);
+                    this.sizeValues = this.reader.getNumericDocValues(Values.FILESIZE);
+                    this.modifiedValues = this.reader.getNumericDocValues(Values.FILEMODIFIED);
+                    this.hasStat = this.sizeValues == null || this.modifiedValues == null ? null : this.reader.getDocsWithField(Values.FILESIZE);
+                }
+
+                @Override
+                public void collect(int doc) throws IOException {
+                    String path = getSortedValue(this.pathValues, doc);
+                    String md5hash = getSortedValue(this.md5Values, doc);
+                    boolean stat = this.hasStat != null && this.hasStat.get(doc);
+
+                    if (path != null && md5hash != null && stat) {
+                        manifest.put(path, new FileManifestEntry(md5hash, this.sizeValues.get(doc), this.modifiedValues.get(doc)));
+                        return;
+                    }
+
+                    // Documents indexed before size and modified were kept can still be matched on their hash
+                    Document document = this.reader.document(doc, MANIFESTFIELDS);
+                    Number fileSize = document.getField(Values.FILESIZE) == null ? null : document.getField(Values.FILESIZE).numericValue();
+                    Number fileModified = document.getField(Values.FILEMODIFIED) == null ? null : document.getField(Values.FILEMODIFIED).numericValue();
+
+                    manifest.put(path == null ? document.get(Values.PATH) : path, new FileManifestEntry(md5hash == null ? document.get(Values.MD5HASH) : md5hash,
+                            stat ? this.sizeValues.get(doc) : fileSize == null ? -1 : fileSize.longValue(),
+                            stat ? this.modifiedValues.get(doc) : fileModified == null ? -1 : fileModified.longValue()));
+                }
+
+                @Override
+                public boolean needsScores() {
+                    return false;
+                }
+            });
+        }
+        catch(Exception ex) {
+            LOGGER.severe("CodeSearcher getRepoManifest caught a " + ex.getClass() + " for " + repoName + "\n with message: " + ex.getMessage());
+        }
+        finally {
+            this.releaseSearcher(searcherManager, searcher);
+        }
+
+        return manifest;
+    }
+
+    /**
+     * Returns the value of the document or null if it has none
+     */
+    private static String getSortedValue(SortedDocValues values, int doc) {
+        if (values == null || values.getOrd(doc) == -1) {
+            return null;
+        }
+
+        return values.get(doc).utf8ToString();
+    }
+
     /**
      * Only really used internally but does the heavy lifting of actually converting the index document on disk to the
      * format used internally including reading the file from disk.
      */
     public SearchResult doPagingSearch(IndexReader reader, IndexSearcher searcher, Query query, int page) throws IOException {
-        TopDocs results = searcher.search(query, 20 * this.PAGELIMIT); // 20 pages worth of documents
+        // Collect the top documents and the matches for facet counting in a single pass over the query. When the
+        // searcher has an executor each slice of the index is collected in parallel and the results merged
+        PagingCollectorManager pagingCollectorManager = new PagingCollectorManager(Math.max(1, Math.min(20 * this.PAGELIMIT, reader.maxDoc()))); // 20 pages worth of documents
+        TopDocs results = searcher.search(query, pagingCollectorManager);
+        FacetsCollector facetsCollector = pagingCollectorManager.getFacetsCollector();
         ScoreDoc[] hits = results.scoreDocs;
 
         int numTotalHits = results.totalHits;
@@ -249,6 +516,7 @@ public class CodeSearcher implements ICodeSearcher {
         List<Integer> pages = this.calculatePages(numTotalHits, noPages);
 
         List<CodeResult> codeResults = new ArrayList<>();
+        List<List<String>> queryTokens = this.getQueryTokens(searcher, query);
 
         for (int i = start; i < end; i++) {
             Document doc = searcher.doc(hits[i].doc);
@@ -259,27 +527,13 @@ public class CodeSearcher implements ICodeSearcher {
                 // This line is occasionally useful for debugging ranking, but not useful enough to have as log info
                 //System.out.println("doc=" + hits[i].doc + " score=" + hits[i].score);
 
-                List<String> code = new ArrayList<>();
-                try {
-                    // This should probably be limited by however deep we are meant to look into the file
-                    // or the value we use here whichever is less
-                    code = Singleton.getHelpers().readFileLinesGuessEncoding(filepath, Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.MAXFILELINEDEPTH, Values.DEFAULTMAXFILELINEDEPTH), Values.DEFAULTMAXFILELINEDEPTH));
-                }
-                catch(Exception ex) {
-                    LOGGER.warning("Indexed file appears to binary or missing: " + filepath);
-                }
+                List<String> code = this.getCode(doc, filepath);
+                CodeResult cr = this.getCodeResult(doc, hits[i].doc, code);
 
-                CodeResult cr = new CodeResult(code, null);
-                cr.setCodePath(doc.get(Values.FILELOCATIONFILENAME));
-                cr.setFileName(doc.get(Values.FILENAME));
-                cr.setLanguageName(doc.get(Values.LANGUAGENAME));
-                cr.setMd5hash(doc.get(Values.MD5HASH));
-                cr.setCodeLines(doc.get(Values.CODELINES));
-                cr.setDocumentId(hits[i].doc);
-                cr.setRepoLocation(doc.get(Values.REPOLOCATION));
-                cr.setRepoName(doc.get(Values.REPONAME));
-                cr.setCodeOwner(doc.get(Values.CODEOWNER));
-                cr.setCodeId(doc.get(Values.CODEID));
+                // Offsets are into the stored contents so can only be used when the code came from there
+                if (doc.get(Values.STOREDCONTENTS) != null) {
+                    cr.setMatchingLines(this.getMatchingLines(reader, hits[i].doc, queryTokens, code));
+                }
 
                 codeResults.add(cr);
             } else {
@@ -287,13 +541,438 @@ public class CodeSearcher implements ICodeSearcher {
             }
         }
 
-        List<CodeFacetLanguage> codeFacetLanguages = this.getLanguageFacetResults(searcher, reader, query);
-        List<CodeFacetRepo> repoFacetLanguages = this.getRepoFacetResults(searcher, reader, query);
-        List<CodeFacetOwner> repoFacetOwner= this.getOwnerFacetResults(searcher, reader, query);
+        List<CodeFacetLanguage> codeFacetLanguages = this.getLanguageFacetResults(reader, facetsCollector);
+        List<CodeFacetRepo> repoFacetLanguages = this.getRepoFacetResults(reader, facetsCollector);
+        List<CodeFacetOwner> repoFacetOwner= this.getOwnerFacetResults(reader, facetsCollector);
 
         return new SearchResult(numTotalHits, page, query.toString(), codeResults, pages, codeFacetLanguages, repoFacetLanguages, repoFacetOwner);
     }
 
+    /**
+     * Finds the files which contain the literal text exactly. When trigrams and contents are stored in the index
+     * only the files containing every trigram of the text are checked for it, otherwise or if the text is too short
+     * to have a trigram this is a normal search.
+     */
+    public SearchResult literalSearch(String literal, List<String> filters, int page) {
+        if (!this.INDEXTRIGRAMS || !this.INDEXSTORECONTENT || literal.length() < CodeTrigramAnalyzer.GRAMSIZE) {
+            return this.search(literal, filters, page);
+        }
+
+        SearchResult searchResult = new SearchResult(0, page, literal, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        statsService.incrementSearchCount();
+
+        ReferenceManager<IndexSearcher> searcherManager = null;
+        IndexSearcher searcher = null;
+
+        try {
+            LOGGER.info("Literal search for: " + literal);
+            LOGGER.searchLog(literal + " " + page);
+
+            searcherManager = Singleton.getCodeIndexer().getSearcherManager();
+            searcher = searcherManager.acquire();
+
+            searchResult = this.doLiteralSearch(searcher, literal, filters, page);
+        }
+        catch(Exception ex) {
+            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        }
+        finally {
+            this.releaseSearcher(searcherManager, searcher);
+        }
+
+        return searchResult;
+    }
+
+    /**
+     * Intersects the trigrams of the literal to find candidate files then checks the stored contents of each
+     * candidate. Files indexed without their contents are never read from disk and so cannot match. The trigrams
+     * are lower cased so the check against the contents is what makes the search case sensitive.
+     */
+    public SearchResult doLiteralSearch(IndexSearcher searcher, String literal, List<String> filters, int page) throws IOException, ParseException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.REGEXTIMEOUTMILLIS);
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (String trigram: new CodeTrigramAnalyzer().getTrigrams(literal)) {
+            builder.add(new TermQuery(new Term(Values.CONTENTTRIGRAMS, trigram)), BooleanClause.Occur.FILTER);
+        }
+        this.addFilters(builder, filters);
+
+        List<Integer> candidates = this.getCandidates(searcher, new ConstantScoreQuery(builder.build()));
+        List<Integer> matches = this.checkCandidates(searcher, candidates, deadline, doc -> {
+            String storedContents = doc.get(Values.STOREDCONTENTS);
+            return storedContents != null && storedContents.contains(literal);
+        });
+
+        return this.getMatchedResult(searcher, matches, page, literal, line -> line.contains(literal));
+    }
+
+    /**
+     * Finds the files with text matching the regular expression. Candidate files are those containing the trigrams
+     * the expression requires when they are indexed and which match the filters. Candidates are checked in parallel
+     * and the search gives up on checking more once it has taken too long or seen too many candidates.
+     */
+    public SearchResult regexSearch(String regex, List<String> filters, int page) {
+        SearchResult searchResult = new SearchResult(0, page, regex, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        statsService.incrementSearchCount();
+
+        ReferenceManager<IndexSearcher> searcherManager = null;
+        IndexSearcher searcher = null;
+
+        try {
+            Pattern pattern = Pattern.compile(regex);
+            LOGGER.info("Regex search for: " + regex);
+            LOGGER.searchLog(regex + " " + page);
+
+            searcherManager = Singleton.getCodeIndexer().getSearcherManager();
+            searcher = searcherManager.acquire();
+
+            searchResult = this.doRegexSearch(searcher, pattern, filters, page);
+        }
+        catch(Exception ex) {
+            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        }
+        finally {
+            this.releaseSearcher(searcherManager, searcher);
+        }
+
+        return searchResult;
+    }
+
+    public SearchResult doRegexSearch(IndexSearcher searcher, Pattern pattern, List<String> filters, int page) throws IOException, ParseException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.REGEXTIMEOUTMILLIS);
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        builder.add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
+
+        if (this.INDEXTRIGRAMS) {
+            for (String trigram: new CodeTrigramAnalyzer().getRegexTrigrams(pattern.pattern())) {
+                builder.add(new TermQuery(new Term(Values.CONTENTTRIGRAMS, trigram)), BooleanClause.Occur.FILTER);
+            }
+        }
+        this.addFilters(builder, filters);
+
+        List<Integer> candidates = this.getCandidates(searcher, new ConstantScoreQuery(builder.build()));
+        List<Integer> matches = this.checkCandidates(searcher, candidates, deadline,
+                doc -> regexFind(pattern, String.join("\n", this.getCode(doc, doc.get(Values.PATH))), deadline));
+
+        // Lines are only shown for the page so get a fresh time allowance
+        long linesDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.REGEXTIMEOUTMILLIS);
+        return this.getMatchedResult(searcher, matches, page, pattern.pattern(), line -> regexFind(pattern, line, linesDeadline));
+    }
+
+    private void addFilters(BooleanQuery.Builder builder, List<String> filters) throws ParseException {
+        QueryParser parser = new QueryParser(CODEFIELD, new CodeAnalyzer());
+        for (String filter: filters) {
+            builder.add(parser.parse(filter), BooleanClause.Occur.FILTER);
+        }
+    }
+
+    /**
+     * Returns the documents matching the query in index order up to the most candidates a search will check
+     */
+    private List<Integer> getCandidates(IndexSearcher searcher, Query query) throws IOException {
+        List<Integer> candidates = new ArrayList<>();
+        int maxCandidates = this.REGEXMAXCANDIDATES;
+
+        searcher.search(query, new SimpleCollector() {
+            private int docBase;
+
+            @Override
+            protected void doSetNextReader(LeafReaderContext context) {
+                if (candidates.size() >= maxCandidates) {
+                    throw new CollectionTerminatedException();
+                }
+                this.docBase = context.docBase;
+            }
+
+            @Override
+            public void collect(int doc) {
+                candidates.add(this.docBase + doc);
+
+                if (candidates.size() >= maxCandidates) {
+                    throw new CollectionTerminatedException();
+                }
+            }
+
+            @Override
+            public boolean needsScores() {
+                return false;
+            }
+        });
+
+        return candidates;
+    }
+
+    /**
+     * Checks the candidates in parallel returning those which match in index order. Each thread checks a run of
+     * candidates, stopping once there are enough matches to fill every page or the deadline has passed.
+     */
+    private List<Integer> checkCandidates(IndexSearcher searcher, List<Integer> candidates, long deadline, Predicate<Document> contentsMatch) throws InterruptedException {
+        int limit = 20 * this.PAGELIMIT;
+        int threads = Math.max(1, Math.min(REGEX_THREADS, candidates.size()));
+        int chunkSize = (candidates.size() + threads - 1) / threads;
+        AtomicInteger found = new AtomicInteger(0);
+        List<Callable<List<Integer>>> tasks = new ArrayList<>();
+
+        for (int i = 0; i < candidates.size(); i += chunkSize) {
+            List<Integer> chunk = candidates.subList(i, Math.min(candidates.size(), i + chunkSize));
+
+            tasks.add(() -> {
+                List<Integer> chunkMatches = new ArrayList<>();
+
+                for (int docId: chunk) {
+                    if (found.get() >= limit || System.nanoTime() > deadline) {
+                        break;
+                    }
+
+                    if (contentsMatch.test(searcher.doc(docId))) {
+                        chunkMatches.add(docId);
+                        found.incrementAndGet();
+                    }
+                }
+
+                return chunkMatches;
+            });
+        }
+
+        List<Integer> matches = new ArrayList<>();
+
+        // Checks still running at the deadline are cancelled and whatever they found is lost
+        for (Future<List<Integer>> future: REGEX_EXECUTOR.invokeAll(tasks, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+            try {
+                if (!future.isCancelled()) {
+                    matches.addAll(future.get());
+                }
+            }
+            catch (ExecutionException ex) {
+                LOGGER.warning("CodeSearcher checkCandidates caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+            }
+        }
+
+        Collections.sort(matches);
+        if (matches.size() > limit) {
+            matches = matches.subList(0, limit);
+        }
+
+        return matches;
+    }
+
+    /**
+     * Builds the page of results from documents which were matched by checking their contents. The lines which
+     * matched are found the same way so they can be shown.
+     */
+    private SearchResult getMatchedResult(IndexSearcher searcher, List<Integer> matches, int page, String query, Predicate<String> lineMatches) throws IOException {
+        int numTotalHits = matches.size();
+        int start = this.PAGELIMIT * page;
+        int end = Math.min(numTotalHits, (this.PAGELIMIT * (page + 1)));
+        int noPages = numTotalHits / this.PAGELIMIT;
+
+        if (noPages > 20) {
+            noPages = 19;
+        }
+
+        List<CodeResult> codeResults = new ArrayList<>();
+
+        for (int i = start; i < end; i++) {
+            Document doc = searcher.doc(matches.get(i));
+            List<String> code = this.getCode(doc, doc.get(Values.PATH));
+            CodeResult cr = this.getCodeResult(doc, matches.get(i), code);
+
+            Map<Integer, Integer> matchingLines = new TreeMap<>();
+            for (int line = 0; line < code.size(); line++) {
+                if (lineMatches.test(code.get(line))) {
+                    matchingLines.put(line, 1);
+                }
+            }
+            cr.setMatchingLines(matchingLines);
+
+            codeResults.add(cr);
+        }
+
+        IndexReader reader = searcher.getIndexReader();
+        FacetsCollector facetsCollector = this.getFacetsCollector(reader, matches);
+
+        return new SearchResult(numTotalHits, page, query, codeResults, this.calculatePages(numTotalHits, noPages),
+                this.getLanguageFacetResults(reader, facetsCollector), this.getRepoFacetResults(reader, facetsCollector), this.getOwnerFacetResults(reader, facetsCollector));
+    }
+
+    /**
+     * Collects the matched documents for facet counting as if a query had found them
+     */
+    private FacetsCollector getFacetsCollector(IndexReader reader, List<Integer> matches) throws IOException {
+        FacetsCollector facetsCollector = new FacetsCollector();
+        List<LeafReaderContext> leaves = reader.leaves();
+        LeafReaderContext leaf = null;
+        LeafCollector leafCollector = null;
+
+        for (int docId: matches) {
+            if (leaf == null || docId >= leaf.docBase + leaf.reader().maxDoc()) {
+                leaf = leaves.get(ReaderUtil.subIndex(docId, leaves));
+                leafCollector = facetsCollector.getLeafCollector(leaf);
+            }
+
+            leafCollector.collect(docId - leaf.docBase);
+        }
+
+        return facetsCollector;
+    }
+
+    /**
+     * True if the pattern is found in the text before the deadline. Backtracking on some expressions can take
+     * far longer than the text is long so the deadline is checked as the matcher reads the text.
+     */
+    public static boolean regexFind(Pattern pattern, CharSequence text, long deadline) {
+        try {
+            return pattern.matcher(new DeadlineCharSequence(text, deadline)).find();
+        }
+        catch (DeadlineCharSequence.DeadlineExceededException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Splits each term of the query into the tokens used by the offsets field. A term such as re.compile
+     * becomes re and compile which must both appear on a line for it to count as matching.
+     */
+    public List<List<String>> getQueryTokens(IndexSearcher searcher, Query query) {
+        List<List<String>> queryTokens = new ArrayList<>();
+
+        try {
+            Set<Term> terms = new HashSet<>();
+            searcher.createNormalizedWeight(query, false).extractTerms(terms);
+            CodeOffsetsAnalyzer analyzer = new CodeOffsetsAnalyzer();
+
+            for (Term term: terms) {
+                if (CODEFIELD.equals(term.field())) {
+                    List<String> tokens = analyzer.getTokens(term.text());
+                    if (!tokens.isEmpty()) {
+                        queryTokens.add(tokens);
+                    }
+                }
+            }
+        }
+        catch (IOException ex) {
+            LOGGER.warning("CodeSearcher getQueryTokens caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        }
+
+        return queryTokens;
+    }
+
+    /**
+     * Uses the offsets stored in the term vector of the document to work out which lines each query term
+     * appears on without looking at the text of the lines. Returns a map of line number to how many query
+     * terms matched that line, or null if the document was indexed without offsets.
+     */
+    public Map<Integer, Integer> getMatchingLines(IndexReader reader, int docId, List<List<String>> queryTokens, List<String> code) {
+        if (queryTokens.isEmpty()) {
+            return null;
+        }
+
+        try {
+            Terms termVector = reader.getTermVector(docId, Values.CONTENTOFFSETS);
+            if (termVector == null) {
+                return null;
+            }
+
+            // Where each line starts in the contents which were indexed with a newline between each line
+            int[] lineStarts = new int[code.size()];
+            int offset = 0;
+            for (int i = 0; i < code.size(); i++) {
+                lineStarts[i] = offset;
+                offset += code.get(i).length() + 1;
+            }
+
+            TermsEnum termsEnum = termVector.iterator();
+            PostingsEnum postingsEnum = null;
+            Map<String, BitSet> tokenLines = new HashMap<>();
+
+            for (List<String> tokens: queryTokens) {
+                for (String token: tokens) {
+                    if (tokenLines.containsKey(token)) {
+                        continue;
+                    }
+
+                    BitSet lines = new BitSet();
+                    if (termsEnum.seekExact(new BytesRef(token))) {
+                        postingsEnum = termsEnum.postings(postingsEnum, PostingsEnum.OFFSETS);
+                        postingsEnum.nextDoc();
+
+                        for (int i = 0; i < postingsEnum.freq(); i++) {
+                            postingsEnum.nextPosition();
+                            int line = Arrays.binarySearch(lineStarts, postingsEnum.startOffset());
+                            line = line < 0 ? -line - 2 : line;
+
+                            if (line >= 0) {
+                                lines.set(line);
+                            }
+                        }
+                    }
+                    tokenLines.put(token, lines);
+                }
+            }
+
+            Map<Integer, Integer> matchingLines = new TreeMap<>();
+            for (List<String> tokens: queryTokens) {
+                BitSet lines = (BitSet) tokenLines.get(tokens.get(0)).clone();
+                for (String token: tokens) {
+                    lines.and(tokenLines.get(token));
+                }
+
+                for (int line = lines.nextSetBit(0); line >= 0; line = lines.nextSetBit(line + 1)) {
+                    matchingLines.merge(line, 1, Integer::sum);
+                }
+            }
+
+            return matchingLines;
+        }
+        catch (IOException ex) {
+            LOGGER.warning("CodeSearcher getMatchingLines caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        }
+
+        return null;
+    }
+
+    private CodeResult getCodeResult(Document doc, int docId, List<String> code) {
+        CodeResult cr = new CodeResult(code, null);
+        cr.setCodePath(doc.get(Values.FILELOCATIONFILENAME));
+        cr.setFileName(doc.get(Values.FILENAME));
+        cr.setLanguageName(doc.get(Values.LANGUAGENAME));
+        cr.setMd5hash(doc.get(Values.MD5HASH));
+        cr.setCodeLines(doc.get(Values.CODELINES));
+        cr.setDocumentId(docId);
+        cr.setRepoLocation(doc.get(Values.REPOLOCATION));
+        cr.setRepoName(doc.get(Values.REPONAME));
+        cr.setCodeOwner(doc.get(Values.CODEOWNER));
+        cr.setCodeId(doc.get(Values.CODEID));
+        return cr;
+    }
+
+    /**
+     * Returns the lines of the file for a document. Uses the contents stored in the index if they were
+     * kept at index time otherwise falls back to reading the file from the repository checkout.
+     */
+    private List<String> getCode(Document doc, String filepath) {
+        int maxFileLineDepth = Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.MAXFILELINEDEPTH, Values.DEFAULTMAXFILELINEDEPTH), Values.DEFAULTMAXFILELINEDEPTH);
+        String storedContents = doc.get(Values.STOREDCONTENTS);
+
+        if (storedContents != null) {
+            List<String> code = Arrays.asList(storedContents.split("\n", -1));
+            return code.size() > maxFileLineDepth ? new ArrayList<>(code.subList(0, maxFileLineDepth)) : code;
+        }
+
+        List<String> code = new ArrayList<>();
+        try {
+            // This should probably be limited by however deep we are meant to look into the file
+            // or the value we use here whichever is less
+            code = Singleton.getHelpers().readFileLinesGuessEncoding(filepath, maxFileLineDepth);
+        }
+        catch(Exception ex) {
+            LOGGER.warning("Indexed file appears to binary or missing: " + filepath);
+        }
+
+        return code;
+    }
+
     public List<Integer> calculatePages(int numTotalHits, int noPages) {
         List<Integer> pages = new ArrayList<>();
         if (numTotalHits != 0) {
@@ -313,13 +992,11 @@ public class CodeSearcher implements ICodeSearcher {
     /**
      * Returns the matching language facets for a given query
      */
-    private List<CodeFacetLanguage> getLanguageFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
+    private List<CodeFacetLanguage> getLanguageFacetResults(IndexReader reader, FacetsCollector fc) {
         List<CodeFacetLanguage> codeFacetLanguages = new ArrayList<>();
 
         try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.LANGUAGENAME);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
+            SortedSetDocValuesReaderState state = Singleton.getFacetStateCache().getState(reader, Values.LANGUAGENAME);
             Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
             FacetResult result = facets.getTopChildren(200, Values.LANGUAGENAME);
 
@@ -346,13 +1023,11 @@ public class CodeSearcher implements ICodeSearcher {
     /**
      * Returns the matching repository facets for a given query
      */
-    private List<CodeFacetRepo> getRepoFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
+    private List<CodeFacetRepo> getRepoFacetResults(IndexReader reader, FacetsCollector fc) {
         List<CodeFacetRepo> codeFacetRepo = new ArrayList<>();
 
         try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.REPONAME);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
+            SortedSetDocValuesReaderState state = Singleton.getFacetStateCache().getState(reader, Values.REPONAME);
             Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
             FacetResult result = facets.getTopChildren(200, Values.REPONAME);
 
@@ -379,13 +1054,11 @@ public class CodeSearcher implements ICodeSearcher {
     /**
      * Returns the matching owner facets for a given query
      */
-    private List<CodeFacetOwner> getOwnerFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
+    private List<CodeFacetOwner> getOwnerFacetResults(IndexReader reader, FacetsCollector fc) {
         List<CodeFacetOwner> codeFacetRepo = new ArrayList<>();
 
         try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.CODEOWNER);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
+            SortedSetDocValuesReaderState state = Singleton.getFacetStateCache().getState(reader, Values.CODEOWNER);
             Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
             FacetResult result = facets.getTopChildren(200, Values.CODEOWNER);
 
@@ -408,4 +1081,126 @@ public class CodeSearcher implements ICodeSearcher {
 
         return codeFacetRepo;
     }
+
+    /**
+     * Collects the top documents and the documents to count facets over for each slice of the index
+     * and merges them once every slice is done
+     */
+    private static class PagingCollectorManager implements CollectorManager<PagingCollector, TopDocs> {
+        private final int numHits;
+        private final List<FacetsCollector.MatchingDocs> matchingDocs = new ArrayList<>();
+
+        PagingCollectorManager(int numHits) {
+            this.numHits = numHits;
+        }
+
+        @Override
+        public PagingCollector newCollector() {
+            return new PagingCollector(this.numHits);
+        }
+
+        @Override
+        public TopDocs reduce(Collection<PagingCollector> collectors) throws IOException {
+            TopDocs[] topDocs = new TopDocs[collectors.size()];
+            int i = 0;
+
+            for (PagingCollector collector: collectors) {
+                topDocs[i++] = collector.topScoreDocCollector.topDocs();
+                this.matchingDocs.addAll(collector.facetsCollector.getMatchingDocs());
+            }
+
+            return TopDocs.merge(this.numHits, topDocs);
+        }
+
+        /**
+         * The facet matches of every slice combined so facets can be counted as if a single collector was used
+         */
+        public FacetsCollector getFacetsCollector() {
+            return new FacetsCollector() {
+                @Override
+                public List<MatchingDocs> getMatchingDocs() {
+                    return matchingDocs;
+                }
+            };
+        }
+    }
+
+    private static class PagingCollector implements Collector {
+        private final TopScoreDocCollector topScoreDocCollector;
+        private final FacetsCollector facetsCollector = new FacetsCollector();
+        private final Collector collector;
+
+        PagingCollector(int numHits) {
+            this.topScoreDocCollector = TopScoreDocCollector.create(numHits);
+            this.collector = MultiCollector.wrap(this.topScoreDocCollector, this.facetsCollector);
+        }
+
+        @Override
+        public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+            return this.collector.getLeafCollector(context);
+        }
+
+        @Override
+        public boolean needsScores() {
+            return this.collector.needsScores();
+        }
+    }
+
+    /**
+     * Returns the searcher to the pool it was acquired from
+     */
+    private void releaseSearcher(ReferenceManager<IndexSearcher> searcherManager, IndexSearcher searcher) {
+        if (searcherManager == null || searcher == null) {
+            return;
+        }
+
+        try {
+            searcherManager.release(searcher);
+        }
+        catch (IOException ex) {
+            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Text which stops a regular expression reading it once the deadline has passed
+     */
+    private static class DeadlineCharSequence implements CharSequence {
+        private final CharSequence text;
+        private final long deadline;
+        private int reads = 0;
+
+        DeadlineCharSequence(CharSequence text, long deadline) {
+            this.text = text;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public char charAt(int index) {
+            // Checking the time on every read would slow down well behaved expressions
+            if (++this.reads % 4096 == 0 && System.nanoTime() > this.deadline) {
+                throw new DeadlineExceededException();
+            }
+
+            return this.text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return this.text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new DeadlineCharSequence(this.text.subSequence(start, end), this.deadline);
+        }
+
+        @Override
+        public String toString() {
+            return this.text.toString();
+        }
+
+        private static class DeadlineExceededException extends RuntimeException {
+        }
+    }
 }
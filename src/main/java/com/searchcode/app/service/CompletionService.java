@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.10
+ */
+
+package com.searchcode.app.service;
+
+import com.searchcode.app.config.Values;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Completes what has been typed so far into repository names, file names and identifiers which appear often in the
+ * index. Everything is held in a finite state transducer weighted by how many files contain each completion so
+ * lookups only walk the typed prefix and the best few paths below it. The terms of each segment are read once and
+ * kept, so after the index changes only new segments are read before the transducer is rebuilt.
+ */
+public class CompletionService {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[\\p{L}_][\\p{L}\\p{N}_]+");
+
+    public static final int MINLENGTH = 3;
+    public static final int MAXLENGTH = 100;
+    public static final int MAXCOMPLETIONS = 50;
+
+    private final int maxTermsPerSegment;
+    private final Map<Object, Map<String, Long>> segmentWeights = new HashMap<>();
+
+    private volatile FST<Long> completions = null;
+    private long generation = -1;
+
+    public CompletionService() {
+        this(50000);
+    }
+
+    /**
+     * The most frequent identifiers and file names kept for each segment are limited as rarely used ones are not
+     * worth suggesting and would make the transducer far larger
+     */
+    public CompletionService(int maxTermsPerSegment) {
+        this.maxTermsPerSegment = maxTermsPerSegment;
+    }
+
+    /**
+     * Returns up to count completions of the prefix, those found in the most files first
+     */
+    public List<String> complete(String prefix, int count) {
+        List<String> results = new ArrayList<>();
+        FST<Long> fst = this.completions;
+
+        if (fst == null || prefix == null || prefix.trim().isEmpty() || count <= 0) {
+            return results;
+        }
+
+        BytesRef prefixBytes = new BytesRef(prefix.trim().toLowerCase());
+
+        try {
+            FST.BytesReader bytesReader = fst.getBytesReader();
+            FST.Arc<Long> arc = fst.getFirstArc(new FST.Arc<>());
+            Long output = fst.outputs.getNoOutput();
+
+            for (int i = 0; i < prefixBytes.length; i++) {
+                if (fst.findTargetArc(prefixBytes.bytes[prefixBytes.offset + i] & 0xFF, arc, arc, bytesReader) == null) {
+                    return results;
+                }
+                output = fst.outputs.add(output, arc.output);
+            }
+
+            Util.TopResults<Long> topResults = Util.shortestPaths(fst, arc, output, Long::compare, Math.min(count, MAXCOMPLETIONS), true);
+
+            BytesRefBuilder completion = new BytesRefBuilder();
+            for (Util.Result<Long> result: topResults) {
+                completion.copyBytes(prefixBytes);
+                for (int i = 0; i < result.input.length; i++) {
+                    completion.append((byte) result.input.ints[result.input.offset + i]);
+                }
+                results.add(completion.get().utf8ToString());
+            }
+        }
+        catch (IOException ex) {
+            Singleton.getLogger().warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        }
+
+        return results;
+    }
+
+    /**
+     * Rebuilds the completions if the index searchers have changed since they were last built
+     */
+    public void refresh() {
+        CodeIndexer codeIndexer = Singleton.getCodeIndexer();
+        long searcherGeneration = codeIndexer.getSearcherGeneration();
+
+        synchronized (this) {
+            if (searcherGeneration == this.generation) {
+                return;
+            }
+        }
+
+        ReferenceManager<IndexSearcher> searcherManager = null;
+        IndexSearcher searcher = null;
+
+        try {
+            searcherManager = codeIndexer.getSearcherManager();
+            searcher = searcherManager.acquire();
+            this.update(searcher.getIndexReader());
+
+            synchronized (this) {
+                this.generation = searcherGeneration;
+            }
+        }
+        catch (IOException ex) {
+            Singleton.getLogger().warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        }
+        finally {
+            if (searcherManager != null && searcher != null) {
+                try {
+                    searcherManager.release(searcher);
+                }
+                catch (IOException ex) {
+                    Singleton.getLogger().warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the terms of any segments of the reader not seen before, forgets segments which have been merged away
+     * and rebuilds the completions if anything changed. Returns true if they were rebuilt.
+     */
+    public synchronized boolean update(IndexReader reader) throws IOException {
+        Set<Object> current = new HashSet<>();
+        boolean changed = false;
+
+        for (LeafReaderContext context: reader.leaves()) {
+            LeafReader leafReader = context.reader();
+            Object key = leafReader.getCoreCacheKey();
+            current.add(key);
+
+            if (!this.segmentWeights.containsKey(key)) {
+                Map<String, Long> weights = new HashMap<>();
+                this.addTerms(leafReader, Values.REPONAME, null, Integer.MAX_VALUE, weights);
+                this.addTerms(leafReader, Values.FILENAMETERMS, null, this.maxTermsPerSegment, weights);
+                this.addTerms(leafReader, Values.CONTENTS, IDENTIFIER, this.maxTermsPerSegment, weights);
+
+                this.segmentWeights.put(key, weights);
+                changed = true;
+            }
+        }
+
+        changed |= this.segmentWeights.keySet().retainAll(current);
+
+        if (changed || this.completions == null) {
+            this.completions = this.build();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Adds the most frequent terms of the field which are worth completing to along with how many files have them
+     */
+    private void addTerms(LeafReader leafReader, String field, Pattern allowed, int max, Map<String, Long> weights) throws IOException {
+        Terms terms = leafReader.terms(field);
+        if (terms == null) {
+            return;
+        }
+
+        PriorityQueue<TermWeight> top = new PriorityQueue<>((a, b) -> Long.compare(a.weight, b.weight));
+        TermsEnum termsEnum = terms.iterator();
+        BytesRef term;
+
+        while ((term = termsEnum.next()) != null) {
+            if (top.size() >= max && termsEnum.docFreq() <= top.peek().weight) {
+                continue;
+            }
+
+            String text = term.utf8ToString().toLowerCase();
+            if (text.length() < MINLENGTH || text.length() > MAXLENGTH || (allowed != null && !allowed.matcher(text).matches())) {
+                continue;
+            }
+
+            top.add(new TermWeight(text, termsEnum.docFreq()));
+            if (top.size() > max) {
+                top.poll();
+            }
+        }
+
+        for (TermWeight termWeight: top) {
+            weights.merge(termWeight.term, termWeight.weight, Long::sum);
+        }
+    }
+
+    /**
+     * Builds a transducer over every term summing the weight over all segments. Outputs are the distance from the
+     * largest weight so the shortest paths found below a prefix are the most frequent terms.
+     */
+    private FST<Long> build() throws IOException {
+        TreeMap<BytesRef, Long> sorted = new TreeMap<>();
+
+        for (Map<String, Long> weights: this.segmentWeights.values()) {
+            for (Map.Entry<String, Long> entry: weights.entrySet()) {
+                sorted.merge(new BytesRef(entry.getKey()), entry.getValue(), Long::sum);
+            }
+        }
+
+        if (sorted.isEmpty()) {
+            return null;
+        }
+
+        Builder<Long> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, PositiveIntOutputs.getSingleton());
+        IntsRefBuilder scratch = new IntsRefBuilder();
+
+        for (Map.Entry<BytesRef, Long> entry: sorted.entrySet()) {
+            builder.add(Util.toIntsRef(entry.getKey(), scratch), Integer.MAX_VALUE - Math.min(entry.getValue(), Integer.MAX_VALUE));
+        }
+
+        return builder.finish();
+    }
+
+    public long getSizeInBytes() {
+        FST<Long> fst = this.completions;
+        return fst == null ? 0 : fst.ramBytesUsed();
+    }
+
+    private static class TermWeight {
+        private final String term;
+        private final long weight;
+
+        TermWeight(String term, long weight) {
+            this.term = term;
+            this.weight = weight;
+        }
+    }
+}
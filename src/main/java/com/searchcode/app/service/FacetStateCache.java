@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.10
+ */
+
+package com.searchcode.app.service;
+
+import com.searchcode.app.util.LruCache;
+import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.index.IndexReader;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Holds the sorted set facet state for each facet field of the readers currently in use. Building the state
+ * walks every ordinal in the field so it should only happen once each time the searchers are refreshed rather
+ * than for every facet of every search. Old readers fall out of the cache as new ones are used.
+ */
+public class FacetStateCache {
+
+    private static final int MAX_ENTRIES = 32;
+
+    private final Map<String, SortedSetDocValuesReaderState> cache = Collections.synchronizedMap(new LruCache<>(MAX_ENTRIES));
+
+    /**
+     * Returns the facet state for the given reader and field creating it if this reader has not been seen before
+     */
+    public SortedSetDocValuesReaderState getState(IndexReader reader, String field) throws IOException {
+        String key = field + ":" + System.identityHashCode(reader);
+        SortedSetDocValuesReaderState state = this.cache.get(key);
+
+        // Identity hash codes are not unique so confirm it belongs to this reader
+        if (state == null || state.getOrigReader() != reader) {
+            state = new DefaultSortedSetDocValuesReaderState(reader, field);
+            this.cache.put(key, state);
+        }
+
+        return state;
+    }
+
+    public void clear() {
+        this.cache.clear();
+    }
+}
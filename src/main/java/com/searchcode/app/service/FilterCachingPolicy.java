@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.10
+ */
+
+package com.searchcode.app.service;
+
+import com.searchcode.app.config.Values;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.UsageTrackingQueryCachingPolicy;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Decides which parts of a search have their matches cached for each segment. Filters on the facet fields such as
+ * repository, language and owner are cached on large segments the first time they are used as drilling down into a
+ * few repositories is by far the most common search. Anything else is left to the usual Lucene policy which only
+ * caches queries that are used often.
+ */
+public class FilterCachingPolicy implements QueryCachingPolicy {
+
+    private static final Set<String> FILTERFIELDS = new HashSet<>(Arrays.asList(Values.REPONAME, Values.LANGUAGENAME, Values.CODEOWNER,
+            Values.DATEYEAR, Values.DATEYEARMONTH, Values.DATEYEARMONTHDAY, Values.REVISION, Values.DELETED));
+
+    private final QueryCachingPolicy filterPolicy = QueryCachingPolicy.CacheOnLargeSegments.DEFAULT;
+    private final QueryCachingPolicy defaultPolicy = new UsageTrackingQueryCachingPolicy();
+
+    @Override
+    public void onUse(Query query) {
+        this.defaultPolicy.onUse(query);
+    }
+
+    @Override
+    public boolean shouldCache(Query query, LeafReaderContext context) throws IOException {
+        if (this.isFilter(query)) {
+            return this.filterPolicy.shouldCache(query, context);
+        }
+
+        return this.defaultPolicy.shouldCache(query, context);
+    }
+
+    /**
+     * True if the query only looks at the facet fields, which are the queries the search routes filter with
+     */
+    public boolean isFilter(Query query) {
+        if (query instanceof TermQuery) {
+            return FILTERFIELDS.contains(((TermQuery) query).getTerm().field());
+        }
+
+        if (query instanceof PhraseQuery) {
+            Term[] terms = ((PhraseQuery) query).getTerms();
+            return terms.length != 0 && FILTERFIELDS.contains(terms[0].field());
+        }
+
+        if (query instanceof BoostQuery) {
+            return this.isFilter(((BoostQuery) query).getQuery());
+        }
+
+        if (query instanceof ConstantScoreQuery) {
+            return this.isFilter(((ConstantScoreQuery) query).getQuery());
+        }
+
+        if (query instanceof BooleanQuery) {
+            BooleanQuery booleanQuery = (BooleanQuery) query;
+
+            if (booleanQuery.clauses().isEmpty()) {
+                return false;
+            }
+
+            for (BooleanClause clause: booleanQuery.clauses()) {
+                if (!this.isFilter(clause.getQuery())) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+}
@@ -12,6 +12,7 @@ import java.util.List;
 public interface ICodeSearcher {
     int getTotalNumberDocumentsIndexed();
     SearchResult search(String queryString, int page);
+    SearchResult search(String queryString, List<String> filters, int page);
     CodeResult getByCodeId(String codeId);
     List<String> getRepoDocuments(String repoName, int page);
 
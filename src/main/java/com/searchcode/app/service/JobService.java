@@ -15,7 +15,7 @@ import com.searchcode.app.dao.IRepo;
 import com.searchcode.app.jobs.*;
 import com.searchcode.app.jobs.enqueue.EnqueueFileRepositoryJob;
 import com.searchcode.app.jobs.enqueue.EnqueueRepositoryJob;
-import com.searchcode.app.jobs.repository.IndexDocumentsJob;
+import com.searchcode.app.jobs.repository.IndexDocumentsWorker;
 import com.searchcode.app.jobs.repository.IndexFileRepoJob;
 import com.searchcode.app.jobs.repository.IndexGitRepoJob;
 import com.searchcode.app.jobs.repository.IndexSvnRepoJob;
@@ -33,6 +33,7 @@ import java.io.File;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -53,6 +54,7 @@ public class JobService implements IJobService {
     private int UPDATETIME = 600;
     private int FILEINDEXUPDATETIME = 3600;
     private int INDEXTIME = 1; // TODO allow this to be configurable
+    private static final long INDEXERSTOPMILLIS = 30000;
     private int NUMBERGITPROCESSORS = Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.NUMBER_GIT_PROCESSORS, Values.DEFAULT_NUMBER_GIT_PROCESSORS), Values.DEFAULT_NUMBER_GIT_PROCESSORS);
     private int NUMBERSVNPROCESSORS = Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.NUMBER_SVN_PROCESSORS, Values.DEFAULT_NUMBER_SVN_PROCESSORS), Values.DEFAULT_NUMBER_SVN_PROCESSORS);
     private int NUMBERFILEPROCESSORS = Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.NUMBER_FILE_PROCESSORS, Values.DEFAULT_NUMBER_FILE_PROCESSORS), Values.DEFAULT_NUMBER_FILE_PROCESSORS);;
@@ -62,6 +64,11 @@ public class JobService implements IJobService {
     private boolean LOWMEMORY = Boolean.parseBoolean(com.searchcode.app.util.Properties.getProperties().getProperty(Values.LOWMEMORY, Values.DEFAULTLOWMEMORY));
     private boolean SVNENABLED = Boolean.parseBoolean(com.searchcode.app.util.Properties.getProperties().getProperty(Values.SVNENABLED, Values.DEFAULTSVNENABLED));
 
+    private int NUMBERINDEXERTHREADS = Singleton.getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.NUMBER_INDEXER_THREADS, Values.DEFAULT_NUMBER_INDEXER_THREADS), Values.DEFAULT_NUMBER_INDEXER_THREADS);
+
+    private final List<IndexDocumentsWorker> indexDocumentsWorkers = new ArrayList<>();
+    private final List<Thread> indexDocumentsThreads = new ArrayList<>();
+
     public JobService() {
         this.repo = Singleton.getRepo();
         try {
@@ -274,41 +281,84 @@ public class JobService implements IJobService {
         }
     }
 
+    /**
+     * Starts a background job which rebuilds the query completions soon after the index changes
+     */
+    public void startCompletionJob() {
+        try {
+            Scheduler scheduler = Singleton.getScheduler();
+
+            JobDetail job = newJob(PopulateCompletionsJob.class)
+                    .withIdentity("completionjob")
+                    .build();
+
+            SimpleTrigger trigger = newTrigger()
+                    .withIdentity("completionjob")
+                    .withSchedule(simpleSchedule()
+                                    .withIntervalInSeconds(10)
+                                    .repeatForever()
+                    )
+                    .build();
+
+            scheduler.scheduleJob(job, trigger);
+            scheduler.start();
+        } catch (SchedulerException ex) {
+            Singleton.getLogger().severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        }
+    }
+
     /**
      * Starts all of the above jobs as per their unique requirements
      * TODO fix so this can only run once
-     * TODO move the indexer job start into method like the above ones
      */
     @Override
     public void initialJobs() {
-        try {
-            startRepositoryJobs();
-            startEnqueueJob();
-            startDeleteJob();
-            startSpellingJob();
-            startIndexerJob();
-        } catch (SchedulerException ex) {
-            Singleton.getLogger().severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        startRepositoryJobs();
+        startEnqueueJob();
+        startDeleteJob();
+        startSpellingJob();
+        startCompletionJob();
+        startIndexerJob();
+    }
+
+    /**
+     * Starts the threads which run forever indexing documents as soon as they are added to the queue
+     */
+    public synchronized void startIndexerJob() {
+        if (!this.indexDocumentsWorkers.isEmpty()) {
+            return;
+        }
+
+        for (int i = 0; i < Math.max(1, this.NUMBERINDEXERTHREADS); i++) {
+            IndexDocumentsWorker indexDocumentsWorker = new IndexDocumentsWorker(Singleton.getCodeIndexQueue(), Singleton.getCodeIndexer(), this.INDEXTIME * 1000L);
+
+            Thread indexDocumentsThread = new Thread(indexDocumentsWorker, "indexerjob" + i);
+            indexDocumentsThread.setDaemon(true);
+            indexDocumentsThread.setPriority(Thread.MIN_PRIORITY + 1);
+            indexDocumentsThread.start();
+
+            this.indexDocumentsWorkers.add(indexDocumentsWorker);
+            this.indexDocumentsThreads.add(indexDocumentsThread);
         }
     }
 
-    public void startIndexerJob() throws SchedulerException {
-        Scheduler scheduler = Singleton.getScheduler();
-        // Setup the indexer which runs forever indexing
-        JobDetail job = newJob(IndexDocumentsJob.class)
-                .withIdentity("indexerjob")
-                .build();
-
-        SimpleTrigger trigger = newTrigger()
-                .withIdentity("indexerjob")
-                .withSchedule(simpleSchedule()
-                                .withIntervalInSeconds(this.INDEXTIME)
-                                .repeatForever()
-                )
-                .build();
-
-        scheduler.scheduleJob(job, trigger);
-        scheduler.start();
+    /**
+     * Waits for the indexers to finish the batches they are working on so the index writers can be closed safely
+     */
+    public synchronized void stopIndexerJob() {
+        this.indexDocumentsWorkers.forEach(IndexDocumentsWorker::shutdown);
+
+        try {
+            for (Thread indexDocumentsThread: this.indexDocumentsThreads) {
+                indexDocumentsThread.join(INDEXERSTOPMILLIS);
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.indexDocumentsWorkers.clear();
+        this.indexDocumentsThreads.clear();
     }
 
     public void startRepositoryJobs() {
@@ -346,6 +396,9 @@ public class JobService implements IJobService {
         String repoLocation = Properties.getProperties().getProperty(Values.REPOSITORYLOCATION, Values.DEFAULTREPOSITORYLOCATION);
         String indexLocation = Properties.getProperties().getProperty(Values.INDEXLOCATION, Values.DEFAULTINDEXLOCATION);
 
+        // The writers hold locks inside the index directory so they need to be released first
+        Singleton.getCodeIndexer().closeIndexWriters();
+
         while (attempt < 3) {
             try {
                 attempt++;
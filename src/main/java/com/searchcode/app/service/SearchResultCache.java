@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.10
+ */
+
+package com.searchcode.app.service;
+
+import com.searchcode.app.dto.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Least recently used cache of search results bounded by roughly how many bytes the results use. Results are only
+ * valid for the searcher generation they were found with so rather than expiring after a time everything is dropped
+ * as soon as the index searchers are refreshed. Callers modify the results they are given so copies are stored and
+ * handed out.
+ */
+public class SearchResultCache {
+
+    private final long capacityBytes;
+    private final LinkedHashMap<String, CachedSearchResult> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long generation = -1;
+    private long cacheBytes = 0;
+    private long hitCount = 0;
+    private long lookupCount = 0;
+
+    public SearchResultCache(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+    }
+
+    /**
+     * Returns a copy of the cached result for the key if it was found with the given searcher generation
+     */
+    public synchronized SearchResult get(String key, long generation) {
+        if (this.capacityBytes <= 0) {
+            return null;
+        }
+
+        this.lookupCount++;
+        this.checkGeneration(generation);
+
+        CachedSearchResult cachedSearchResult = this.cache.get(key);
+        if (cachedSearchResult == null) {
+            return null;
+        }
+
+        this.hitCount++;
+        return copySearchResult(cachedSearchResult.searchResult);
+    }
+
+    /**
+     * Stores a copy of the result found using the given searcher generation. Results from a generation older than
+     * what is cached or larger than the whole cache are not kept.
+     */
+    public synchronized void put(String key, long generation, SearchResult searchResult) {
+        long bytes = getSearchResultBytes(searchResult);
+
+        if (generation < this.generation || bytes > this.capacityBytes) {
+            return;
+        }
+
+        this.checkGeneration(generation);
+
+        CachedSearchResult previous = this.cache.put(key, new CachedSearchResult(copySearchResult(searchResult), bytes));
+        if (previous != null) {
+            this.cacheBytes -= previous.bytes;
+        }
+        this.cacheBytes += bytes;
+
+        Iterator<CachedSearchResult> iterator = this.cache.values().iterator();
+        while (this.cacheBytes > this.capacityBytes && iterator.hasNext()) {
+            this.cacheBytes -= iterator.next().bytes;
+            iterator.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        this.cache.clear();
+        this.cacheBytes = 0;
+    }
+
+    public synchronized int size() {
+        return this.cache.size();
+    }
+
+    public long getCapacityBytes() {
+        return this.capacityBytes;
+    }
+
+    public synchronized long getCacheBytes() {
+        return this.cacheBytes;
+    }
+
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    public synchronized long getLookupCount() {
+        return this.lookupCount;
+    }
+
+    /**
+     * Rough size of a result which is dominated by the lines of code of each result
+     */
+    public static long getSearchResultBytes(SearchResult searchResult) {
+        long bytes = 256;
+
+        for (CodeResult codeResult: searchResult.getCodeResultList()) {
+            bytes += 512;
+
+            if (codeResult.getCode() != null) {
+                for (String line: codeResult.getCode()) {
+                    bytes += 48 + line.length() * 2L;
+                }
+            }
+        }
+
+        bytes += 64L * (searchResult.getLanguageFacetResults().size() + searchResult.getRepoFacetResults().size() + searchResult.getOwnerFacetResults().size());
+
+        return bytes;
+    }
+
+    private void checkGeneration(long generation) {
+        if (generation != this.generation) {
+            this.clear();
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Copies everything which is changed when results are formatted for display. The lines of code are never
+     * modified so are shared.
+     */
+    private static SearchResult copySearchResult(SearchResult searchResult) {
+        List<CodeResult> codeResults = new ArrayList<>(searchResult.getCodeResultList().size());
+        for (CodeResult codeResult: searchResult.getCodeResultList()) {
+            codeResults.add(new CodeResult(codeResult));
+        }
+
+        List<CodeFacetLanguage> languageFacets = new ArrayList<>();
+        for (CodeFacetLanguage facet: searchResult.getLanguageFacetResults()) {
+            languageFacets.add(new CodeFacetLanguage(facet.getLanguageName(), facet.getCount()));
+        }
+
+        List<CodeFacetRepo> repoFacets = new ArrayList<>();
+        for (CodeFacetRepo facet: searchResult.getRepoFacetResults()) {
+            repoFacets.add(new CodeFacetRepo(facet.getRepoName(), facet.getCount()));
+        }
+
+        List<CodeFacetOwner> ownerFacets = new ArrayList<>();
+        for (CodeFacetOwner facet: searchResult.getOwnerFacetResults()) {
+            ownerFacets.add(new CodeFacetOwner(facet.getOwner(), facet.getCount()));
+        }
+
+        SearchResult copy = new SearchResult(searchResult.getTotalHits(), searchResult.getPage(), searchResult.getQuery(), codeResults, new ArrayList<>(searchResult.getPages()), languageFacets, repoFacets, ownerFacets);
+        searchResult.getAltQuery().forEach(copy::addAltQuery);
+
+        return copy;
+    }
+
+    private static class CachedSearchResult {
+        private final SearchResult searchResult;
+        private final long bytes;
+
+        CachedSearchResult(SearchResult searchResult, long bytes) {
+            this.searchResult = searchResult;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.10
+ */
+
+package com.searchcode.app.service;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.store.Directory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Searcher pool over every shard of the index. Each search sees a single reader made up of a reader for each shard
+ * so results and facets are merged by Lucene. Shards with an open writer are read near real time through it, the
+ * others are read from their directory. The searcher is given an executor so the segments of all the shards are
+ * searched in parallel. On refresh only the shards which have changed are reopened, shards which have been added
+ * are opened and shards which have been dropped are left out.
+ */
+public class ShardedSearcherManager extends ReferenceManager<IndexSearcher> {
+
+    private final CodeIndexer codeIndexer;
+    private final ExecutorService executorService;
+
+    public ShardedSearcherManager(CodeIndexer codeIndexer) throws IOException {
+        this.codeIndexer = codeIndexer;
+        this.executorService = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()), runnable -> {
+            Thread thread = new Thread(runnable, "searchershard");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.current = this.openShards(null);
+    }
+
+    @Override
+    protected IndexSearcher refreshIfNeeded(IndexSearcher referenceToRefresh) throws IOException {
+        return this.openShards((ShardsReader) referenceToRefresh.getIndexReader());
+    }
+
+    /**
+     * Opens a reader for every shard reusing the readers of the current searcher where nothing has changed. Readers
+     * opened through a writer are only reopened through the same writer, if it has since been closed or a writer
+     * has been opened the shard is opened again. Returns null if nothing has changed.
+     */
+    private IndexSearcher openShards(ShardsReader currentReader) throws IOException {
+        List<String> shards = new ArrayList<>();
+        List<IndexWriter> writers = new ArrayList<>();
+        List<DirectoryReader> readers = new ArrayList<>();
+        List<DirectoryReader> opened = new ArrayList<>();
+        boolean changed = currentReader == null;
+
+        try {
+            for (String shard: this.codeIndexer.getShards()) {
+                IndexWriter writer = this.codeIndexer.getOpenIndexWriter(shard);
+                int existing = currentReader == null ? -1 : currentReader.indexOf(shard);
+                DirectoryReader reader = null;
+
+                if (existing != -1 && currentReader.shardWriters[existing] == writer) {
+                    reader = writer == null ? DirectoryReader.openIfChanged(currentReader.shardReaders[existing])
+                            : DirectoryReader.openIfChanged(currentReader.shardReaders[existing], writer, true);
+                }
+                else if (writer != null) {
+                    reader = DirectoryReader.open(writer, true);
+                }
+                else {
+                    reader = this.openDirectory(shard);
+
+                    // Nothing has been written to the shard yet
+                    if (reader == null) {
+                        continue;
+                    }
+                }
+
+                if (reader != null) {
+                    opened.add(reader);
+                }
+
+                changed = changed || reader != null || existing != shards.size();
+                shards.add(shard);
+                writers.add(writer);
+                readers.add(reader == null ? currentReader.shardReaders[existing] : reader);
+            }
+        }
+        catch (IOException ex) {
+            for (DirectoryReader reader: opened) {
+                reader.decRef();
+            }
+            throw ex;
+        }
+
+        changed = changed || shards.size() != currentReader.shardNames.length;
+
+        if (!changed) {
+            return null;
+        }
+
+        return this.newSearcher(shards.toArray(new String[shards.size()]), writers.toArray(new IndexWriter[writers.size()]),
+                readers.toArray(new DirectoryReader[readers.size()]), opened);
+    }
+
+    /**
+     * Opens the shard from its directory or returns null if there is no index in it
+     */
+    private DirectoryReader openDirectory(String shard) throws IOException {
+        Directory directory = this.codeIndexer.getShardDirectory(shard);
+
+        if (!DirectoryReader.indexExists(directory)) {
+            directory.close();
+            return null;
+        }
+
+        return DirectoryReader.open(directory);
+    }
+
+    @Override
+    protected boolean tryIncRef(IndexSearcher reference) {
+        return reference.getIndexReader().tryIncRef();
+    }
+
+    @Override
+    protected void decRef(IndexSearcher reference) throws IOException {
+        reference.getIndexReader().decRef();
+    }
+
+    @Override
+    protected int getRefCount(IndexSearcher reference) {
+        return reference.getIndexReader().getRefCount();
+    }
+
+    @Override
+    protected void afterClose() throws IOException {
+        this.executorService.shutdown();
+    }
+
+    /**
+     * The combined reader takes its own reference to every shard reader so the references held by readers
+     * which were just opened are given up to it. Unchanged readers stay shared with the previous searcher.
+     */
+    private IndexSearcher newSearcher(String[] shards, IndexWriter[] writers, DirectoryReader[] readers, List<DirectoryReader> opened) throws IOException {
+        ShardsReader shardsReader = new ShardsReader(shards, writers, readers);
+
+        for (DirectoryReader reader: opened) {
+            reader.decRef();
+        }
+
+        return CodeIndexer.newSearcher(shardsReader, this.executorService);
+    }
+
+    /**
+     * Keeps hold of the name, writer and reader for each shard so they can be reopened individually. The writer
+     * is null where the shard was read from its directory.
+     */
+    private static class ShardsReader extends MultiReader {
+        private final String[] shardNames;
+        private final IndexWriter[] shardWriters;
+        private final DirectoryReader[] shardReaders;
+
+        ShardsReader(String[] shardNames, IndexWriter[] shardWriters, DirectoryReader[] shardReaders) throws IOException {
+            super(shardReaders, false);
+            this.shardNames = shardNames;
+            this.shardWriters = shardWriters;
+            this.shardReaders = shardReaders;
+        }
+
+        int indexOf(String shard) {
+            for (int i = 0; i < this.shardNames.length; i++) {
+                if (this.shardNames[i].equals(shard)) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+    }
+}
@@ -12,10 +12,11 @@ package com.searchcode.app.service;
 
 import com.searchcode.app.config.IDatabaseConfig;
 import com.searchcode.app.config.SQLiteDatabaseConfig;
+import com.searchcode.app.config.Values;
 import com.searchcode.app.dao.Api;
+import com.searchcode.app.dao.Blame;
 import com.searchcode.app.dao.Data;
 import com.searchcode.app.dao.Repo;
-import com.searchcode.app.dto.CodeIndexDocument;
 import com.searchcode.app.dto.RunningIndexJob;
 import com.searchcode.app.model.ApiResult;
 import com.searchcode.app.model.RepoResult;
@@ -26,8 +27,8 @@ import org.quartz.SchedulerException;
 import org.quartz.SchedulerFactory;
 import org.quartz.impl.StdSchedulerFactory;
 
+import java.nio.file.Paths;
 import java.util.AbstractMap;
-import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -41,8 +42,7 @@ public final class Singleton {
 
     private static AbstractMap<String, RunningIndexJob> runningIndexRepoJobs = null; // Used to know which jobs are currently running
     private static ISpellingCorrector spellingCorrectorInstance = null;
-    private static Queue<CodeIndexDocument> codeIndexQueue = null; // Documents ready to be indexed
-    private static int codeIndexLinesCount = 0; // Used to store how many lines we have ready to index for throttling
+    private static CodeIndexQueue codeIndexQueue = null; // Documents ready to be indexed, also tracks the lines and bytes waiting for throttling
 
     private static SearchcodeLib searchcodeLib = null;
     private static FileClassifier fileClassifier = null;
@@ -55,12 +55,17 @@ public final class Singleton {
     private static Repo repo = null;
     private static Data data = null;
     private static Api api = null;
+    private static Blame blame = null;
     private static ApiService apiService = null;
     private static TimeSearchRouteService timeSearchRouteService = null;
     private static StatsService statsService = null;
     private static JobService jobService = null;
     private static IDatabaseConfig databaseConfig = null;
     private static CodeIndexer codeIndexer = null;
+    private static FacetStateCache facetStateCache = null;
+    private static SearchResultCache searchResultCache = null; // Recent search results, emptied whenever the index searchers change
+    private static CompletionService completionService = null; // Completes search queries as they are typed
+    private static BlameService blameService = null;
     private static Helpers helpers = null;
 
     private static boolean backgroundJobsEnabled = true; // Controls if all background queue jobs should run or not
@@ -70,26 +75,6 @@ public final class Singleton {
     private static UniqueRepoQueue uniqueSvnRepoQueue = null; // Used to queue the next repository to be indexed
     private static UniqueRepoQueue uniqueDeleteRepoQueue = null; // Used to queue the next repository to be deleted
 
-    public static synchronized void incrementCodeIndexLinesCount(int incrementBy) {
-        codeIndexLinesCount = codeIndexLinesCount + incrementBy;
-    }
-
-    public static synchronized void decrementCodeIndexLinesCount(int decrementBy) {
-        codeIndexLinesCount = codeIndexLinesCount - decrementBy;
-
-        if (codeIndexLinesCount < 0) {
-            codeIndexLinesCount = 0;
-        }
-    }
-
-    public static synchronized void setCodeIndexLinesCount(int value) {
-        codeIndexLinesCount = value;
-    }
-
-    public static synchronized int getCodeIndexLinesCount() {
-        return codeIndexLinesCount;
-    }
-
     public static synchronized UniqueRepoQueue getUniqueGitRepoQueue() {
         if (uniqueGitRepoQueue == null) {
             uniqueGitRepoQueue = new UniqueRepoQueue(new ConcurrentLinkedQueue<>());
@@ -143,20 +128,43 @@ public final class Singleton {
 
     public static synchronized ISpellingCorrector getSpellingCorrector() {
         if (spellingCorrectorInstance == null) {
-            spellingCorrectorInstance = new SearchcodeSpellingCorrector();
+            spellingCorrectorInstance = new SearchcodeSpellingCorrector(Paths.get(Properties.getProperties().getProperty(Values.SPELLING_CORRECTOR_LOCATION, Values.DEFAULT_SPELLING_CORRECTOR_LOCATION), "dictionary.txt"));
+            spellingCorrectorInstance.load();
         }
 
         return spellingCorrectorInstance;
     }
 
-    public static synchronized Queue<CodeIndexDocument> getCodeIndexQueue() {
+    public static synchronized void setSpellingCorrector(ISpellingCorrector spellingCorrector) {
+        Singleton.spellingCorrectorInstance = spellingCorrector;
+    }
+
+    public static synchronized CodeIndexQueue getCodeIndexQueue() {
         if (codeIndexQueue == null) {
-            codeIndexQueue = new ConcurrentLinkedQueue<CodeIndexDocument>();
+            int capacityBytes = getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.MAXDOCUMENTQUEUEBYTES, Values.DEFAULTMAXDOCUMENTQUEUEBYTES), Values.DEFAULTMAXDOCUMENTQUEUEBYTES);
+            codeIndexQueue = new CodeIndexQueue(capacityBytes);
         }
 
         return codeIndexQueue;
     }
 
+    public static synchronized SearchResultCache getSearchResultCache() {
+        if (searchResultCache == null) {
+            int capacityBytes = getHelpers().tryParseInt(Properties.getProperties().getProperty(Values.SEARCH_CACHE_BYTES, Values.DEFAULT_SEARCH_CACHE_BYTES), Values.DEFAULT_SEARCH_CACHE_BYTES);
+            searchResultCache = new SearchResultCache(capacityBytes);
+        }
+
+        return searchResultCache;
+    }
+
+    public static synchronized CompletionService getCompletionService() {
+        if (completionService == null) {
+            completionService = new CompletionService();
+        }
+
+        return completionService;
+    }
+
     public static synchronized AbstractMap<String, String> getDataCache() {
         if (dataCache == null) {
             dataCache = new ConcurrentHashMap<String, String>();
@@ -290,6 +298,14 @@ public final class Singleton {
         Singleton.api = api;
     }
 
+    public static synchronized Blame getBlame() {
+        if (blame == null) {
+            blame = new Blame();
+        }
+
+        return blame;
+    }
+
     public static synchronized ApiService getApiService() {
         if (apiService == null) {
             apiService = new ApiService();
@@ -334,6 +350,26 @@ public final class Singleton {
         return codeIndexer;
     }
 
+    public static synchronized FacetStateCache getFacetStateCache() {
+        if (facetStateCache == null) {
+            facetStateCache = new FacetStateCache();
+        }
+
+        return facetStateCache;
+    }
+
+    public static synchronized BlameService getBlameService() {
+        if (blameService == null) {
+            blameService = new BlameService();
+        }
+
+        return blameService;
+    }
+
+    public static synchronized void setBlameService(BlameService blameService) {
+        Singleton.blameService = blameService;
+    }
+
     public static synchronized Helpers getHelpers() {
         if (helpers == null) {
             helpers = new Helpers();
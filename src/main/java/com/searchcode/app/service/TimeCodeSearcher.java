@@ -20,17 +20,15 @@ import org.apache.lucene.facet.FacetResult;
 import org.apache.lucene.facet.Facets;
 import org.apache.lucene.facet.FacetsCollector;
 import org.apache.lucene.facet.LabelAndValue;
-import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
-import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.FSDirectory;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -38,6 +36,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -60,15 +59,20 @@ public class TimeCodeSearcher {
      */
     public int getTotalNumberDocumentsIndexed() {
         int numDocs = 0;
-        try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
+        SearcherManager searcherManager = null;
+        IndexSearcher searcher = null;
 
-            numDocs = reader.numDocs();
-            reader.close();
+        try {
+            searcherManager = Singleton.getCodeIndexer().getTimeSearcherManager();
+            searcher = searcherManager.acquire();
+            numDocs = searcher.getIndexReader().numDocs();
         }
         catch(Exception ex) {
             LOGGER.info(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.releaseSearcher(searcherManager, searcher);
+        }
 
         return numDocs;
     }
@@ -77,26 +81,40 @@ public class TimeCodeSearcher {
      * Given a query and what page of results we are on return the matching results for that search
      */
     public SearchResult search(String queryString, int page) {
+        return this.search(queryString, Collections.emptyList(), page);
+    }
+
+    /**
+     * Given a query, filters which every result must match and what page of results we are on return the matching
+     * results for that search
+     */
+    public SearchResult search(String queryString, List<String> filters, int page) {
         SearchResult searchResult = new SearchResult();
         statsService.incrementSearchCount();
 
+        SearcherManager searcherManager = null;
+        IndexSearcher searcher = null;
+
         try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
-            IndexSearcher searcher = new IndexSearcher(reader);
+            searcherManager = Singleton.getCodeIndexer().getTimeSearcherManager();
+            searcher = searcherManager.acquire();
+            IndexReader reader = searcher.getIndexReader();
 
             Analyzer analyzer = new CodeAnalyzer();
 
             QueryParser parser = new QueryParser(CODEFIELD, analyzer);
 
-            Query query = parser.parse(queryString);
+            Query query = CodeSearcher.getFilteredQuery(parser, queryString, filters);
             LOGGER.info("Searching for: " + query.toString(CODEFIELD));
 
             searchResult = this.doPagingSearch(reader, searcher, query, page);
-            reader.close();
         }
         catch(Exception ex) {
             LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.releaseSearcher(searcherManager, searcher);
+        }
 
         return searchResult;
     }
@@ -113,9 +131,12 @@ public class TimeCodeSearcher {
     public CodeResult getByRepoFileName(String repo, String fileName) {
         CodeResult codeResult = null;
 
+        SearcherManager searcherManager = null;
+        IndexSearcher searcher = null;
+
         try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
-            IndexSearcher searcher = new IndexSearcher(reader);
+            searcherManager = Singleton.getCodeIndexer().getTimeSearcherManager();
+            searcher = searcherManager.acquire();
             Analyzer analyzer = new CodeAnalyzer();
             QueryParser parser = new QueryParser(CODEFIELD, analyzer);
 
@@ -150,13 +171,13 @@ public class TimeCodeSearcher {
                 codeResult.setRepoLocation(doc.get(Values.REPOLOCATION));
                 codeResult.setCodeOwner(doc.get(Values.CODEOWNER));
             }
-
-            reader.close();
-
         }
         catch(Exception ex) {
             LOGGER.severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.releaseSearcher(searcherManager, searcher);
+        }
 
         return codeResult;
     }
@@ -170,8 +191,13 @@ public class TimeCodeSearcher {
     public CodeResult getById(int documentId) {
         CodeResult codeResult = null;
 
+        SearcherManager searcherManager = null;
+        IndexSearcher searcher = null;
+
         try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
+            searcherManager = Singleton.getCodeIndexer().getTimeSearcherManager();
+            searcher = searcherManager.acquire();
+            IndexReader reader = searcher.getIndexReader();
             Document doc = reader.document(documentId);
 
             String filepath = doc.get(Values.PATH);
@@ -194,21 +220,25 @@ public class TimeCodeSearcher {
             codeResult.setRepoName(doc.get(Values.REPONAME));
             codeResult.setRepoLocation(doc.get(Values.REPOLOCATION));
             codeResult.setCodeOwner(doc.get(Values.CODEOWNER));
-
-            reader.close();
         }
         catch(Exception ex) {
             LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.releaseSearcher(searcherManager, searcher);
+        }
 
         return codeResult;
     }
 
     public List<String> getRepoDocuments(String repoName) {
         List<String> fileLocations = new ArrayList<>();
+        SearcherManager searcherManager = null;
+        IndexSearcher searcher = null;
+
         try {
-            IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(this.INDEXPATH)));
-            IndexSearcher searcher = new IndexSearcher(reader);
+            searcherManager = Singleton.getCodeIndexer().getTimeSearcherManager();
+            searcher = searcherManager.acquire();
 
             Analyzer analyzer = new CodeAnalyzer();
             QueryParser parser = new QueryParser(CODEFIELD, analyzer);
@@ -221,12 +251,13 @@ public class TimeCodeSearcher {
                 Document doc = searcher.doc(hits[i].doc);
                 fileLocations.add(doc.get(Values.FILELOCATIONFILENAME));
             }
-
-            reader.close();
         }
         catch(Exception ex) {
             LOGGER.severe(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
         }
+        finally {
+            this.releaseSearcher(searcherManager, searcher);
+        }
 
         return fileLocations;
     }
@@ -236,7 +267,9 @@ public class TimeCodeSearcher {
      * format used internally including reading the file from disk.
      */
     public SearchResult doPagingSearch(IndexReader reader, IndexSearcher searcher, Query query, int page) throws IOException {
-        TopDocs results = searcher.search(query, 20 * this.PAGELIMIT); // 20 pages worth of documents
+        // Collect the top documents and the matches for facet counting in a single pass over the query
+        FacetsCollector facetsCollector = new FacetsCollector();
+        TopDocs results = FacetsCollector.search(searcher, query, 20 * this.PAGELIMIT, facetsCollector); // 20 pages worth of documents
         ScoreDoc[] hits = results.scoreDocs;
 
         int numTotalHits = results.totalHits;
@@ -296,14 +329,14 @@ public class TimeCodeSearcher {
             }
         }
 
-        List<CodeFacetLanguage> codeFacetLanguages = this.getLanguageFacetResults(searcher, reader, query);
-        List<CodeFacetRepo> repoFacetLanguages = this.getRepoFacetResults(searcher, reader, query);
-        List<CodeFacetOwner> repoFacetOwner= this.getOwnerFacetResults(searcher, reader, query);
-        List<CodeFacetYearMonthDay> repoFacetYearMonthDay = this.getYearMonthDayFacetResults(searcher, reader, query);
-        List<CodeFacetYearMonth> repoFacetYearMonth = this.getYearMonthFacetResults(searcher, reader, query);
-        List<CodeFacetYear> repoFacetYear = this.getYearFacetResults(searcher, reader, query);
-        List<CodeFacetRevision> repoFacetRevision = this.getRevisionFacetResults(searcher, reader, query);
-        List<CodeFacetDeleted> repoFacetDeleted = this.getDeletedFacetResults(searcher, reader, query);
+        List<CodeFacetLanguage> codeFacetLanguages = this.getLanguageFacetResults(reader, facetsCollector);
+        List<CodeFacetRepo> repoFacetLanguages = this.getRepoFacetResults(reader, facetsCollector);
+        List<CodeFacetOwner> repoFacetOwner= this.getOwnerFacetResults(reader, facetsCollector);
+        List<CodeFacetYearMonthDay> repoFacetYearMonthDay = this.getYearMonthDayFacetResults(reader, facetsCollector);
+        List<CodeFacetYearMonth> repoFacetYearMonth = this.getYearMonthFacetResults(reader, facetsCollector);
+        List<CodeFacetYear> repoFacetYear = this.getYearFacetResults(reader, facetsCollector);
+        List<CodeFacetRevision> repoFacetRevision = this.getRevisionFacetResults(reader, facetsCollector);
+        List<CodeFacetDeleted> repoFacetDeleted = this.getDeletedFacetResults(reader, facetsCollector);
 
         SearchResult searchResult = new SearchResult(numTotalHits, page, query.toString(), codeResults, pages, codeFacetLanguages, repoFacetLanguages, repoFacetOwner);
 
@@ -319,13 +352,11 @@ public class TimeCodeSearcher {
     /**
      * Returns the matching revision facets for a given query
      */
-    private List<CodeFacetDeleted> getDeletedFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
+    private List<CodeFacetDeleted> getDeletedFacetResults(IndexReader reader, FacetsCollector fc) {
         List<CodeFacetDeleted> deletedFacets = new ArrayList<>();
 
         try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.DELETED);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
+            SortedSetDocValuesReaderState state = Singleton.getFacetStateCache().getState(reader, Values.DELETED);
             Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
             FacetResult result = facets.getTopChildren(200, Values.DELETED);
 
@@ -354,13 +385,11 @@ public class TimeCodeSearcher {
     /**
      * Returns the matching revision facets for a given query
      */
-    private List<CodeFacetRevision> getRevisionFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
+    private List<CodeFacetRevision> getRevisionFacetResults(IndexReader reader, FacetsCollector fc) {
         List<CodeFacetRevision> revisionFacets = new ArrayList<>();
 
         try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.REVISION);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
+            SortedSetDocValuesReaderState state = Singleton.getFacetStateCache().getState(reader, Values.REVISION);
             Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
             FacetResult result = facets.getTopChildren(200, Values.REVISION);
 
@@ -389,13 +418,11 @@ public class TimeCodeSearcher {
     /**
      * Returns the matching yearmonth facets for a given query
      */
-    private List<CodeFacetYear> getYearFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
+    private List<CodeFacetYear> getYearFacetResults(IndexReader reader, FacetsCollector fc) {
         List<CodeFacetYear> codeFacetYear = new ArrayList<>();
 
         try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.DATEYEAR);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
+            SortedSetDocValuesReaderState state = Singleton.getFacetStateCache().getState(reader, Values.DATEYEAR);
             Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
             FacetResult result = facets.getTopChildren(200, Values.DATEYEAR);
 
@@ -424,13 +451,11 @@ public class TimeCodeSearcher {
     /**
      * Returns the matching yearmonth facets for a given query
      */
-    private List<CodeFacetYearMonth> getYearMonthFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
+    private List<CodeFacetYearMonth> getYearMonthFacetResults(IndexReader reader, FacetsCollector fc) {
         List<CodeFacetYearMonth> codeFacetYearMonth = new ArrayList<>();
 
         try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.DATEYEARMONTH);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
+            SortedSetDocValuesReaderState state = Singleton.getFacetStateCache().getState(reader, Values.DATEYEARMONTH);
             Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
             FacetResult result = facets.getTopChildren(200, Values.DATEYEARMONTH);
 
@@ -459,13 +484,11 @@ public class TimeCodeSearcher {
     /**
      * Returns the matching yearmonthday facets for a given query
      */
-    private List<CodeFacetYearMonthDay> getYearMonthDayFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
+    private List<CodeFacetYearMonthDay> getYearMonthDayFacetResults(IndexReader reader, FacetsCollector fc) {
         List<CodeFacetYearMonthDay> codeFacetYearMonthDay = new ArrayList<>();
 
         try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.DATEYEARMONTHDAY);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
+            SortedSetDocValuesReaderState state = Singleton.getFacetStateCache().getState(reader, Values.DATEYEARMONTHDAY);
             Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
             FacetResult result = facets.getTopChildren(200, Values.DATEYEARMONTHDAY);
 
@@ -494,13 +517,11 @@ public class TimeCodeSearcher {
     /**
      * Returns the matching language facets for a given query
      */
-    private List<CodeFacetLanguage> getLanguageFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
+    private List<CodeFacetLanguage> getLanguageFacetResults(IndexReader reader, FacetsCollector fc) {
         List<CodeFacetLanguage> codeFacetLanguages = new ArrayList<>();
 
         try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.LANGUAGENAME);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
+            SortedSetDocValuesReaderState state = Singleton.getFacetStateCache().getState(reader, Values.LANGUAGENAME);
             Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
             FacetResult result = facets.getTopChildren(200, Values.LANGUAGENAME);
 
@@ -529,13 +550,11 @@ public class TimeCodeSearcher {
     /**
      * Returns the matching repository facets for a given query
      */
-    private List<CodeFacetRepo> getRepoFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
+    private List<CodeFacetRepo> getRepoFacetResults(IndexReader reader, FacetsCollector fc) {
         List<CodeFacetRepo> codeFacetRepo = new ArrayList<>();
 
         try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.REPONAME);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
+            SortedSetDocValuesReaderState state = Singleton.getFacetStateCache().getState(reader, Values.REPONAME);
             Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
             FacetResult result = facets.getTopChildren(200, Values.REPONAME);
 
@@ -564,13 +583,11 @@ public class TimeCodeSearcher {
     /**
      * Returns the matching owner facets for a given query
      */
-    private List<CodeFacetOwner> getOwnerFacetResults(IndexSearcher searcher, IndexReader reader, Query query) {
+    private List<CodeFacetOwner> getOwnerFacetResults(IndexReader reader, FacetsCollector fc) {
         List<CodeFacetOwner> codeFacetRepo = new ArrayList<>();
 
         try {
-            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(reader, Values.CODEOWNER);
-            FacetsCollector fc = new FacetsCollector();
-            FacetsCollector.search(searcher, query, 10, fc);
+            SortedSetDocValuesReaderState state = Singleton.getFacetStateCache().getState(reader, Values.CODEOWNER);
             Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
             FacetResult result = facets.getTopChildren(200, Values.CODEOWNER);
 
@@ -595,4 +612,20 @@ public class TimeCodeSearcher {
 
         return codeFacetRepo;
     }
+
+    /**
+     * Returns the searcher to the pool it was acquired from
+     */
+    private void releaseSearcher(SearcherManager searcherManager, IndexSearcher searcher) {
+        if (searcherManager == null || searcher == null) {
+            return;
+        }
+
+        try {
+            searcherManager.release(searcher);
+        }
+        catch (IOException ex) {
+            LOGGER.warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+        }
+    }
 }
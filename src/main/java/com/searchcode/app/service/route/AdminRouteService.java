@@ -20,10 +20,12 @@ import com.searchcode.app.dto.RunningIndexJob;
 import com.searchcode.app.jobs.repository.IndexBaseRepoJob;
 import com.searchcode.app.jobs.repository.IndexFileRepoJob;
 import com.searchcode.app.model.RepoResult;
+import com.searchcode.app.service.CodeIndexer;
 import com.searchcode.app.service.CodeSearcher;
 import com.searchcode.app.service.JobService;
 import com.searchcode.app.service.Singleton;
 import com.searchcode.app.service.StatsService;
+import com.searchcode.app.util.CodeIndexQueue;
 import com.searchcode.app.util.Properties;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -108,6 +110,7 @@ public class AdminRouteService {
         map.put(Values.SVNENABLED, Properties.getProperties().getProperty(Values.SVNENABLED, Values.DEFAULTSVNENABLED));
         map.put(Values.MAXDOCUMENTQUEUESIZE, Properties.getProperties().getProperty(Values.MAXDOCUMENTQUEUESIZE, Values.DEFAULTMAXDOCUMENTQUEUESIZE));
         map.put(Values.MAXDOCUMENTQUEUELINESIZE, Properties.getProperties().getProperty(Values.MAXDOCUMENTQUEUELINESIZE, Values.DEFAULTMAXDOCUMENTQUEUELINESIZE));
+        map.put(Values.MAXDOCUMENTQUEUEBYTES, Properties.getProperties().getProperty(Values.MAXDOCUMENTQUEUEBYTES, Values.DEFAULTMAXDOCUMENTQUEUEBYTES));
         map.put(Values.MAXFILELINEDEPTH, Properties.getProperties().getProperty(Values.MAXFILELINEDEPTH, Values.DEFAULTMAXFILELINEDEPTH));
         map.put(Values.OWASPDATABASELOCATION, Properties.getProperties().getProperty(Values.OWASPDATABASELOCATION, Values.DEFAULTOWASPDATABASELOCATION));
         map.put(Values.HIGHLIGHT_LINE_LIMIT, Properties.getProperties().getProperty(Values.HIGHLIGHT_LINE_LIMIT, Values.DEFAULT_HIGHLIGHT_LINE_LIMIT));
@@ -117,15 +120,35 @@ public class AdminRouteService {
         map.put(Values.NUMBER_GIT_PROCESSORS, Properties.getProperties().getProperty(Values.NUMBER_GIT_PROCESSORS, Values.DEFAULT_NUMBER_GIT_PROCESSORS));
         map.put(Values.NUMBER_SVN_PROCESSORS, Properties.getProperties().getProperty(Values.NUMBER_SVN_PROCESSORS, Values.DEFAULT_NUMBER_SVN_PROCESSORS));
         map.put(Values.NUMBER_FILE_PROCESSORS, Properties.getProperties().getProperty(Values.NUMBER_FILE_PROCESSORS, Values.DEFAULT_NUMBER_FILE_PROCESSORS));
+        map.put(Values.NUMBER_GIT_INDEX_WORKERS, Properties.getProperties().getProperty(Values.NUMBER_GIT_INDEX_WORKERS, Values.DEFAULT_NUMBER_GIT_INDEX_WORKERS));
+        map.put(Values.NUMBER_SVN_INDEX_WORKERS, Properties.getProperties().getProperty(Values.NUMBER_SVN_INDEX_WORKERS, Values.DEFAULT_NUMBER_SVN_INDEX_WORKERS));
+        map.put(Values.NUMBER_FILE_INDEX_WORKERS, Properties.getProperties().getProperty(Values.NUMBER_FILE_INDEX_WORKERS, Values.DEFAULT_NUMBER_FILE_INDEX_WORKERS));
+        map.put(Values.NUMBER_INDEXER_THREADS, Properties.getProperties().getProperty(Values.NUMBER_INDEXER_THREADS, Values.DEFAULT_NUMBER_INDEXER_THREADS));
         map.put(Values.AND_MATCH, Properties.getProperties().getProperty(Values.AND_MATCH, Values.DEFAULT_AND_MATCH));
         map.put(Values.LOG_INDEXED, Properties.getProperties().getProperty(Values.LOG_INDEXED, Values.DEFAULT_LOG_INDEXED));
         map.put(Values.TRASH_LOCATION, Properties.getProperties().getProperty(Values.TRASH_LOCATION, Values.DEFAULT_TRASH_LOCATION));
         map.put(Values.FOLLOW_LINKS, Properties.getProperties().getProperty(Values.FOLLOW_LINKS, Values.DEFAULT_FOLLOW_LINKS));
+        map.put(Values.INDEX_COMMIT_SECONDS, Properties.getProperties().getProperty(Values.INDEX_COMMIT_SECONDS, Values.DEFAULT_INDEX_COMMIT_SECONDS));
+        map.put(Values.INDEX_COMMIT_DOCUMENTS, Properties.getProperties().getProperty(Values.INDEX_COMMIT_DOCUMENTS, Values.DEFAULT_INDEX_COMMIT_DOCUMENTS));
+        map.put(Values.INDEX_STORE_CONTENT, Properties.getProperties().getProperty(Values.INDEX_STORE_CONTENT, Values.DEFAULT_INDEX_STORE_CONTENT));
+        map.put(Values.INDEX_CONTENT_OFFSETS, Properties.getProperties().getProperty(Values.INDEX_CONTENT_OFFSETS, Values.DEFAULT_INDEX_CONTENT_OFFSETS));
+        map.put(Values.INDEX_TRIGRAMS, Properties.getProperties().getProperty(Values.INDEX_TRIGRAMS, Values.DEFAULT_INDEX_TRIGRAMS));
+        map.put(Values.INDEX_SHARDS, Properties.getProperties().getProperty(Values.INDEX_SHARDS, Values.DEFAULT_INDEX_SHARDS));
+        map.put(Values.INDEX_PER_REPOSITORY, Properties.getProperties().getProperty(Values.INDEX_PER_REPOSITORY, Values.DEFAULT_INDEX_PER_REPOSITORY));
+        map.put(Values.SEARCH_CACHE_BYTES, Properties.getProperties().getProperty(Values.SEARCH_CACHE_BYTES, Values.DEFAULT_SEARCH_CACHE_BYTES));
+        map.put(Values.FILTER_CACHE_BYTES, Properties.getProperties().getProperty(Values.FILTER_CACHE_BYTES, Values.DEFAULT_FILTER_CACHE_BYTES));
+        map.put(Values.REGEX_TIMEOUT_MILLIS, Properties.getProperties().getProperty(Values.REGEX_TIMEOUT_MILLIS, Values.DEFAULT_REGEX_TIMEOUT_MILLIS));
+        map.put(Values.REGEX_MAX_CANDIDATES, Properties.getProperties().getProperty(Values.REGEX_MAX_CANDIDATES, Values.DEFAULT_REGEX_MAX_CANDIDATES));
+        map.put(Values.SPELLING_CORRECTOR_LOCATION, Properties.getProperties().getProperty(Values.SPELLING_CORRECTOR_LOCATION, Values.DEFAULT_SPELLING_CORRECTOR_LOCATION));
 
 
         map.put("repoCount", this.getStat("repoCount"));
         map.put("numDocs", this.getStat("numDocs"));
         map.put("numSearches", this.getStat("searchcount"));
+        map.put("searchCacheHits", this.getStat("searchcachehits"));
+        map.put("searchCacheBytes", this.getStat("searchcachebytes"));
+        map.put("filterCacheHits", this.getStat("filtercachehits"));
+        map.put("filterCacheBytes", this.getStat("filtercachebytes"));
         map.put("uptime", this.getStat("uptime"));
         map.put("loadAverage", this.getStat("loadAverage"));
         map.put("memoryUsage", this.getStat("memoryUsage"));
@@ -134,6 +157,12 @@ public class AdminRouteService {
         map.put("runningJobs", this.getStat("runningJobs"));
         map.put("threads", this.getStat("threads"));
         map.put("paused", this.getStat("paused"));
+        map.put("flushCount", this.getStat("flushCount"));
+        map.put("commitCount", this.getStat("commitCount"));
+        map.put("pendingCommit", this.getStat("pendingCommit"));
+        map.put("indexQueueSize", this.getStat("indexQueueSize"));
+        map.put("indexQueueLines", this.getStat("indexQueueLines"));
+        map.put("indexQueueBytes", this.getStat("indexQueueBytes"));
 
 
         map.put("sysArch", statsService.getArch());
@@ -402,6 +431,14 @@ public class AdminRouteService {
                 return Singleton.getStatsService().getUptime();
             case "searchcount":
                 return Values.EMPTYSTRING + Singleton.getStatsService().getSearchCount();
+            case "searchcachehits":
+                return Values.EMPTYSTRING + Singleton.getSearchResultCache().getHitCount() + " / " + Singleton.getSearchResultCache().getLookupCount();
+            case "searchcachebytes":
+                return Values.EMPTYSTRING + Singleton.getSearchResultCache().getCacheBytes() + " / " + Singleton.getSearchResultCache().getCapacityBytes();
+            case "filtercachehits":
+                return Values.EMPTYSTRING + CodeIndexer.getFilterCache().getHitCount() + " / " + CodeIndexer.getFilterCache().getTotalCount();
+            case "filtercachebytes":
+                return Values.EMPTYSTRING + CodeIndexer.getFilterCache().ramBytesUsed() + " / " + Properties.getProperties().getProperty(Values.FILTER_CACHE_BYTES, Values.DEFAULT_FILTER_CACHE_BYTES);
             case "runningjobs":
                 StringBuilder stringBuffer = new StringBuilder();
                 for ( String key : Singleton.getRunningIndexRepoJobs().keySet() ) {
@@ -440,6 +477,19 @@ public class AdminRouteService {
                 return "" + java.lang.Thread.activeCount();
             case "paused":
                 return Singleton.getPauseBackgroundJobs() ? "paused": "running";
+            case "flushcount":
+                return Values.EMPTYSTRING + Singleton.getCodeIndexer().getFlushCount();
+            case "commitcount":
+                return Values.EMPTYSTRING + Singleton.getCodeIndexer().getCommitCount();
+            case "pendingcommit":
+                return Values.EMPTYSTRING + Singleton.getCodeIndexer().getDocumentsSinceCommit();
+            case "indexqueuesize":
+                return Values.EMPTYSTRING + Singleton.getCodeIndexQueue().size();
+            case "indexqueuelines":
+                return Values.EMPTYSTRING + Singleton.getCodeIndexQueue().getQueueLines();
+            case "indexqueuebytes":
+                CodeIndexQueue codeIndexQueue = Singleton.getCodeIndexQueue();
+                return Values.EMPTYSTRING + codeIndexQueue.getQueueBytes() + " / " + codeIndexQueue.getCapacityBytes();
         }
 
         return Values.EMPTYSTRING;
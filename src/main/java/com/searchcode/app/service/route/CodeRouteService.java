@@ -337,7 +337,7 @@ public class CodeRouteService {
                             .map((s) -> "reponame:" + QueryParser.escape(s))
                             .collect(Collectors.toList());
 
-                    reposFilter = " && (" + StringUtils.join(reposList, " || ") + ")";
+                    reposFilter = StringUtils.join(reposList, " || ");
 
                     List<String> reposQueryList = Arrays.asList(repos).stream()
                             .map((s) -> "&repo=" + URLEncoder.encode(s))
@@ -355,7 +355,7 @@ public class CodeRouteService {
                             .map((s) -> "languagename:" + QueryParser.escape(s))
                             .collect(Collectors.toList());
 
-                    langsFilter = " && (" + StringUtils.join(langsList, " || ") + ")";
+                    langsFilter = StringUtils.join(langsList, " || ");
 
                     List<String> langsQueryList = Arrays.asList(langs).stream()
                             .map((s) -> "&lan=" + URLEncoder.encode(s))
@@ -373,7 +373,7 @@ public class CodeRouteService {
                             .map((s) -> "codeowner:" + QueryParser.escape(s))
                             .collect(Collectors.toList());
 
-                    ownersFilter = " && (" + StringUtils.join(ownersList, " || ") + ")";
+                    ownersFilter = StringUtils.join(ownersList, " || ");
 
                     List<String> ownsQueryList = Arrays.asList(owners).stream()
                             .map((s) -> "&own=" + URLEncoder.encode(s))
@@ -386,7 +386,7 @@ public class CodeRouteService {
             // split the query escape it and and it together
             String cleanQueryString = scl.formatQueryString(query);
 
-            SearchResult searchResult = cs.search(cleanQueryString + reposFilter + langsFilter + ownersFilter, page);
+            SearchResult searchResult = cs.search(cleanQueryString, scl.getFilters(reposFilter, langsFilter, ownersFilter), page);
             searchResult.setCodeResultList(cm.formatResults(searchResult.getCodeResultList(), query, true));
 
             for(CodeFacetRepo f: searchResult.getRepoFacetResults()) {
@@ -439,6 +439,7 @@ public class CodeRouteService {
 
         CodeSearcher cs = new CodeSearcher();
         CodeMatcher cm = new CodeMatcher(data);
+        SearchcodeLib scl = Singleton.getSearchcodeLib(data);
         Map<String, Object> map = new HashMap<>();
 
         map.put("repoCount", repo.getRepoCount());
@@ -458,16 +459,32 @@ public class CodeRouteService {
                 }
             }
 
+            String[] repos = request.queryParams().contains("repo") ? request.queryParamsValues("repo") : new String[0];
+            String[] langs = request.queryParams().contains("lan") ? request.queryParamsValues("lan") : new String[0];
+            String[] owners = request.queryParams().contains("own") ? request.queryParamsValues("own") : new String[0];
+
             String altquery = query.replaceAll("[^A-Za-z0-9 ]", " ").trim().replaceAll(" +", " ");
 
-            SearchResult searchResult = cs.search(query, page);
+            SearchResult searchResult = cs.literalSearch(query, scl.getFilters(this.getFilter(repos, "reponame"), this.getFilter(langs, "languagename"), this.getFilter(owners, "codeowner")), page);
             searchResult.setCodeResultList(cm.formatResults(searchResult.getCodeResultList(), altquery, false));
 
+            for(CodeFacetRepo f: searchResult.getRepoFacetResults()) {
+                f.setSelected(Arrays.asList(repos).contains(f.getRepoName()));
+            }
+
+            for(CodeFacetLanguage f: searchResult.getLanguageFacetResults()) {
+                f.setSelected(Arrays.asList(langs).contains(f.getLanguageName()));
+            }
+
+            for(CodeFacetOwner f: searchResult.getOwnerFacetResults()) {
+                f.setSelected(Arrays.asList(owners).contains(f.getOwner()));
+            }
 
             map.put("searchValue", query);
             map.put("searchResult", searchResult);
-            map.put("reposQueryString", "");
-            map.put("langsQueryString", "");
+            map.put("reposQueryString", this.getQueryString(repos, "repo"));
+            map.put("langsQueryString", this.getQueryString(langs, "lan"));
+            map.put("ownsQueryString", this.getQueryString(owners, "own"));
 
             map.put("altQuery", "");
 
@@ -483,4 +500,15 @@ public class CodeRouteService {
 
         return map;
     }
+
+    /**
+     * Returns a filter matching any of the values in the field or an empty string if there are none
+     */
+    private String getFilter(String[] values, String field) {
+        return StringUtils.join(Arrays.stream(values).map((s) -> field + ":" + QueryParser.escape(s)).collect(Collectors.toList()), " || ");
+    }
+
+    private String getQueryString(String[] values, String param) {
+        return StringUtils.join(Arrays.stream(values).map((s) -> "&" + param + "=" + URLEncoder.encode(s)).collect(Collectors.toList()), "");
+    }
 }
@@ -22,6 +22,7 @@ import org.apache.lucene.queryparser.classic.QueryParser;
 import spark.Request;
 import spark.Response;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -33,8 +34,11 @@ public class SearchRouteService {
         CodeMatcher cm = new CodeMatcher(Singleton.getData());
         SearchcodeLib scl = Singleton.getSearchcodeLib(Singleton.getData());
 
-        if (request.queryParams().contains("q") && !request.queryParams("q").trim().equals(Values.EMPTYSTRING)) {
-            String query = request.queryParams("q").trim();
+        // A regex searches the contents of files for text matching it rather than searching the index for terms
+        boolean isRegex = request.queryParams().contains("regex") && !request.queryParams("regex").trim().equals(Values.EMPTYSTRING);
+
+        if (isRegex || (request.queryParams().contains("q") && !request.queryParams("q").trim().equals(Values.EMPTYSTRING))) {
+            String query = isRegex ? request.queryParams("regex").trim() : request.queryParams("q").trim();
 
             int page = 0;
 
@@ -63,7 +67,7 @@ public class SearchRouteService {
                             .map((s) -> "reponame:" + QueryParser.escape(s.replace(" ", "_")))
                             .collect(Collectors.toList());
 
-                    reposFilter = " && (" + StringUtils.join(reposList, " || ") + ")";
+                    reposFilter = StringUtils.join(reposList, " || ");
                 }
             }
 
@@ -75,7 +79,7 @@ public class SearchRouteService {
                             .map((s) -> "languagename:" + QueryParser.escape(s.replace(" ", "_")))
                             .collect(Collectors.toList());
 
-                    langsFilter = " && (" + StringUtils.join(langsList, " || ") + ")";
+                    langsFilter = StringUtils.join(langsList, " || ");
                 }
             }
 
@@ -87,20 +91,29 @@ public class SearchRouteService {
                             .map((s) -> "codeowner:" + QueryParser.escape(s.replace(" ", "_")))
                             .collect(Collectors.toList());
 
-                    ownersFilter = " && (" + StringUtils.join(ownersList, " || ") + ")";
+                    ownersFilter = StringUtils.join(ownersList, " || ");
                 }
             }
 
-            // split the query escape it and and it together
-            String cleanQueryString = scl.formatQueryString(query);
+            SearchResult searchResult;
+
+            if (isRegex) {
+                searchResult = cs.regexSearch(query, scl.getFilters(reposFilter, langsFilter, ownersFilter), page);
+                searchResult.setCodeResultList(cm.formatResults(searchResult.getCodeResultList(), query.replaceAll("[^A-Za-z0-9 ]", " ").trim().replaceAll(" +", " "), true));
+                searchResult.setQuery(query);
+            }
+            else {
+                // split the query escape it and and it together
+                String cleanQueryString = scl.formatQueryString(query);
 
-            SearchResult searchResult = cs.search(cleanQueryString + reposFilter + langsFilter + ownersFilter, page);
-            searchResult.setCodeResultList(cm.formatResults(searchResult.getCodeResultList(), query, true));
+                searchResult = cs.search(cleanQueryString, scl.getFilters(reposFilter, langsFilter, ownersFilter), page);
+                searchResult.setCodeResultList(cm.formatResults(searchResult.getCodeResultList(), query, true));
 
-            searchResult.setQuery(query);
+                searchResult.setQuery(query);
 
-            for(String altQuery: scl.generateAltQueries(query)) {
-                searchResult.addAltQuery(altQuery);
+                for(String altQuery: scl.generateAltQueries(query)) {
+                    searchResult.addAltQuery(altQuery);
+                }
             }
 
             // Null out code as it isnt required and there is no point in bloating our ajax requests
@@ -113,4 +126,20 @@ public class SearchRouteService {
 
         return null;
     }
+
+    /**
+     * Returns completions of the partial query in the q parameter, up to n of them defaulting to 10
+     */
+    public List<String> completion(Request request, Response response) {
+        if (!request.queryParams().contains("q")) {
+            return new ArrayList<>();
+        }
+
+        int count = 10;
+        if (request.queryParams().contains("n")) {
+            count = Singleton.getHelpers().tryParseInt(request.queryParams("n"), "10");
+        }
+
+        return Singleton.getCompletionService().complete(request.queryParams("q"), count);
+    }
 }
@@ -113,7 +113,7 @@ public class TimeSearchRouteService {
         // split the query escape it and and it together
         String cleanQueryString = scl.formatQueryString(query);
 
-        SearchResult searchResult = cs.search(cleanQueryString + reposFilter + langsFilter + ownersFilter + yearFilter + yearMonthFilter + yearMonthDayFilter + revisionsFilter + deletedFilter, page);
+        SearchResult searchResult = cs.search(cleanQueryString, scl.getFilters(reposFilter, langsFilter, ownersFilter, yearFilter, yearMonthFilter, yearMonthDayFilter, revisionsFilter, deletedFilter), page);
         searchResult.setCodeResultList(cm.formatResults(searchResult.getCodeResultList(), query, true));
 
         searchResult.setQuery(query);
@@ -155,7 +155,7 @@ public class TimeSearchRouteService {
                     .map((s) -> Values.CODEOWNER + ":" + QueryParser.escape(s))
                     .collect(Collectors.toList());
 
-            ownersFilter = " && (" + StringUtils.join(ownersList, " || ") + ")";
+            ownersFilter = StringUtils.join(ownersList, " || ");
         }
         return ownersFilter;
     }
@@ -166,7 +166,7 @@ public class TimeSearchRouteService {
                     .map((s) -> Values.LANGUAGENAME + ":" + QueryParser.escape(s))
                     .collect(Collectors.toList());
 
-            langsFilter = " && (" + StringUtils.join(langsList, " || ") + ")";
+            langsFilter = StringUtils.join(langsList, " || ");
         }
         return langsFilter;
     }
@@ -177,7 +177,7 @@ public class TimeSearchRouteService {
                     .map((s) -> Values.REPONAME + ":" + QueryParser.escape(s))
                     .collect(Collectors.toList());
 
-            reposFilter = " && (" + StringUtils.join(reposList, " || ") + ")";
+            reposFilter = StringUtils.join(reposList, " || ");
         }
         return reposFilter;
     }
@@ -188,7 +188,7 @@ public class TimeSearchRouteService {
                     .map((s) -> Values.DATEYEARMONTHDAY + ":" + QueryParser.escape(s))
                     .collect(Collectors.toList());
 
-            yearMonthDayFilter = " && (" + StringUtils.join(reposList, " || ") + ")";
+            yearMonthDayFilter = StringUtils.join(reposList, " || ");
         }
         return yearMonthDayFilter;
     }
@@ -199,7 +199,7 @@ public class TimeSearchRouteService {
                     .map((s) -> Values.DATEYEARMONTH + ":" + QueryParser.escape(s))
                     .collect(Collectors.toList());
 
-            yearMonthFilter = " && (" + StringUtils.join(reposList, " || ") + ")";
+            yearMonthFilter = StringUtils.join(reposList, " || ");
         }
         return yearMonthFilter;
     }
@@ -210,7 +210,7 @@ public class TimeSearchRouteService {
                     .map((s) -> Values.DATEYEAR + ":" + QueryParser.escape(s))
                     .collect(Collectors.toList());
 
-            yearFilter = " && (" + StringUtils.join(reposList, " || ") + ")";
+            yearFilter = StringUtils.join(reposList, " || ");
         }
         return yearFilter;
     }
@@ -221,7 +221,7 @@ public class TimeSearchRouteService {
                     .map((s) -> Values.REVISION + ":" + QueryParser.escape(s))
                     .collect(Collectors.toList());
 
-            revisionsFilter = " && (" + StringUtils.join(reposList, " || ") + ")";
+            revisionsFilter = StringUtils.join(reposList, " || ");
         }
         return revisionsFilter;
     }
@@ -232,7 +232,7 @@ public class TimeSearchRouteService {
                     .map((s) -> Values.DELETED + ":" + QueryParser.escape(s))
                     .collect(Collectors.toList());
 
-            deletedFilter = " && (" + StringUtils.join(reposList, " || ") + ")";
+            deletedFilter = StringUtils.join(reposList, " || ");
         }
         return deletedFilter;
     }
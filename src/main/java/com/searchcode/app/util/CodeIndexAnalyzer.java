@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.10
+ */
+
+package com.searchcode.app.util;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Analyzer used when indexing the contents of a file. Produces the same tokens as joining the output of
+ * codeCleanPipeline, splitKeywords, findInterestingKeywords and findInterestingCharacters from SearchcodeLib
+ * and lower casing the result, but works one word at a time from the reader so the file is never copied.
+ */
+public class CodeIndexAnalyzer extends Analyzer {
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        final Tokenizer source = new CodeTokenizer();
+        TokenStream result = new CodeExpandFilter(source);
+        result = new LowerCaseFilter(result);
+        result = new LengthFilter(result, 0, 100);
+        return new TokenStreamComponents(source, result);
+    }
+
+    /**
+     * Returns the tokens for the supplied text as they would be indexed
+     */
+    public List<String> getTokens(String text) throws IOException {
+        List<String> tokens = new ArrayList<>();
+
+        try (TokenStream stream = this.tokenStream("", text)) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+
+            while (stream.incrementToken()) {
+                tokens.add(termAtt.toString());
+            }
+
+            stream.end();
+        }
+
+        return tokens;
+    }
+}
+
+/**
+ * Expands each whitespace separated word into every token the old string pipeline would have produced for it.
+ * The pieces of the most finely split copy keep their own positions so phrases still work, everything else is
+ * stacked on top of them.
+ */
+final class CodeExpandFilter extends TokenFilter {
+
+    // Same limit SearchcodeLib uses before giving up on splitting keywords
+    private static final int MAXSPLITLENGTH = 100000;
+    private static final int LEVELS = 6;
+    private static final Pattern MULTIPLEUPPERCASE = Pattern.compile("[A-Z]{2,}");
+    private static final Pattern INTERESTINGKEYWORD = Pattern.compile("[a-z]+(\\d+\\.)?(\\d+\\.)?(\\*|\\d+)");
+
+    // The step of codeCleanPipeline at which each character is first replaced with a space, 0 being never
+    private static final byte[] CLEANLEVEL = new byte[128];
+
+    static {
+        setLevel("<>)([]|=,:", 1);
+        setLevel(".", 2);
+        setLevel(";{}/", 3);
+        setLevel("\"'", 4);
+        setLevel("_@#", 5);
+        setLevel("-", 6);
+    }
+
+    private static void setLevel(String characters, int level) {
+        for (char c: characters.toCharArray()) {
+            CLEANLEVEL[c] = (byte) level;
+        }
+    }
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+    private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+    private final Matcher interestingKeywordMatcher = INTERESTINGKEYWORD.matcher("");
+
+    private final List<String> pending = new ArrayList<>();
+    private final Set<String> seen = new HashSet<>();
+    private int pendingIndex = 0;
+    private int positionedCount = 0;
+    private State state = null;
+
+    public CodeExpandFilter(TokenStream input) {
+        super(input);
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        while (this.pendingIndex >= this.pending.size()) {
+            if (!input.incrementToken()) {
+                return false;
+            }
+
+            this.expand(termAtt.toString(), offsetAtt.endOffset() <= MAXSPLITLENGTH);
+            this.state = captureState();
+            this.pendingIndex = 0;
+        }
+
+        restoreState(this.state);
+        termAtt.setEmpty().append(this.pending.get(this.pendingIndex));
+
+        if (this.pendingIndex != 0) {
+            posIncAtt.setPositionIncrement(this.pendingIndex < this.positionedCount ? 1 : 0);
+        }
+
+        this.pendingIndex++;
+        return true;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        this.pending.clear();
+        this.pendingIndex = 0;
+        this.state = null;
+    }
+
+    private void expand(String word, boolean splitKeywords) {
+        this.pending.clear();
+        this.seen.clear();
+
+        boolean[] levels = new boolean[LEVELS + 1];
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c < 128) {
+                levels[CLEANLEVEL[c]] = true;
+            }
+        }
+
+        // Finest split first as those are the ones that get positions, then each coarser copy only if it differs
+        this.split(word, LEVELS, true);
+        this.positionedCount = this.pending.size();
+
+        for (int level = LEVELS - 1; level >= 1; level--) {
+            if (levels[level + 1]) {
+                this.split(word, level, false);
+            }
+        }
+
+        if (splitKeywords) {
+            this.splitKeywords(word);
+            this.findInterestingKeywords(word);
+        }
+
+        this.findInterestingCharacters(word);
+    }
+
+    /**
+     * Equivalent to the words of codeCleanPipeline for this word once it reaches the given step
+     */
+    private void split(String word, int level, boolean keepDuplicates) {
+        int start = 0;
+
+        for (int i = 0; i <= word.length(); i++) {
+            if (i == word.length() || (word.charAt(i) < 128 && CLEANLEVEL[word.charAt(i)] != 0 && CLEANLEVEL[word.charAt(i)] <= level)) {
+                if (i > start) {
+                    String token = word.substring(start, i);
+                    if (this.seen.add(token) || keepDuplicates) {
+                        this.pending.add(token);
+                    }
+                }
+                start = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Equivalent to splitKeywords, so that things like RegexIndexer also match Regex Indexer
+     */
+    private void splitKeywords(String word) {
+        int start = 0;
+
+        for (int i = 0; i <= word.length(); i++) {
+            if (i == word.length() || !isAsciiLetterOrDigit(word.charAt(i))) {
+                if (i - start >= 7) {
+                    this.splitUppercase(word.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+    }
+
+    private void splitUppercase(String part) {
+        if (MULTIPLEUPPERCASE.matcher(part).find()) {
+            return;
+        }
+
+        List<String> splitStrings = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i < part.length(); i++) {
+            if (part.charAt(i) >= 'A' && part.charAt(i) <= 'Z') {
+                splitStrings.add(part.substring(start, i));
+                start = i;
+            }
+        }
+        splitStrings.add(part.substring(start));
+
+        if (splitStrings.size() > 1) {
+            for (String token: splitStrings) {
+                this.addStacked(token);
+            }
+        }
+    }
+
+    /**
+     * Equivalent to findInterestingKeywords which finds versions with words at the front, eg linux2.7.4
+     */
+    private void findInterestingKeywords(String word) {
+        this.interestingKeywordMatcher.reset(word);
+
+        while (this.interestingKeywordMatcher.find()) {
+            this.addStacked(this.interestingKeywordMatcher.group());
+        }
+    }
+
+    /**
+     * Equivalent to findInterestingCharacters which indexes every character that is not part of a word on its own
+     */
+    private void findInterestingCharacters(String word) {
+        for (int i = 0; i < word.length(); ) {
+            int c = word.codePointAt(i);
+
+            if (!(c < 128 && (isAsciiLetterOrDigit((char) c) || c == '_'))) {
+                this.addStacked(new String(Character.toChars(c)));
+            }
+
+            i += Character.charCount(c);
+        }
+    }
+
+    private void addStacked(String token) {
+        if (this.seen.add(token)) {
+            this.pending.add(token);
+        }
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.10
+ */
+
+package com.searchcode.app.util;
+
+import com.searchcode.app.dto.CodeIndexDocument;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queue of documents waiting to be indexed which is bounded by the size of their contents rather than how many
+ * there are. Producers block in put until the indexer has drained enough to make room, so a single large
+ * repository cannot fill the heap. A document larger than the whole capacity is still accepted once the queue
+ * is empty so that it can be indexed. The size, lines and bytes are kept as counters so reading them is cheap.
+ */
+public class CodeIndexQueue extends AbstractQueue<CodeIndexDocument> implements BlockingQueue<CodeIndexDocument> {
+
+    private final long capacityBytes;
+    private final ArrayDeque<CodeIndexDocument> queue = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private volatile int count = 0;
+    private volatile long queueBytes = 0;
+    private volatile long queueLines = 0;
+
+    public CodeIndexQueue(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+    }
+
+    /**
+     * Strings are two bytes a character so this is roughly how much heap the contents of the document use
+     */
+    public static long getDocumentBytes(CodeIndexDocument codeIndexDocument) {
+        String contents = codeIndexDocument.getContents();
+        return contents == null ? 0 : contents.length() * 2L;
+    }
+
+    @Override
+    public boolean offer(CodeIndexDocument codeIndexDocument) {
+        checkNotNull(codeIndexDocument);
+        long bytes = getDocumentBytes(codeIndexDocument);
+
+        this.lock.lock();
+        try {
+            if (!this.hasRoom(bytes)) {
+                return false;
+            }
+
+            this.enqueue(codeIndexDocument, bytes);
+            return true;
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(CodeIndexDocument codeIndexDocument) throws InterruptedException {
+        checkNotNull(codeIndexDocument);
+        long bytes = getDocumentBytes(codeIndexDocument);
+
+        this.lock.lockInterruptibly();
+        try {
+            while (!this.hasRoom(bytes)) {
+                this.notFull.await();
+            }
+
+            this.enqueue(codeIndexDocument, bytes);
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(CodeIndexDocument codeIndexDocument, long timeout, TimeUnit unit) throws InterruptedException {
+        checkNotNull(codeIndexDocument);
+        long bytes = getDocumentBytes(codeIndexDocument);
+        long nanos = unit.toNanos(timeout);
+
+        this.lock.lockInterruptibly();
+        try {
+            while (!this.hasRoom(bytes)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = this.notFull.awaitNanos(nanos);
+            }
+
+            this.enqueue(codeIndexDocument, bytes);
+            return true;
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public CodeIndexDocument poll() {
+        this.lock.lock();
+        try {
+            return this.count == 0 ? null : this.dequeue();
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public CodeIndexDocument take() throws InterruptedException {
+        this.lock.lockInterruptibly();
+        try {
+            while (this.count == 0) {
+                this.notEmpty.await();
+            }
+
+            return this.dequeue();
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public CodeIndexDocument poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+
+        this.lock.lockInterruptibly();
+        try {
+            while (this.count == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = this.notEmpty.awaitNanos(nanos);
+            }
+
+            return this.dequeue();
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for something to be added without removing it, returning false if nothing was added in time.
+     * Lets the indexer sleep until there is work and then take it using poll.
+     */
+    public boolean awaitNotEmpty(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+
+        this.lock.lockInterruptibly();
+        try {
+            while (this.count == 0) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = this.notEmpty.awaitNanos(nanos);
+            }
+
+            return true;
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public CodeIndexDocument peek() {
+        this.lock.lock();
+        try {
+            return this.queue.peek();
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super CodeIndexDocument> collection) {
+        return this.drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Removes up to maxElements documents in one go which is how the indexer takes a batch to work on
+     */
+    @Override
+    public int drainTo(Collection<? super CodeIndexDocument> collection, int maxElements) {
+        checkNotNull(collection);
+        if (collection == this) {
+            throw new IllegalArgumentException();
+        }
+
+        this.lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && this.count != 0) {
+                collection.add(this.dequeue());
+                drained++;
+            }
+
+            return drained;
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object object) {
+        this.lock.lock();
+        try {
+            Iterator<CodeIndexDocument> iterator = this.queue.iterator();
+            while (iterator.hasNext()) {
+                CodeIndexDocument codeIndexDocument = iterator.next();
+
+                if (codeIndexDocument.equals(object)) {
+                    iterator.remove();
+                    this.count--;
+                    this.queueBytes -= getDocumentBytes(codeIndexDocument);
+                    this.queueLines -= codeIndexDocument.getCodeLines();
+                    this.notFull.signalAll();
+                    return true;
+                }
+            }
+
+            return false;
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int size() {
+        return this.count;
+    }
+
+    @Override
+    public void clear() {
+        this.lock.lock();
+        try {
+            this.queue.clear();
+            this.count = 0;
+            this.queueBytes = 0;
+            this.queueLines = 0;
+            this.notFull.signalAll();
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a copy so that callers cannot modify the queue without the counters being updated
+     */
+    @Override
+    public Iterator<CodeIndexDocument> iterator() {
+        this.lock.lock();
+        try {
+            return new ArrayList<>(this.queue).iterator();
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    public long getCapacityBytes() {
+        return this.capacityBytes;
+    }
+
+    public long getQueueBytes() {
+        return this.queueBytes;
+    }
+
+    public long getQueueLines() {
+        return this.queueLines;
+    }
+
+    private boolean hasRoom(long bytes) {
+        return this.count == 0 || this.queueBytes + bytes <= this.capacityBytes;
+    }
+
+    private void enqueue(CodeIndexDocument codeIndexDocument, long bytes) {
+        this.queue.add(codeIndexDocument);
+        this.count++;
+        this.queueBytes += bytes;
+        this.queueLines += codeIndexDocument.getCodeLines();
+        this.notEmpty.signalAll();
+    }
+
+    private CodeIndexDocument dequeue() {
+        CodeIndexDocument codeIndexDocument = this.queue.poll();
+        this.count--;
+        this.queueBytes -= getDocumentBytes(codeIndexDocument);
+        this.queueLines -= codeIndexDocument.getCodeLines();
+        this.notFull.signalAll();
+        return codeIndexDocument;
+    }
+
+    private static void checkNotNull(Object object) {
+        if (object == null) {
+            throw new NullPointerException();
+        }
+    }
+}
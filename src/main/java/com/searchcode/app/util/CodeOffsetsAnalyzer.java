@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.10
+ */
+
+package com.searchcode.app.util;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.util.CharTokenizer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the original contents of a file into lower cased runs of letters, digits and underscores while keeping
+ * the offset of each into the file. Used for the field which lets results jump straight to the matching lines.
+ */
+public class CodeOffsetsAnalyzer extends Analyzer {
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        final Tokenizer source = new CodeOffsetsTokenizer();
+        TokenStream result = new LengthFilter(source, 0, 100);
+        return new TokenStreamComponents(source, result);
+    }
+
+    /**
+     * Returns the tokens for the supplied text as they would be indexed
+     */
+    public List<String> getTokens(String text) throws IOException {
+        List<String> tokens = new ArrayList<>();
+
+        try (TokenStream stream = this.tokenStream("", text)) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+
+            while (stream.incrementToken()) {
+                tokens.add(termAtt.toString());
+            }
+
+            stream.end();
+        }
+
+        return tokens;
+    }
+}
+
+final class CodeOffsetsTokenizer extends CharTokenizer {
+    @Override
+    protected boolean isTokenChar(int c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    @Override
+    protected int normalize(int c) {
+        return Character.toLowerCase(c);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.10
+ */
+
+package com.searchcode.app.util;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Analyzer used when indexing file names and locations. Each path is indexed whole along with every directory,
+ * the parts of each name split on punctuation such as dots, underscores and dashes and the parts of each of those
+ * split on camel case, so src/main/RegexIndexer.java can be found by searching for regexindexer, indexer or main.
+ * Everything is lower cased as search queries are.
+ */
+public class CodeSymbolAnalyzer extends Analyzer {
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        final Tokenizer source = new CodeTokenizer();
+        TokenStream result = new SymbolSplitFilter(source);
+        result = new LowerCaseFilter(result);
+        result = new LengthFilter(result, 0, 100);
+        return new TokenStreamComponents(source, result);
+    }
+
+    /**
+     * Returns the tokens for the supplied text as they would be indexed
+     */
+    public List<String> getTokens(String text) throws IOException {
+        List<String> tokens = new ArrayList<>();
+
+        try (TokenStream stream = this.tokenStream("", text)) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+
+            while (stream.incrementToken()) {
+                tokens.add(termAtt.toString());
+            }
+
+            stream.end();
+        }
+
+        return tokens;
+    }
+}
+
+/**
+ * Expands each whitespace separated path into the path, its directories and the identifiers inside each of those.
+ * Everything is stacked on the position of the path as file names are searched for as single terms.
+ */
+final class SymbolSplitFilter extends TokenFilter {
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+
+    private final List<String> pending = new ArrayList<>();
+    private int pendingIndex = 0;
+    private State state = null;
+
+    public SymbolSplitFilter(TokenStream input) {
+        super(input);
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        while (this.pendingIndex >= this.pending.size()) {
+            if (!input.incrementToken()) {
+                return false;
+            }
+
+            this.expand(termAtt.toString());
+            this.state = captureState();
+            this.pendingIndex = 0;
+        }
+
+        restoreState(this.state);
+        termAtt.setEmpty().append(this.pending.get(this.pendingIndex));
+
+        if (this.pendingIndex != 0) {
+            posIncAtt.setPositionIncrement(0);
+        }
+
+        this.pendingIndex++;
+        return true;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        this.pending.clear();
+        this.pendingIndex = 0;
+        this.state = null;
+    }
+
+    private void expand(String path) {
+        Set<String> tokens = new LinkedHashSet<>();
+        tokens.add(path);
+
+        for (String segment: path.split("[/\\\\]")) {
+            tokens.add(segment);
+
+            for (String part: segment.split("[^\\p{L}\\p{N}]")) {
+                tokens.add(part);
+                this.splitCamelCase(part, tokens);
+            }
+        }
+
+        tokens.remove("");
+
+        this.pending.clear();
+        this.pending.addAll(tokens);
+    }
+
+    /**
+     * Splits on changes from lower to upper case, keeping runs of capitals together so HTTPServer gives HTTP and Server
+     */
+    private void splitCamelCase(String part, Set<String> tokens) {
+        int start = 0;
+
+        for (int i = 1; i < part.length(); i++) {
+            char previous = part.charAt(i - 1);
+            char current = part.charAt(i);
+            boolean nextLower = i + 1 < part.length() && Character.isLowerCase(part.charAt(i + 1));
+
+            if (Character.isUpperCase(current) && (Character.isLowerCase(previous) || (Character.isUpperCase(previous) && nextLower))) {
+                tokens.add(part.substring(start, i));
+                start = i;
+            }
+        }
+
+        if (start != 0) {
+            tokens.add(part.substring(start));
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2016 Boyter Online Services
+ *
+ * Use of this software is governed by the Fair Source License included
+ * in the LICENSE.TXT file, but will be eventually open under GNU General Public License Version 3
+ * see the README.md for when this clause will take effect
+ *
+ * Version 1.3.10
+ */
+
+package com.searchcode.app.util;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.analysis.ngram.NGramTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits text into every lower cased run of three characters including whitespace and punctuation. Any text
+ * three or more characters long can only appear in a file which contains all of its trigrams so they are used to
+ * find the few files worth checking for a literal search.
+ */
+public class CodeTrigramAnalyzer extends Analyzer {
+
+    public static final int GRAMSIZE = 3;
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        final Tokenizer source = new NGramTokenizer(GRAMSIZE, GRAMSIZE);
+        TokenStream result = new LowerCaseFilter(source);
+        return new TokenStreamComponents(source, result);
+    }
+
+    /**
+     * Returns the distinct trigrams of the supplied text in the order they first appear
+     */
+    public Set<String> getTrigrams(String text) throws IOException {
+        Set<String> trigrams = new LinkedHashSet<>();
+
+        try (TokenStream stream = this.tokenStream("", text)) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+
+            while (stream.incrementToken()) {
+                trigrams.add(termAtt.toString());
+            }
+
+            stream.end();
+        }
+
+        return trigrams;
+    }
+
+    /**
+     * Returns trigrams which any text matching the regular expression must contain. Only runs of plain characters
+     * outside of groups and classes which are not made optional by a quantifier are used, and nothing is required
+     * if the expression has a top level alternation, so this can return too few trigrams but never too many.
+     */
+    public Set<String> getRegexTrigrams(String regex) throws IOException {
+        Set<String> trigrams = new LinkedHashSet<>();
+
+        // In comments mode whitespace is not matched literally
+        if (regex.matches("(?s).*\\(\\?[a-zA-Z-]*x.*")) {
+            return trigrams;
+        }
+
+        List<String> runs = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+
+            if (c == '\\') {
+                if (i + 1 >= regex.length()) {
+                    break;
+                }
+
+                char next = regex.charAt(i + 1);
+
+                if (next == 'Q') {
+                    int end = regex.indexOf("\\E", i + 2);
+                    if (depth == 0) {
+                        run.append(end == -1 ? regex.substring(i + 2) : regex.substring(i + 2, end));
+                    }
+                    i = end == -1 ? regex.length() : end + 1;
+                }
+                else if (depth == 0 && !Character.isLetterOrDigit(next)) {
+                    run.append(next);
+                    i++;
+                }
+                else {
+                    this.endRun(runs, run);
+                    i = this.skipEscape(regex, i + 1);
+                }
+            }
+            else if (c == '(') {
+                depth++;
+                this.endRun(runs, run);
+            }
+            else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+                this.endRun(runs, run);
+            }
+            else if (c == '[') {
+                i = this.skipClass(regex, i);
+                this.endRun(runs, run);
+            }
+            else if (depth > 0) {
+                continue;
+            }
+            else if (c == '|') {
+                return trigrams;
+            }
+            else if (c == '*' || c == '?' || c == '{') {
+                // The character before may not appear at all
+                if (run.length() != 0) {
+                    run.setLength(run.length() - 1);
+                }
+                this.endRun(runs, run);
+
+                if (c == '{') {
+                    int close = regex.indexOf('}', i);
+                    i = close == -1 ? regex.length() : close;
+                }
+                i = this.skipQuantifierMode(regex, i);
+            }
+            else if (c == '+') {
+                this.endRun(runs, run);
+                i = this.skipQuantifierMode(regex, i);
+            }
+            else if (c == '.' || c == '^' || c == '$') {
+                this.endRun(runs, run);
+            }
+            else {
+                run.append(c);
+            }
+        }
+
+        this.endRun(runs, run);
+
+        for (String literal: runs) {
+            trigrams.addAll(this.getTrigrams(literal));
+        }
+
+        return trigrams;
+    }
+
+    private void endRun(List<String> runs, StringBuilder run) {
+        if (run.length() >= GRAMSIZE) {
+            runs.add(run.toString());
+        }
+        run.setLength(0);
+    }
+
+    /**
+     * Returns the index of the last character of the escape such as \x41, \p{Lu} or \12 whose letter is at the
+     * given index
+     */
+    private int skipEscape(String regex, int index) {
+        char c = regex.charAt(index);
+        char next = index + 1 < regex.length() ? regex.charAt(index + 1) : 0;
+
+        if (next == '{' && (c == 'x' || c == 'p' || c == 'P' || c == 'N')) {
+            int close = regex.indexOf('}', index);
+            return close == -1 ? regex.length() : close;
+        }
+
+        if (next == '<' && c == 'k') {
+            int close = regex.indexOf('>', index);
+            return close == -1 ? regex.length() : close;
+        }
+
+        int end = index;
+
+        switch (c) {
+            case 'x':
+                end = index + 2;
+                break;
+            case 'u':
+                end = index + 4;
+                break;
+            case 'c':
+            case 'p':
+            case 'P':
+                end = index + 1;
+                break;
+            default:
+                if (Character.isDigit(c)) {
+                    while (end + 1 < regex.length() && Character.isDigit(regex.charAt(end + 1))) {
+                        end++;
+                    }
+                }
+        }
+
+        return Math.min(end, regex.length());
+    }
+
+    /**
+     * Returns the index of the bracket closing the character class starting at the given index
+     */
+    private int skipClass(String regex, int start) {
+        int depth = 0;
+
+        for (int i = start; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+
+            if (c == '\\') {
+                i++;
+            }
+            else if (c == '[') {
+                depth++;
+                // A closing bracket straight after the opening one or a negation is a literal
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+                    i++;
+                }
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+                    i++;
+                }
+            }
+            else if (c == ']' && --depth == 0) {
+                return i;
+            }
+        }
+
+        return regex.length();
+    }
+
+    /**
+     * Skips the ? or + which makes a quantifier lazy or possessive
+     */
+    private int skipQuantifierMode(String regex, int index) {
+        if (index + 1 < regex.length() && (regex.charAt(index + 1) == '?' || regex.charAt(index + 1) == '+')) {
+            return index + 1;
+        }
+
+        return index;
+    }
+}
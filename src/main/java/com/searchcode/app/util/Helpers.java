@@ -13,13 +13,18 @@ package com.searchcode.app.util;
 
 import com.glaforge.i18n.io.CharsetToolkit;
 import com.searchcode.app.config.Values;
+import com.searchcode.app.dto.FileIngestResult;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.lib.Repository;
 
 import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -37,6 +42,8 @@ import java.util.stream.Stream;
  */
 public class Helpers {
 
+    private static final int CHARSET_GUESS_BYTES = 4096;
+
     private java.util.Properties properties;
 
     public Helpers() {
@@ -137,8 +144,51 @@ public class Helpers {
         return fileLines;
     }
 
+    /**
+     * Reads a file from disk exactly once producing the MD5 of the whole file, the guessed charset and up to
+     * maxFileLineDepth decoded lines. Only the start of the file used to guess the charset is held in memory, the
+     * rest is decoded as it is read and anything after the last line wanted only passes through the digest. Used by
+     * the indexer which previously read each file three times to get the same information.
+     */
+    public FileIngestResult ingestFile(String filePath, int maxFileLineDepth) throws IOException {
+        MessageDigest messageDigest = org.apache.commons.codec.digest.DigestUtils.getMd5Digest();
+        InputStream inputStream = null;
+
+        try {
+            inputStream = new BufferedInputStream(new DigestInputStream(new FileInputStream(filePath), messageDigest));
+
+            // Matches guessCharset which looks at a zero padded block from the start of the file
+            byte[] guessBytes = new byte[CHARSET_GUESS_BYTES];
+            int length = IOUtils.read(inputStream, guessBytes);
+            Charset charset = new CharsetToolkit(guessBytes, StandardCharsets.UTF_8).guessEncoding();
+
+            List<String> fileLines = new ArrayList<>();
+            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(new SequenceInputStream(new ByteArrayInputStream(guessBytes, 0, length), new CloseShieldInputStream(inputStream)), charset));
+
+            String line;
+            int lineCount = 0;
+            while ((line = bufferedReader.readLine()) != null) {
+                lineCount++;
+
+                fileLines.add(line);
+
+                if (lineCount == maxFileLineDepth) {
+                    break;
+                }
+            }
+
+            // Whatever was not decoded still needs to be part of the hash
+            IOUtils.skip(inputStream, Long.MAX_VALUE);
+
+            return new FileIngestResult(fileLines, Hex.encodeHexString(messageDigest.digest()), charset);
+        }
+        finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
     public Charset guessCharset(File file) throws IOException {
-        return CharsetToolkit.guessEncoding(file, 4096, StandardCharsets.UTF_8);
+        return CharsetToolkit.guessEncoding(file, CHARSET_GUESS_BYTES, StandardCharsets.UTF_8);
     }
 
     /**
@@ -17,4 +17,6 @@ public interface ISpellingCorrector {
     String correct(String word);
     boolean containsWord(String word);
     boolean reset();
+    boolean save();
+    boolean load();
 }
@@ -393,6 +393,22 @@ public class SearchcodeLib {
         return this.formatQueryStringOrDefault(query);
     }
 
+    /**
+     * Collects the facet filters which were set so they can be applied to a search as filters rather than
+     * being joined onto the query
+     */
+    public List<String> getFilters(String... filters) {
+        List<String> filterList = new ArrayList<>();
+
+        for (String filter: filters) {
+            if (!Strings.isNullOrEmpty(filter)) {
+                filterList.add(filter);
+            }
+        }
+
+        return filterList;
+    }
+
     public String formatQueryStringAndDefault(String query) {
         String[] split = query.trim().split("\\s+");
 
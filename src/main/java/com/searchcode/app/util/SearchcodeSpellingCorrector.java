@@ -14,52 +14,82 @@ package com.searchcode.app.util;
 import com.searchcode.app.config.Values;
 import com.searchcode.app.service.Singleton;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 
 /**
- * A simple spell checker based on a few implementations such as the infamous Peter Noving spell checker and
- * the like. Attempts to be highly performing by never changing the first character (for the first pass)
- * since we can usually assume that the user got that correct.
+ * A spell checker based on symmetric delete spelling correction. Every word added also has each variant made by
+ * deleting up to two characters from its start recorded against it, so a correction only needs the deletes of the
+ * misspelled word to find every word within two edits, rather than generating the far larger number of
+ * insertions and replacements of it when searching. Corrections never change the first character since we can
+ * usually assume that the user got that correct. The words can be saved and loaded so suggestions are available
+ * straight after a restart.
  */
 public class SearchcodeSpellingCorrector implements ISpellingCorrector {
 
+    // How many edits away a correction can be
+    private static final int MAXEDITDISTANCE = 2;
+
+    // Only deletes of the start of a word are recorded which keeps the number per word small for long identifiers
+    private static final int PREFIXLENGTH = 7;
+
     // How many terms to keep in the LRUCACHE
     private int LRUCOUNT = Integer.parseInt(Values.DEFAULTSPELLINGCORRECTORSIZE);
 
-    private int VARIATIONSCOUNT = 200000;
+    // Where the words are saved to and loaded from, or null if they are not kept
+    private final Path dictionaryLocation;
 
     // word to count map - how may times a word is present - or a weight attached to a word
-    private Map<String, Integer> dictionary = null;
+    private final Map<String, Integer> dictionary;
+
+    // delete of a word to the words it was made from
+    private final Map<String, List<String>> deletes = new HashMap<>();
 
     public SearchcodeSpellingCorrector() {
+        this(null);
+    }
+
+    public SearchcodeSpellingCorrector(Path dictionaryLocation) {
+        this.dictionaryLocation = dictionaryLocation;
+
         this.LRUCOUNT = Integer.parseInt(Properties.getProperties().getProperty(Values.SPELLINGCORRECTORSIZE, Values.DEFAULTSPELLINGCORRECTORSIZE));
         if (this.LRUCOUNT <= 0) {
             this.LRUCOUNT = Integer.parseInt(Values.DEFAULTSPELLINGCORRECTORSIZE);
         }
 
-        this.dictionary = Collections.synchronizedMap(new LruCache<>(this.LRUCOUNT));
+        this.dictionary = new LruCache<String, Integer>(this.LRUCOUNT) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Integer> eldest) {
+                boolean remove = super.removeEldestEntry(eldest);
+                if (remove) {
+                    removeDeletes(eldest.getKey());
+                }
+                return remove;
+            }
+        };
     }
 
     @Override
-    public int getWordCount() {
+    public synchronized int getWordCount() {
         return dictionary.size();
     }
 
     @Override
-    public boolean reset() {
+    public synchronized boolean reset() {
         this.dictionary.clear();
+        this.deletes.clear();
         return true;
     }
 
     @Override
-    public void putWord(String word) {
-        word = word.toLowerCase();
-        if (dictionary.containsKey(word)) {
-            dictionary.put(word, (dictionary.get(word) + 1));
-        }
-        else {
-            dictionary.put(word, 1);
-        }
+    public synchronized void putWord(String word) {
+        this.addWord(word.toLowerCase(), 1);
     }
 
     @Override
@@ -70,135 +100,231 @@ public class SearchcodeSpellingCorrector implements ISpellingCorrector {
 
         word = word.toLowerCase();
 
-        // If the word exists in our dictionary then return
-        if (dictionary.containsKey(word)) {
-            return word;
-        }
-
-        Map<String, Integer> possibleMatches = new HashMap<>();
-
-        List<String> closeEdits = wordEdits(word);
-        for (String closeEdit: closeEdits) {
-            if (dictionary.containsKey(closeEdit)) {
-                possibleMatches.put(closeEdit, this.dictionary.get(closeEdit));
+        synchronized (this) {
+            // If the word exists in our dictionary then return
+            if (dictionary.containsKey(word)) {
+                return word;
             }
-        }
 
-        if (closeEdits.size() > VARIATIONSCOUNT) {
-            closeEdits = closeEdits.subList(0, VARIATIONSCOUNT);
-        }
+            String bestMatch = word;
+            int bestDistance = MAXEDITDISTANCE + 1;
+            int bestCount = 0;
+            boolean bestSameLength = false;
+            Set<String> checked = new HashSet<>();
 
-        if (!possibleMatches.isEmpty()) {
-            // Sorted least likely first
-            Object[] matches = Singleton.getHelpers().sortByValue(possibleMatches).keySet().toArray();
+            for (String delete: this.getDeletes(word)) {
+                List<String> candidates = this.deletes.get(delete);
+                if (candidates == null) {
+                    continue;
+                }
 
-            // Try to match anything of the same length first
-            String bestMatch = "";
-            for(Object o: matches) {
-                if (o.toString().length() == word.length()) {
-                    bestMatch = o.toString();
+                for (String candidate: candidates) {
+                    if (!checked.add(candidate) || candidate.isEmpty() || candidate.charAt(0) != word.charAt(0)) {
+                        continue;
+                    }
+
+                    int distance = getEditDistance(word, candidate, MAXEDITDISTANCE);
+                    if (distance > MAXEDITDISTANCE) {
+                        continue;
+                    }
+
+                    // Closest wins, then anything of the same length, then the most common
+                    boolean sameLength = candidate.length() == word.length();
+                    int count = this.dictionary.get(candidate);
+
+                    if (distance < bestDistance
+                            || (distance == bestDistance && sameLength && !bestSameLength)
+                            || (distance == bestDistance && sameLength == bestSameLength && (count > bestCount || (count == bestCount && candidate.compareTo(bestMatch) < 0)))) {
+                        bestMatch = candidate;
+                        bestDistance = distance;
+                        bestCount = count;
+                        bestSameLength = sameLength;
+                    }
                 }
             }
 
-            if (!Singleton.getHelpers().isNullEmptyOrWhitespace(bestMatch)) {
-                return bestMatch;
-            }
+            // If unable to find something better return the same string
+            return bestMatch;
+        }
+    }
 
-            // Just return whatever is the best match
-            return matches[matches.length - 1].toString();
+    @Override
+    public synchronized boolean containsWord(String word) {
+        if (dictionary.containsKey(word)) {
+            return true;
         }
 
-        // Ok we did't find anything, so lets run the edits function on the previous results and use those
-        // this gives us results which are 2 characters away from whatever was entered
-        List<String> furtherEdits = new ArrayList<>();
-        for(String closeEdit: closeEdits) {
-            furtherEdits.addAll(this.wordEdits(closeEdit));
+        return false;
+    }
 
-            if (furtherEdits.size() > this.VARIATIONSCOUNT) {
-                break;
-            }
+    /**
+     * Saves every word and its count, least recently used first so loading keeps the same words
+     */
+    @Override
+    public boolean save() {
+        if (this.dictionaryLocation == null) {
+            return false;
         }
 
-        for (String futherEdit: furtherEdits) {
-            if (dictionary.containsKey(futherEdit)) {
-                possibleMatches.put(futherEdit, this.dictionary.get(futherEdit));
+        List<Map.Entry<String, Integer>> words;
+        synchronized (this) {
+            words = new ArrayList<>(this.dictionary.size());
+            for (Map.Entry<String, Integer> entry: this.dictionary.entrySet()) {
+                words.add(new AbstractMap.SimpleImmutableEntry<>(entry));
             }
         }
 
-        if (!possibleMatches.isEmpty()) {
-            // Sorted least likely first
-            Object[] matches = Singleton.getHelpers().sortByValue(possibleMatches).keySet().toArray();
+        try {
+            Files.createDirectories(this.dictionaryLocation.toAbsolutePath().getParent());
+            Path temp = this.dictionaryLocation.resolveSibling(this.dictionaryLocation.getFileName() + ".tmp");
 
-            // Try to match anything of the same length first
-            String bestMatch = "";
-            for(Object o: matches) {
-                if (o.toString().length() == word.length()) {
-                    bestMatch = o.toString();
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Integer> entry: words) {
+                    writer.write(entry.getKey() + " " + entry.getValue());
+                    writer.newLine();
                 }
             }
 
-            if (!Singleton.getHelpers().isNullEmptyOrWhitespace(bestMatch)) {
-                return bestMatch;
-            }
-
-            // Just return whatever is the best match
-            return matches[matches.length - 1].toString();
+            Files.move(temp, this.dictionaryLocation, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException ex) {
+            Singleton.getLogger().warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+            return false;
         }
 
-
-        // If unable to find something better return the same string
-        return word;
+        return true;
     }
 
+    /**
+     * Adds the words saved previously
+     */
     @Override
-    public boolean containsWord(String word) {
-        if (dictionary.containsKey(word)) {
-            return true;
+    public boolean load() {
+        if (this.dictionaryLocation == null || !Files.exists(this.dictionaryLocation)) {
+            return false;
         }
 
-        return false;
-    }
+        try (BufferedReader reader = Files.newBufferedReader(this.dictionaryLocation, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] split = line.split(" ");
+                if (split.length == 2) {
+                    int count = Singleton.getHelpers().tryParseInt(split[1], "0");
+                    if (count > 0) {
+                        synchronized (this) {
+                            this.addWord(split[0], count);
+                        }
+                    }
+                }
+            }
+        }
+        catch (IOException ex) {
+            Singleton.getLogger().warning(" caught a " + ex.getClass() + "\n with message: " + ex.getMessage());
+            return false;
+        }
 
+        return true;
+    }
 
     /**
-     * Return a list of strings which are words similar to our one which could potentially be misspellings
-     * Abuse the fact that a char can be used as an integer
-     * Assume that they got the first letter correct for all edits to cut on CPU burn time
+     * Number of insertions, deletions, replacements and swaps of neighbouring characters needed to turn one string
+     * into the other, or max + 1 if that is more than max. Only differences within max of the diagonal are
+     * considered so long strings are cheap to compare.
      */
-    private List<String> wordEdits(String word) {
-        List<String> closeWords = new ArrayList<String>();
-
-        for (int i = 1; i < word.length() + 1; i++) {
-            for (char character = 'a'; character <= 'z'; character++) {
-                // Maybe they forgot to type a letter? Try adding one
-                StringBuilder sb = new StringBuilder(word);
-                sb.insert(i, character);
-                closeWords.add(sb.toString());
+    public static int getEditDistance(String first, String second, int max) {
+        int over = max + 1;
+
+        if (Math.abs(first.length() - second.length()) > max) {
+            return over;
+        }
+
+        int[] previousPrevious = new int[second.length() + 1];
+        int[] previous = new int[second.length() + 1];
+        int[] current = new int[second.length() + 1];
+
+        for (int j = 0; j <= second.length(); j++) {
+            previous[j] = Math.min(j, over);
+        }
+
+        for (int i = 1; i <= first.length(); i++) {
+            Arrays.fill(current, over);
+            current[0] = Math.min(i, over);
+            int rowMin = current[0];
+
+            for (int j = Math.max(1, i - max); j <= Math.min(second.length(), i + max); j++) {
+                int cost = first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1;
+                int distance = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+
+                if (i > 1 && j > 1 && first.charAt(i - 1) == second.charAt(j - 2) && first.charAt(i - 2) == second.charAt(j - 1)) {
+                    distance = Math.min(distance, previousPrevious[j - 2] + 1);
+                }
+
+                current[j] = Math.min(distance, over);
+                rowMin = Math.min(rowMin, current[j]);
             }
 
-            if (closeWords.size() > this.VARIATIONSCOUNT) {
-                return closeWords;
+            if (rowMin > max) {
+                return over;
             }
+
+            int[] temp = previousPrevious;
+            previousPrevious = previous;
+            previous = current;
+            current = temp;
         }
 
-        for (int i = 1; i < word.length(); i++) {
-            for (char character = 'a'; character <= 'z'; character++) {
-                // Maybe they mistyped a single letter? Try replacing them all
-                StringBuilder sb = new StringBuilder(word);
-                sb.setCharAt(i, character);
-                closeWords.add(sb.toString());
+        return previous[second.length()];
+    }
+
+    /**
+     * Must be called holding the lock on this
+     */
+    private void addWord(String word, int count) {
+        Integer previous = this.dictionary.get(word);
+        this.dictionary.put(word, previous == null ? count : previous + count);
+
+        if (previous == null) {
+            for (String delete: this.getDeletes(word)) {
+                this.deletes.computeIfAbsent(delete, k -> new ArrayList<>(1)).add(word);
+            }
+        }
+    }
 
-                // Maybe they added an extra letter? Try deleting one
-                sb = new StringBuilder(word);
-                sb.deleteCharAt(i);
-                closeWords.add(sb.toString());
+    private void removeDeletes(String word) {
+        for (String delete: this.getDeletes(word)) {
+            List<String> words = this.deletes.get(delete);
+            if (words != null) {
+                words.remove(word);
+                if (words.isEmpty()) {
+                    this.deletes.remove(delete);
+                }
             }
+        }
+    }
 
-            if (closeWords.size() > this.VARIATIONSCOUNT) {
-                return closeWords;
+    /**
+     * Returns the start of the word along with everything made by deleting up to two characters from it
+     */
+    private Set<String> getDeletes(String word) {
+        Set<String> deletes = new HashSet<>();
+        deletes.add(word.length() > PREFIXLENGTH ? word.substring(0, PREFIXLENGTH) : word);
+
+        List<String> edits = new ArrayList<>(deletes);
+        for (int distance = 0; distance < MAXEDITDISTANCE; distance++) {
+            List<String> next = new ArrayList<>();
+
+            for (String edit: edits) {
+                for (int i = 0; i < edit.length(); i++) {
+                    String delete = edit.substring(0, i) + edit.substring(i + 1);
+                    if (deletes.add(delete)) {
+                        next.add(delete);
+                    }
+                }
             }
+
+            edits = next;
         }
 
-        return closeWords;
+        return deletes;
     }
 }
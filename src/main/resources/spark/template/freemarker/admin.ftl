@@ -69,6 +69,10 @@
                     </div>
                     <div class="panel-body">
                     Number of Searches: <span ic-poll="3s" ic-src="/admin/api/getstat/?statname=searchcount">${numSearches}</span>
+                    <br>Search Cache Hits: <span ic-poll="3s" ic-src="/admin/api/getstat/?statname=searchcachehits">${searchCacheHits}</span>
+                    <br>Search Cache Bytes: <span ic-poll="3s" ic-src="/admin/api/getstat/?statname=searchcachebytes">${searchCacheBytes}</span>
+                    <br>Filter Cache Hits: <span ic-poll="3s" ic-src="/admin/api/getstat/?statname=filtercachehits">${filterCacheHits}</span>
+                    <br>Filter Cache Bytes: <span ic-poll="3s" ic-src="/admin/api/getstat/?statname=filtercachebytes">${filterCacheBytes}</span>
                     <br>Documents Indexed: <span ic-poll="3s" ic-src="/admin/api/getstat/?statname=numdocs">${numDocs}</span>
                     <br>
                     <br>Total Repositories: <span ic-poll="60s" ic-src="/admin/api/getstat/?statname=repocount">${repoCount}</span>
@@ -77,7 +81,19 @@
                 </div>
             </div>
             <div class="col-md-4">
-
+                <div class="panel panel-default">
+                    <div class="panel-heading">
+                        <h3 class="panel-title"><span class="glyphicon glyphicon-hdd" aria-hidden="true"></span> Index Writer</h3>
+                    </div>
+                    <div class="panel-body">
+                    Flushes: <span ic-poll="3s" ic-src="/admin/api/getstat/?statname=flushcount">${flushCount}</span>
+                    <br>Commits: <span ic-poll="3s" ic-src="/admin/api/getstat/?statname=commitcount">${commitCount}</span>
+                    <br>Changes Pending Commit: <span ic-poll="3s" ic-src="/admin/api/getstat/?statname=pendingcommit">${pendingCommit}</span>
+                    <br>Documents Queued: <span ic-poll="3s" ic-src="/admin/api/getstat/?statname=indexqueuesize">${indexQueueSize}</span>
+                    <br>Lines Queued: <span ic-poll="3s" ic-src="/admin/api/getstat/?statname=indexqueuelines">${indexQueueLines}</span>
+                    <br>Bytes Queued: <span ic-poll="3s" ic-src="/admin/api/getstat/?statname=indexqueuebytes">${indexQueueBytes}</span>
+                    </div>
+                </div>
             </div>
             <div class="col-md-4">
                 <div class="panel panel-default">
@@ -119,6 +135,7 @@ check_filerepo_chages=${check_filerepo_chages}
 spelling_corrector_size=${spelling_corrector_size}
 max_document_queue_size=${max_document_queue_size}
 max_document_queue_line_size=${max_document_queue_line_size}
+max_document_queue_bytes=${max_document_queue_bytes}
 max_file_line_depth=${max_file_line_depth}
 only_localhost=${only_localhost}
 low_memory=${low_memory}
@@ -136,9 +153,25 @@ directory_black_list=${directory_black_list}
 number_git_processors=${number_git_processors}
 number_svn_processors=${number_svn_processors}
 number_file_processors=${number_file_processors}
+number_git_index_workers=${number_git_index_workers}
+number_svn_index_workers=${number_svn_index_workers}
+number_file_index_workers=${number_file_index_workers}
+number_indexer_threads=${number_indexer_threads}
 default_and_match=${default_and_match}
 log_indexed=${log_indexed}
-follow_links=${follow_links}</textarea>
+follow_links=${follow_links}
+index_commit_seconds=${index_commit_seconds}
+index_commit_documents=${index_commit_documents}
+index_store_content=${index_store_content}
+index_content_offsets=${index_content_offsets}
+index_trigrams=${index_trigrams}
+index_shards=${index_shards}
+index_per_repository=${index_per_repository}
+search_cache_bytes=${search_cache_bytes}
+filter_cache_bytes=${filter_cache_bytes}
+regex_timeout_millis=${regex_timeout_millis}
+regex_max_candidates=${regex_max_candidates}
+spelling_corrector_location=${spelling_corrector_location}</textarea>
 
 
         </div>
@@ -608,8 +608,34 @@ String myHmac = HmacUtils.hmacSha512Hex(MYPRIVATEKEY, PARAMSTOHMAC);</textarea>
               <dd>Maximum number of documents to store in indexing queue. When on a memory constrained system it can be advisable to reduce the size. Needs to be a number or will default to 1000.</dd>
               <dt>max_document_queue_line_size</dt>
               <dd>Maximum number of lines of code to store in indexing queue. This is a soft cap which can be exceeded to allow large documents to be indexed. When on a memory constrained system it can be advisable to reduce the size. 100000 lines equals about 200mb of in memory storage which will be used during the index pipeline. Needs to be a number or will default to 100000.</dd>
+              <dt>max_document_queue_bytes</dt>
+              <dd>Maximum size in bytes of the contents of the documents waiting in the indexing queue. Once reached the parsers wait for the indexer to catch up before adding more, although a single file larger than this will still be indexed on its own. When on a memory constrained system it can be advisable to reduce the size. Needs to be a number or will default to 104857600 (100mb).</dd>
               <dt>index_queue_batch_size</dt>
               <dd>Maximum number of files the indexer will attempt to index before flushing them to disk. If the value of max_document_queue_size is raised it can be useful to raise this value to match. Needs to be a number or will default to 1000.</dd>
+              <dt>index_commit_seconds</dt>
+              <dd>The index writer is kept open while searchcode server is running and changes are visible to searches before they are committed to disk. This is the maximum number of seconds indexed changes will wait before being committed. Needs to be a number or will default to 60.</dd>
+              <dt>index_commit_documents</dt>
+              <dd>Maximum number of indexed or deleted documents that will be held before being committed to disk. Lower values are safer if the process is killed but slow indexing down. Needs to be a number or will default to 10000.</dd>
+              <dt>index_store_content</dt>
+              <dd>Boolean value true or false. If set to true the contents of each file are stored compressed inside the index and search results and code pages are served from the index rather than by reading the file from the repository location. This makes the index larger but result pages no longer depend on disk reads and continue to work while a repository is being updated. Only applies to files indexed after it is enabled. By default set to false.</dd>
+              <dt>index_content_offsets</dt>
+              <dd>Boolean value true or false. If set to true along with index_store_content the words in each file are indexed along with where they appear so search results can jump straight to the matching lines rather than checking every line of the file. This makes the index larger. Only applies to files indexed after it is enabled. By default set to false.</dd>
+              <dt>index_trigrams</dt>
+              <dd>Boolean value true or false. If set to true every run of three characters in each file is indexed so literal searches for text such as Writer( or -&gt;next only need to check the files containing all of its characters rather than scanning the whole index. Literal searches only use the trigrams when index_store_content is also set to true as the files are checked against their stored contents and never read from disk, files indexed without their contents will not be found this way. Literal searches check at most regex_max_candidates files and stop after regex_timeout_millis. This makes the index larger. Only applies to files indexed after it is enabled. By default set to false.</dd>
+              <dt>index_shards</dt>
+              <dd>Number of separate indexes to split the main index into inside index_location. Each repository is kept entirely in one shard picked by its name and searches run over all shards in parallel. Useful for very large indexes on machines with many cores. Changing this requires a rebuild of the index. Needs to be a number or will default to 1 which keeps a single index.</dd>
+              <dt>index_per_repository</dt>
+              <dd>Boolean value true or false. If set to true each repository is given its own index inside index_location and index_shards is ignored. Deleting or rebuilding a repository then removes its index directory rather than deleting every one of its documents, which avoids a large amount of disk activity merging away deleted documents for big repositories. Searches run over all of the repository indexes in parallel. The index of a repository is only held open for writing while it is being written to and is closed once it has not been used for index_commit_seconds. Changing this requires a rebuild of the index. By default set to false.</dd>
+              <dt>search_cache_bytes</dt>
+              <dd>Maximum size in bytes of the cache of recent search results. Repeated searches for the same query, filters and page are answered from the cache until anything in the index changes at which point the cache is emptied. Set to 0 to disable the cache. Needs to be a number or will default to 52428800 (50mb).</dd>
+              <dt>filter_cache_bytes</dt>
+              <dd>Maximum size in bytes of the cache of documents matching the repository, language and owner filters applied to searches. Filters are remembered for each part of the index until that part changes so narrowing searches to the same repositories or languages again is much faster. Set to 0 to disable the cache. Needs to be a number or will default to 33554432 (32mb).</dd>
+              <dt>regex_timeout_millis</dt>
+              <dd>Maximum time in milliseconds a regular expression search spends checking files before returning whatever it has found so far. Stops a slow expression from tying up the server. Needs to be a number or will default to 5000.</dd>
+              <dt>regex_max_candidates</dt>
+              <dd>Maximum number of files a regular expression search will check. When index_trigrams is set to true only files containing the plain text the expression requires are checked, otherwise every file is a candidate. Needs to be a number or will default to 10000.</dd>
+              <dt>spelling_corrector_location</dt>
+              <dd>Location where the words used for spelling suggestions are saved after the repositories have been scanned so suggestions work straight after a restart. By default set to ./index/spelling/</dd>
               <dt>max_file_line_depth</dt>
               <dd>Maximum number of lines in a file to index. If you want to index very large files set this value to a high number and lower the size of max_document_queue_size to avoid out of memory exceptions. 100000 lines equals about 200mb of in memory storage which will be used during the index pipeline. Needs to be a number or will default to 10000.</dd>
               <dt>use_system_git</dt>
@@ -650,6 +676,14 @@ String myHmac = HmacUtils.hmacSha512Hex(MYPRIVATEKEY, PARAMSTOHMAC);</textarea>
               <dd>Number of background threads to spawn to deal with pulling from and indexing svn repositories. Servers with many CPU's should have this value changed to half the number of CPU's. Defaults to 2.</dd>
               <dt>number_file_processors</dt>
               <dd>Number of background threads to spawn to deal with pulling from and indexing file repositories. Defaults to 1.</dd>
+              <dt>number_git_index_workers</dt>
+              <dd>Number of threads each git repository index job uses to read, classify, hash and blame files when walking a repository. Raising this can greatly speed up the first index of very large repositories on machines with many cores. Defaults to 1.</dd>
+              <dt>number_svn_index_workers</dt>
+              <dd>Number of threads each svn repository index job uses to process files when walking a repository. Defaults to 1.</dd>
+              <dt>number_file_index_workers</dt>
+              <dd>Number of threads each file repository index job uses to process files when walking a repository. Defaults to 1.</dd>
+              <dt>number_indexer_threads</dt>
+              <dd>Number of threads which take documents from the indexing queue and add them to the index. Analysing documents is CPU heavy so on machines with many cores raising this can greatly speed up indexing. Defaults to 2.</dd>
               <dt>default_and_match</dt>
               <dd>Should the matching logic default to AND matching where nothing is specified. If set to true all queries will be similar to "import AND junit". If set to false all queries will be similar to "import OR junit". Default logic can be overridden by explicitly adding search operators. Defaults to true.</dd>
               <dt>log_indexed</dt>
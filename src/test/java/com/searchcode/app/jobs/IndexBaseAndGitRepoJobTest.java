@@ -1,10 +1,13 @@
 package com.searchcode.app.jobs;
 
 import com.searchcode.app.TestHelpers;
+import com.searchcode.app.dto.CodeOwner;
 import com.searchcode.app.jobs.repository.IndexGitRepoJob;
+import com.searchcode.app.service.BlameService;
 import com.searchcode.app.service.CodeSearcher;
 import com.searchcode.app.service.Singleton;
 import com.searchcode.app.service.StatsService;
+import com.searchcode.app.util.SearchcodeLib;
 import junit.framework.TestCase;
 import org.apache.commons.io.FileUtils;
 import org.mockito.Mockito;
@@ -14,7 +17,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 import static org.mockito.Mockito.*;
@@ -163,29 +168,60 @@ public class IndexBaseAndGitRepoJobTest extends TestCase {
         IndexGitRepoJob gitRepoJob = new IndexGitRepoJob();
         CodeSearcher codeSearcherMock = Mockito.mock(CodeSearcher.class);
 
-        when(codeSearcherMock.getRepoDocuments("testRepoName", 0)).thenReturn(new ArrayList<>());
+        when(codeSearcherMock.getRepoPaths("testRepoName")).thenReturn(new HashSet<>());
         gitRepoJob.cleanMissingPathFiles(codeSearcherMock, "testRepoName", new HashMap<String, String>());
-        verify(codeSearcherMock, times(1)).getRepoDocuments("testRepoName", 0);
+        verify(codeSearcherMock, times(1)).getRepoPaths("testRepoName");
     }
 
-    public void testMissingPathFilesShouldPage() {
+    public void testMissingPathFilesSingleScan() {
         IndexGitRepoJob gitRepoJob = new IndexGitRepoJob();
         CodeSearcher codeSearcherMock = Mockito.mock(CodeSearcher.class);
 
-        List<String> repoReturn = new ArrayList<>();
+        Set<String> repoReturn = new HashSet<>();
+        HashMap<String, String> fileLocations = new HashMap<>();
         for(int i = 0; i < 10; i++) {
             repoReturn.add("string"+i);
+            if (i % 2 == 0) {
+                fileLocations.put("string"+i, null);
+            }
         }
 
-        when(codeSearcherMock.getRepoDocuments("testRepoName", 0)).thenReturn(repoReturn);
-        when(codeSearcherMock.getRepoDocuments("testRepoName", 1)).thenReturn(repoReturn);
-        when(codeSearcherMock.getRepoDocuments("testRepoName", 2)).thenReturn(new ArrayList<>());
+        when(codeSearcherMock.getRepoPaths("testRepoName")).thenReturn(repoReturn);
 
-        gitRepoJob.cleanMissingPathFiles(codeSearcherMock, "testRepoName", new HashMap<String, String>());
+        gitRepoJob.cleanMissingPathFiles(codeSearcherMock, "testRepoName", fileLocations);
+
+        verify(codeSearcherMock, times(1)).getRepoPaths("testRepoName");
+        verify(codeSearcherMock, never()).getRepoDocuments(anyString(), anyInt());
+    }
+
+    public void testGetCodeOwnerFailedBlameNotSaved() {
+        BlameService blameServiceMock = Mockito.mock(BlameService.class);
+        when(blameServiceMock.getBlobId("repo", "/repos", "repo/file.java")).thenReturn("blobid");
+        when(blameServiceMock.getCodeOwners("repo", "repo/file.java", "blobid")).thenReturn(null);
+
+        IndexGitRepoJob spy = spy(new IndexGitRepoJob());
+        doReturn(new ArrayList<CodeOwner>()).when(spy).getBlameInfo(anyInt(), anyString(), anyString(), anyString());
+        doReturn(new ArrayList<CodeOwner>()).when(spy).getBlameInfoExternal(anyInt(), anyString(), anyString(), anyString());
 
-        verify(codeSearcherMock, times(1)).getRepoDocuments("testRepoName", 0);
-        verify(codeSearcherMock, times(1)).getRepoDocuments("testRepoName", 1);
-        verify(codeSearcherMock, times(1)).getRepoDocuments("testRepoName", 2);
+        BlameService blameService = Singleton.getBlameService();
+        Singleton.setBlameService(blameServiceMock);
+
+        try {
+            String owner = spy.getCodeOwner(Arrays.asList("line"), "repo/file.java", "repo", "/repos", new SearchcodeLib());
+            assertThat(owner).isEqualTo("Unknown");
+            verify(blameServiceMock, never()).saveCodeOwners(anyString(), anyString(), anyString(), anyListOf(CodeOwner.class));
+
+            List<CodeOwner> owners = Arrays.asList(new CodeOwner("Owner", 1, (int) (System.currentTimeMillis() / 1000L) - 10000));
+            doReturn(owners).when(spy).getBlameInfo(anyInt(), anyString(), anyString(), anyString());
+            doReturn(owners).when(spy).getBlameInfoExternal(anyInt(), anyString(), anyString(), anyString());
+
+            owner = spy.getCodeOwner(Arrays.asList("line"), "repo/file.java", "repo", "/repos", new SearchcodeLib());
+            assertThat(owner).isEqualTo("Owner");
+            verify(blameServiceMock, times(1)).saveCodeOwners("repo", "repo/file.java", "blobid", owners);
+        }
+        finally {
+            Singleton.setBlameService(blameService);
+        }
     }
 
     public void testCheckCloneSuccessEmptyReturnsFalse() {
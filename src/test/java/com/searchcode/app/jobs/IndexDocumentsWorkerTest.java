@@ -0,0 +1,55 @@
+package com.searchcode.app.jobs;
+
+import com.searchcode.app.dto.CodeIndexDocument;
+import com.searchcode.app.jobs.repository.IndexDocumentsWorker;
+import com.searchcode.app.service.CodeIndexer;
+import com.searchcode.app.service.Singleton;
+import com.searchcode.app.util.CodeIndexQueue;
+import junit.framework.TestCase;
+import org.mockito.Mockito;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.mockito.Mockito.*;
+
+public class IndexDocumentsWorkerTest extends TestCase {
+
+    public void setUp() {
+        Singleton.setBackgroundJobsEnabled(true);
+    }
+
+    public void testIndexesWhenDocumentAdded() throws Exception {
+        CodeIndexer mockCodeIndexer = Mockito.mock(CodeIndexer.class);
+        CodeIndexQueue codeIndexQueue = new CodeIndexQueue(1000);
+
+        // Long wait so that indexing can only happen because the document was added
+        IndexDocumentsWorker worker = new IndexDocumentsWorker(codeIndexQueue, mockCodeIndexer, 60000);
+        doAnswer(invocation -> codeIndexQueue.poll()).when(mockCodeIndexer).indexDocuments(codeIndexQueue);
+
+        Thread thread = new Thread(worker);
+        thread.start();
+
+        codeIndexQueue.put(new CodeIndexDocument("/", "repoName", "fileName", "fileLocation", "fileLocationFilename", "md5hash", "languageName", 1, "contents", "repoRemoteLocation", "codeOwner"));
+        verify(mockCodeIndexer, timeout(5000)).indexDocuments(codeIndexQueue);
+
+        worker.shutdown();
+        codeIndexQueue.put(new CodeIndexDocument("/", "repoName", "fileName", "fileLocation", "fileLocationFilename", "md5hash", "languageName", 1, "contents", "repoRemoteLocation", "codeOwner"));
+        thread.join(5000);
+
+        assertThat(thread.isAlive()).isFalse();
+    }
+
+    public void testCommitsWhenIdle() throws Exception {
+        CodeIndexer mockCodeIndexer = Mockito.mock(CodeIndexer.class);
+        IndexDocumentsWorker worker = new IndexDocumentsWorker(new CodeIndexQueue(1000), mockCodeIndexer, 10);
+
+        Thread thread = new Thread(worker);
+        thread.start();
+
+        verify(mockCodeIndexer, timeout(5000).atLeastOnce()).maybeCommit();
+        verify(mockCodeIndexer, never()).indexDocuments(any());
+
+        worker.shutdown();
+        thread.join(5000);
+        assertThat(thread.isAlive()).isFalse();
+    }
+}
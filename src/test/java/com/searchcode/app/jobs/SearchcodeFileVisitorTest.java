@@ -0,0 +1,134 @@
+package com.searchcode.app.jobs;
+
+import com.searchcode.app.jobs.repository.IndexFileRepoJob;
+import com.searchcode.app.jobs.repository.SearchcodeFileVisitor;
+import com.searchcode.app.service.CodeSearcher;
+import com.searchcode.app.service.Singleton;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SearchcodeFileVisitorTest extends TestCase {
+
+    private Path directory;
+    private Set<String> expectedIncluded;
+    private Set<String> expectedErrors;
+
+    public void setUp() throws IOException {
+        Singleton.setBackgroundJobsEnabled(true);
+
+        this.directory = Files.createTempDirectory("searchcodefilevisitortest");
+        this.expectedIncluded = new HashSet<>();
+        this.expectedErrors = new HashSet<>();
+
+        for (int i = 0; i < 50; i++) {
+            Path subDirectory = Files.createDirectories(this.directory.resolve("dir" + (i % 5)));
+            Path file = subDirectory.resolve((i % 10 == 0 ? "error" : "file") + i + ".java");
+            Files.write(file, ("public class File" + i + " {}\n").getBytes(StandardCharsets.UTF_8));
+
+            String unixPath = FilenameUtils.separatorsToUnix(file.toString());
+            if (i % 10 == 0) {
+                this.expectedErrors.add(unixPath);
+            }
+            else {
+                this.expectedIncluded.add(unixPath);
+            }
+        }
+    }
+
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(this.directory.toFile());
+    }
+
+    public void testParallelVisitProcessesEveryFile() throws IOException {
+        ParallelFileRepoJob job = new ParallelFileRepoJob();
+        job.LOGINDEXED = true;
+
+        SearchcodeFileVisitor<Path> visitor = new SearchcodeFileVisitor<>(job, "testParallelVisitProcessesEveryFile", this.directory.toString(), "");
+        Files.walkFileTree(this.directory, visitor);
+        visitor.awaitCompletion();
+
+        Set<String> allFiles = new HashSet<>(this.expectedIncluded);
+        allFiles.addAll(this.expectedErrors);
+        assertThat(job.processed).containsOnlyElementsOf(allFiles).hasSameSizeAs(allFiles);
+        assertThat(job.threads.size()).isGreaterThan(1);
+
+        // Files which could not be read are dropped so they are removed from the index
+        assertThat(visitor.fileLocationsMap.keySet()).containsOnlyElementsOf(this.expectedIncluded).hasSameSizeAs(this.expectedIncluded);
+
+        Map<String, String> reported = new HashMap<>();
+        for (String[] report: visitor.reportList) {
+            assertThat(reported.put(report[0], report[1])).isNull();
+        }
+        assertThat(reported).hasSize(allFiles.size());
+        for (String included: this.expectedIncluded) {
+            assertThat(reported.get(included)).isEqualTo("included");
+        }
+        for (String error: this.expectedErrors) {
+            assertThat(reported.get(error)).isEqualTo("error");
+        }
+    }
+
+    public void testIndexDocsByPathWaitsBeforeCleaningMissingFiles() {
+        ParallelFileRepoJob job = new ParallelFileRepoJob();
+
+        job.indexDocsByPath(this.directory, "testIndexDocsByPathWaitsBeforeCleaningMissingFiles", this.directory.toString(), "", true);
+
+        assertThat(job.processedBeforeClean).isEqualTo(this.expectedIncluded.size() + this.expectedErrors.size());
+        assertThat(job.fileLocationsBeforeClean).containsOnlyElementsOf(this.expectedIncluded).hasSameSizeAs(this.expectedIncluded);
+    }
+
+    /**
+     * Uses several index workers and records which files each worker read. Files named error cannot be read.
+     */
+    private static class ParallelFileRepoJob extends IndexFileRepoJob {
+        private final Set<String> processed = ConcurrentHashMap.newKeySet();
+        private final Set<String> threads = ConcurrentHashMap.newKeySet();
+        private int processedBeforeClean = -1;
+        private Set<String> fileLocationsBeforeClean = null;
+
+        ParallelFileRepoJob() {
+            this.LOWMEMORY = true;
+        }
+
+        @Override
+        public int getIndexWorkers() {
+            return 4;
+        }
+
+        @Override
+        public CodeLinesReturn getCodeLines(String changedFile, List<String[]> reportList) {
+            try {
+                Thread.sleep(5);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+
+            this.processed.add(changedFile);
+            this.threads.add(Thread.currentThread().getName());
+
+            if (FilenameUtils.getName(changedFile).startsWith("error")) {
+                reportList.add(new String[]{changedFile, "error", "unable to read"});
+                return new CodeLinesReturn(new ArrayList<>(), "", reportList, true);
+            }
+
+            return super.getCodeLines(changedFile, reportList);
+        }
+
+        @Override
+        public void cleanMissingPathFiles(CodeSearcher codeSearcher, String repoName, Map<String, String> fileLocations) {
+            this.processedBeforeClean = this.processed.size();
+            this.fileLocationsBeforeClean = new HashSet<>(fileLocations.keySet());
+        }
+    }
+}
@@ -53,7 +53,7 @@ public class AdminRouteServiceTest extends TestCase {
 
     public void testGetStatValuesExpectValue() {
         AdminRouteService adminRouteService = new AdminRouteService();
-        List<String> statValue = Arrays.asList("memoryusage", "loadaverage", "uptime", "searchcount", "spellingcount", "repocount", "numdocs", "servertime", "deletionqueue");
+        List<String> statValue = Arrays.asList("memoryusage", "loadaverage", "uptime", "searchcount", "spellingcount", "repocount", "numdocs", "servertime", "deletionqueue", "flushcount", "commitcount", "pendingcommit", "indexqueuesize", "indexqueuelines", "indexqueuebytes", "searchcachehits", "searchcachebytes", "filtercachehits", "filtercachebytes");
 
         for(String stat: statValue) {
             Request mockRequest = Mockito.mock(Request.class);
@@ -0,0 +1,71 @@
+package com.searchcode.app.service;
+
+import com.searchcode.app.config.SQLiteMemoryDatabaseConfig;
+import com.searchcode.app.dao.Blame;
+import com.searchcode.app.dto.CodeOwner;
+import com.searchcode.app.util.Helpers;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class BlameServiceTest extends TestCase {
+
+    private BlameService blameService;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        Blame blame = new Blame(new SQLiteMemoryDatabaseConfig(), new Helpers());
+        blame.createTableIfMissing();
+        this.blameService = new BlameService(blame);
+    }
+
+    public void testGetCodeOwnersMissing() {
+        assertThat(this.blameService.getCodeOwners("repo", "repo/file.java", "blobid")).isNull();
+    }
+
+    public void testGetCodeOwnersNoBlobId() {
+        this.blameService.saveCodeOwners("repo", "repo/file.java", null, new ArrayList<>());
+        assertThat(this.blameService.getCodeOwners("repo", "repo/file.java", null)).isNull();
+    }
+
+    public void testSaveGetCodeOwners() {
+        List<CodeOwner> owners = new ArrayList<>();
+        owners.add(new CodeOwner("owner", 10, 100));
+
+        this.blameService.saveCodeOwners("repo", "repo/file.java", "blobid", owners);
+        List<CodeOwner> actual = this.blameService.getCodeOwners("repo", "repo/file.java", "blobid");
+
+        assertThat(actual).hasSize(1);
+        assertThat(actual.get(0).getName()).isEqualTo("owner");
+        assertThat(actual.get(0).getNoLines()).isEqualTo(10);
+        assertThat(actual.get(0).getMostRecentUnixCommitTimestamp()).isEqualTo(100);
+        assertThat(this.blameService.getCodeOwners("otherrepo", "repo/file.java", "blobid")).isNull();
+    }
+
+    public void testChangedBlobNeedsBlame() {
+        this.blameService.saveCodeOwners("repo", "repo/file.java", "oldblobid", new ArrayList<>());
+        assertThat(this.blameService.getCodeOwners("repo", "repo/file.java", "newblobid")).isNull();
+
+        this.blameService.saveCodeOwners("repo", "repo/file.java", "newblobid", new ArrayList<>());
+        assertThat(this.blameService.getCodeOwners("repo", "repo/file.java", "newblobid")).isNotNull();
+        assertThat(this.blameService.getCodeOwners("repo", "repo/file.java", "oldblobid")).isNull();
+    }
+
+    public void testDeleteCodeOwners() {
+        this.blameService.saveCodeOwners("repo", "repo/file.java", "blobid", new ArrayList<>());
+        this.blameService.deleteCodeOwners("repo");
+
+        assertThat(this.blameService.getCodeOwners("repo", "repo/file.java", "blobid")).isNull();
+    }
+
+    public void testGetBlobIdNoRepository() {
+        assertThat(this.blameService.getBlobId("doesnotexist", "/tmp/doesnotexist", "doesnotexist/file.java")).isNull();
+    }
+
+    public void testCloseRepositoryNotOpen() {
+        this.blameService.closeRepository("repo");
+    }
+}
@@ -8,6 +8,8 @@ import org.eclipse.jetty.util.ConcurrentArrayQueue;
 import org.mockito.Mockito;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
@@ -49,6 +51,40 @@ public class CodeIndexerTest extends TestCase {
         Singleton.getCodeIndexer().indexDocuments(queue);
     }
 
+    public void testIndexDocumentsFromMultipleThreads() throws InterruptedException {
+        Queue<CodeIndexDocument> queue = new ConcurrentArrayQueue<>();
+        for (int i = 0; i < 100; i++) {
+            queue.add(new CodeIndexDocument("repoLocationRepoNameLocationFilename" + i, "repoName", "fileName", "fileLocation", "fileLocationFilename", "md5hash", "languageName", 1, "contents " + i, "repoRemoteLocation", "codeOwner"));
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    Singleton.getCodeIndexer().indexDocuments(queue);
+                }
+                catch (IOException ex) {}
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        for (Thread thread: threads) {
+            thread.join(10000);
+        }
+
+        assertThat(queue).isEmpty();
+    }
+
+    public void testGetRepositoryIndexDirectory() {
+        CodeIndexer codeIndexer = Singleton.getCodeIndexer();
+
+        assertThat(codeIndexer.getRepositoryIndexDirectory("searchcode-server_1.3")).isEqualTo("searchcode-server_1.3");
+        assertThat(codeIndexer.getRepositoryIndexDirectory("a b")).isNotEqualTo(codeIndexer.getRepositoryIndexDirectory("a_b"));
+        assertThat(codeIndexer.getRepositoryIndexDirectory("../etc")).doesNotContain("/").doesNotStartWith(".").isNotEqualTo("..");
+        assertThat(codeIndexer.getRepositoryIndexDirectory("")).isNotEmpty();
+        assertThat(codeIndexer.getRepositoryIndexDirectory("..")).isNotEqualTo("..");
+    }
+
     // TODO actually assert something in here
     public void testDeleteByRepoName() throws IOException {
         Singleton.getCodeIndexer().deleteByReponame("repoName");
@@ -8,7 +8,10 @@ import org.apache.commons.lang3.RandomStringUtils;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
@@ -91,6 +94,23 @@ public class CodeMatcherTest extends TestCase {
         assertThat(codeMatchResults.get(1).getLine()).isEqualTo("<strong>test</strong> <strong>test1</strong> <strong>test2</strong>\n");
     }
 
+    public void testMatchResultsIncludesAdjacentLines() {
+        CodeMatcher codeMatcher = new CodeMatcher();
+
+        List<String> matchTerms = new ArrayList<>();
+        matchTerms.add("needle");
+
+        List<String> code = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            code.add(i == 4 ? "needle" : "line" + i);
+        }
+
+        List<CodeMatchResult> codeMatchResults = codeMatcher.matchResults(code, matchTerms, false);
+        assertThat(codeMatchResults).extracting("lineNumber").containsExactly(4, 5, 6);
+        assertThat(codeMatchResults).extracting("line").containsExactly("line3", "needle", "line5");
+        assertThat(codeMatchResults.get(0).addBreak).isFalse();
+    }
+
     public void testHighlightLineMultiNonOverlapping() {
         CodeMatcher cm = new CodeMatcher();
         List<String> matchTerms = new ArrayList<String>();
@@ -486,4 +506,66 @@ public class CodeMatcherTest extends TestCase {
         assertThat(strings.get(1)).isEqualTo("tt");
         assertThat(strings.get(2)).isEqualTo("t");
     }
-}
\ No newline at end of file
+
+    public void testTermMatcherMatchesNaiveCount() {
+        List<String> matchTerms = Arrays.asList("re.compile", "compile", "re", "a b", "test*", "*", "GET", "aa");
+        CodeMatcher.TermMatcher termMatcher = new CodeMatcher.TermMatcher(matchTerms);
+
+        List<String> lines = Arrays.asList("", "re.compile('a   b')", "RE.COMPILE", "a\t\tb", "a  b", "nothing here", "$_GET", "aaa", "testing", "re");
+
+        for (String line: lines) {
+            String matchRes = line.toLowerCase().replaceAll("\\s+", " ");
+            int expected = 0;
+            for (String matchTerm: matchTerms) {
+                if (matchRes.contains(matchTerm.replace("*", ""))) {
+                    expected++;
+                }
+            }
+
+            assertThat(termMatcher.countMatches(line)).as(line).isEqualTo(expected);
+        }
+    }
+
+    public void testTermMatcherNoTerms() {
+        CodeMatcher.TermMatcher termMatcher = new CodeMatcher.TermMatcher(new ArrayList<>());
+        assertThat(termMatcher.countMatches("anything")).isEqualTo(0);
+    }
+
+    public void testFormatResultsUsesIndexedMatches() {
+        CodeMatcher cm = new CodeMatcher();
+
+        List<String> code = new ArrayList<>();
+        code.add("this is some test code");
+        code.add("nothing here");
+        code.add("more test code");
+
+        // Index says only the last line matches so the first should not be scanned and found
+        Map<Integer, Integer> indexedMatches = new HashMap<>();
+        indexedMatches.put(2, 1);
+
+        CodeResult codeResult = new CodeResult(code, null);
+        codeResult.setMatchingLines(indexedMatches);
+
+        List<CodeResult> results = cm.formatResults(Arrays.asList(codeResult), "test", false);
+        List<CodeMatchResult> matchingResults = results.get(0).getMatchingResults();
+
+        assertThat(matchingResults).hasSize(2);
+        assertThat(matchingResults.get(0).getLineNumber()).isEqualTo(2);
+        assertThat(matchingResults.get(0).isMatching()).isFalse();
+        assertThat(matchingResults.get(1).getLineNumber()).isEqualTo(3);
+        assertThat(matchingResults.get(1).isMatching()).isTrue();
+    }
+
+    public void testFormatResultsEmptyIndexedMatchesScans() {
+        CodeMatcher cm = new CodeMatcher();
+
+        List<String> code = new ArrayList<>();
+        code.add("this is some test code");
+
+        CodeResult codeResult = new CodeResult(code, null);
+        codeResult.setMatchingLines(new HashMap<>());
+
+        List<CodeResult> results = cm.formatResults(Arrays.asList(codeResult), "test", false);
+        assertThat(results.get(0).getMatchingResults().get(0).isMatching()).isTrue();
+    }
+}
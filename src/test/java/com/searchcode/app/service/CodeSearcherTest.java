@@ -1,12 +1,41 @@
 package com.searchcode.app.service;
 
+import com.searchcode.app.config.Values;
 import com.searchcode.app.dto.CodeIndexDocument;
 import com.searchcode.app.dto.CodeResult;
+import com.searchcode.app.dto.FileManifestEntry;
 import com.searchcode.app.dto.ProjectStats;
+import com.searchcode.app.dto.SearchResult;
+import com.searchcode.app.util.CodeAnalyzer;
+import com.searchcode.app.util.CodeTrigramAnalyzer;
 import junit.framework.TestCase;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 
@@ -54,4 +83,185 @@ public class CodeSearcherTest extends TestCase {
         assertThat(projectStats.getRepoFacetOwner().get(0).getOwner()).isEqualTo("/");
         assertThat(projectStats.getRepoFacetOwner().get(0).getCount()).isEqualTo(1);
     }
+
+    public void testGetRepoManifest() throws IOException {
+        CodeIndexDocument codeIndexDocument = new CodeIndexDocument("/testGetRepoManifest/file", "testGetRepoManifest", "file", "/", "/", "md5hash", "Java", 10, "", "/", "/");
+        codeIndexDocument.setFileSize(100);
+        codeIndexDocument.setFileModified(200);
+        Singleton.getCodeIndexer().indexDocument(codeIndexDocument);
+        CodeSearcher cs = new CodeSearcher();
+
+        Map<String, FileManifestEntry> manifest = cs.getRepoManifest("testGetRepoManifest");
+        FileManifestEntry manifestEntry = manifest.get("/testGetRepoManifest/file");
+
+        assertThat(manifest).hasSize(1);
+        assertThat(manifestEntry.getMd5hash()).isEqualTo("md5hash");
+        assertThat(manifestEntry.isUnchanged(100, 200)).isTrue();
+        assertThat(manifestEntry.isUnchanged(100, 201)).isFalse();
+        assertThat(manifestEntry.isUnchanged(101, 200)).isFalse();
+    }
+
+    public void testGetRepoManifestAfterUpdateFileStat() throws IOException {
+        CodeIndexDocument codeIndexDocument = new CodeIndexDocument("/testGetRepoManifestAfterUpdateFileStat/file", "testGetRepoManifestAfterUpdateFileStat", "file", "/", "/", "md5hash", "Java", 10, "", "/", "/");
+        codeIndexDocument.setFileSize(100);
+        codeIndexDocument.setFileModified(200);
+        Singleton.getCodeIndexer().indexDocument(codeIndexDocument);
+
+        assertThat(Singleton.getCodeIndexer().updateFileStat("testGetRepoManifestAfterUpdateFileStat", "/testGetRepoManifestAfterUpdateFileStat/file", 101, 201)).isTrue();
+        Singleton.getCodeIndexer().refreshSearchers();
+
+        FileManifestEntry manifestEntry = new CodeSearcher().getRepoManifest("testGetRepoManifestAfterUpdateFileStat").get("/testGetRepoManifestAfterUpdateFileStat/file");
+        assertThat(manifestEntry.getMd5hash()).isEqualTo("md5hash");
+        assertThat(manifestEntry.isUnchanged(101, 201)).isTrue();
+        assertThat(manifestEntry.isUnchanged(100, 200)).isFalse();
+    }
+
+    public void testGetRepoPaths() throws IOException {
+        Singleton.getCodeIndexer().indexDocument(new CodeIndexDocument("/testGetRepoPaths/one", "testGetRepoPaths", "one", "/", "/", "md5hash", "Java", 10, "", "/", "/"));
+        Singleton.getCodeIndexer().indexDocument(new CodeIndexDocument("/testGetRepoPaths/two", "testGetRepoPaths", "two", "/", "/", "md5hash", "Java", 10, "", "/", "/"));
+        CodeSearcher cs = new CodeSearcher();
+
+        Set<String> paths = cs.getRepoPaths("testGetRepoPaths");
+        assertThat(paths).containsOnly("/testGetRepoPaths/one", "/testGetRepoPaths/two");
+
+        Singleton.getCodeIndexer().deleteByPaths("testGetRepoPaths", Arrays.asList("/testGetRepoPaths/one"));
+
+        paths = cs.getRepoPaths("testGetRepoPaths");
+        assertThat(paths).containsOnly("/testGetRepoPaths/two");
+    }
+
+    public void testSearchWithFilters() throws IOException {
+        Singleton.getCodeIndexer().indexDocument(new CodeIndexDocument("/testSearchWithFilters/one", "testSearchWithFiltersOne", "one", "/", "/", "md5hash", "Java", 10, "searchwithfilters", "/", "/"));
+        Singleton.getCodeIndexer().indexDocument(new CodeIndexDocument("/testSearchWithFilters/two", "testSearchWithFiltersTwo", "two", "/", "/", "md5hash", "Java", 10, "searchwithfilters", "/", "/"));
+        CodeSearcher cs = new CodeSearcher();
+
+        assertThat(cs.search("searchwithfilters", 0).getTotalHits()).isEqualTo(2);
+
+        SearchResult searchResult = cs.search("searchwithfilters", Arrays.asList("reponame:testSearchWithFiltersOne"), 0);
+        assertThat(searchResult.getTotalHits()).isEqualTo(1);
+        assertThat(searchResult.getCodeResultList().get(0).getRepoName()).isEqualTo("testSearchWithFiltersOne");
+
+        // Filters apply to the whole query and not just the clause next to them
+        searchResult = cs.search("searchwithfilters || somethingelse", Arrays.asList("reponame:testSearchWithFiltersOne || reponame:testSearchWithFiltersTwo", "languagename:Java"), 0);
+        assertThat(searchResult.getTotalHits()).isEqualTo(2);
+
+        searchResult = cs.search("searchwithfilters || somethingelse", Arrays.asList("reponame:testSearchWithFiltersTwo"), 0);
+        assertThat(searchResult.getTotalHits()).isEqualTo(1);
+    }
+
+    public void testSearchMatchesFileNameAndLocation() throws IOException {
+        Singleton.getCodeIndexer().indexDocument(new CodeIndexDocument("/testSearchMatchesFileName/one", "testSearchMatchesFileName", "SearchFileNameIndexer.java", "src/searchlocationdirectory/", "src/searchlocationdirectory/SearchFileNameIndexer.java", "md5hash", "Java", 10, "nothing to see", "/", "/"));
+        Singleton.getCodeIndexer().indexDocument(new CodeIndexDocument("/testSearchMatchesFileName/two", "testSearchMatchesFileName", "Other.java", "src/", "src/Other.java", "md5hash", "Java", 10, "uses searchfilenameindexer", "/", "/"));
+        CodeSearcher cs = new CodeSearcher();
+
+        SearchResult searchResult = cs.search("searchfilenameindexer", 0);
+        assertThat(searchResult.getTotalHits()).isEqualTo(2);
+        assertThat(searchResult.getCodeResultList().get(0).getFileName()).isEqualTo("SearchFileNameIndexer.java");
+
+        assertThat(cs.search("searchlocationdirectory", 0).getTotalHits()).isEqualTo(1);
+        assertThat(cs.search("pathterms:searchlocationdirectory", 0).getTotalHits()).isEqualTo(1);
+    }
+
+    private IndexWriter getTrigramWriter(String... contents) throws IOException {
+        Map<String, Analyzer> fieldAnalyzers = new HashMap<>();
+        fieldAnalyzers.put(Values.CONTENTTRIGRAMS, new CodeTrigramAnalyzer());
+        IndexWriter writer = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(new PerFieldAnalyzerWrapper(new CodeAnalyzer(), fieldAnalyzers)));
+
+        for (int i = 0; i < contents.length; i++) {
+            Document document = new Document();
+            document.add(new StringField(Values.PATH, "/literal/" + i, Field.Store.YES));
+            document.add(new TextField(Values.REPONAME, "repo" + i, Field.Store.YES));
+            document.add(new StoredField(Values.STOREDCONTENTS, contents[i]));
+            document.add(new TextField(Values.CONTENTTRIGRAMS, contents[i], Field.Store.NO));
+            writer.addDocument(document);
+        }
+
+        return writer;
+    }
+
+    public void testDoLiteralSearch() throws Exception {
+        IndexWriter writer = this.getTrigramWriter("out = new Writer(stream);\nnode = node->next;", "writer(stream)", "WriteR(");
+
+        // Files indexed without their contents are not read from disk so never match
+        Document document = new Document();
+        document.add(new StringField(Values.PATH, "/literal/unstored", Field.Store.YES));
+        document.add(new TextField(Values.CONTENTTRIGRAMS, "Writer(", Field.Store.NO));
+        writer.addDocument(document);
+
+        IndexSearcher searcher = new IndexSearcher(DirectoryReader.open(writer, true));
+        CodeSearcher cs = new CodeSearcher();
+
+        // The trigrams of the other files match ignoring case but only the first contains the exact text
+        SearchResult searchResult = cs.doLiteralSearch(searcher, "Writer(", Collections.emptyList(), 0);
+        assertThat(searchResult.getTotalHits()).isEqualTo(1);
+        assertThat(searchResult.getCodeResultList().get(0).getMatchingLines()).containsOnlyKeys(0);
+
+        searchResult = cs.doLiteralSearch(searcher, "->next", Collections.emptyList(), 0);
+        assertThat(searchResult.getTotalHits()).isEqualTo(1);
+        assertThat(searchResult.getCodeResultList().get(0).getMatchingLines()).containsOnlyKeys(1);
+
+        assertThat(cs.doLiteralSearch(searcher, "(stream)", Collections.emptyList(), 0).getTotalHits()).isEqualTo(2);
+        assertThat(cs.doLiteralSearch(searcher, "Writer(stream);\nnode", Collections.emptyList(), 0).getTotalHits()).isEqualTo(1);
+        assertThat(cs.doLiteralSearch(searcher, "missing", Collections.emptyList(), 0).getTotalHits()).isEqualTo(0);
+        assertThat(cs.doLiteralSearch(searcher, "(stream)", Arrays.asList("reponame:repo1"), 0).getTotalHits()).isEqualTo(1);
+
+        // Candidates beyond the cap are never checked
+        cs.REGEXMAXCANDIDATES = 1;
+        assertThat(cs.doLiteralSearch(searcher, "(stream)", Collections.emptyList(), 0).getTotalHits()).isEqualTo(1);
+
+        searcher.getIndexReader().close();
+        writer.close();
+    }
+
+    public void testDoRegexSearch() throws Exception {
+        IndexWriter writer = this.getTrigramWriter("public void indexDocuments() {\n}", "private void indexDocument(int i) {}", "index(Documents)");
+        IndexSearcher searcher = new IndexSearcher(DirectoryReader.open(writer, true));
+
+        for (boolean indexTrigrams: new boolean[] { true, false }) {
+            CodeSearcher cs = new CodeSearcher();
+            cs.INDEXTRIGRAMS = indexTrigrams;
+
+            SearchResult searchResult = cs.doRegexSearch(searcher, Pattern.compile("void index\\w+\\(\\)"), Collections.emptyList(), 0);
+            assertThat(searchResult.getTotalHits()).isEqualTo(1);
+            assertThat(searchResult.getCodeResultList().get(0).getMatchingLines()).containsOnlyKeys(0);
+
+            assertThat(cs.doRegexSearch(searcher, Pattern.compile("indexDocuments?\\("), Collections.emptyList(), 0).getTotalHits()).isEqualTo(2);
+            assertThat(cs.doRegexSearch(searcher, Pattern.compile("(?i)INDEX\\(doc"), Collections.emptyList(), 0).getTotalHits()).isEqualTo(1);
+            assertThat(cs.doRegexSearch(searcher, Pattern.compile("index"), Arrays.asList("reponame:repo1 || reponame:repo2"), 0).getTotalHits()).isEqualTo(2);
+            assertThat(cs.doRegexSearch(searcher, Pattern.compile("missing|absent"), Collections.emptyList(), 0).getTotalHits()).isEqualTo(0);
+        }
+
+        // Candidates beyond the cap are never checked
+        CodeSearcher cs = new CodeSearcher();
+        cs.REGEXMAXCANDIDATES = 1;
+        assertThat(cs.doRegexSearch(searcher, Pattern.compile("index"), Collections.emptyList(), 0).getTotalHits()).isEqualTo(1);
+
+        searcher.getIndexReader().close();
+        writer.close();
+    }
+
+    public void testRegexFindStopsAtDeadline() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            text.append('a');
+        }
+
+        long start = System.nanoTime();
+        assertThat(CodeSearcher.regexFind(Pattern.compile("(a|aa)+b"), text, start + TimeUnit.MILLISECONDS.toNanos(100))).isFalse();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5000);
+
+        assertThat(CodeSearcher.regexFind(Pattern.compile("a+"), text, start + TimeUnit.MILLISECONDS.toNanos(100))).isTrue();
+    }
+
+    public void testGetFilteredQuery() throws ParseException {
+        QueryParser parser = new QueryParser(Values.CONTENTS, new CodeAnalyzer());
+
+        assertThat(CodeSearcher.getFilteredQuery(parser, "test", Collections.emptyList())).isInstanceOf(TermQuery.class);
+
+        BooleanQuery query = (BooleanQuery) CodeSearcher.getFilteredQuery(parser, "test", Arrays.asList("reponame:one || reponame:two", "languagename:Java"));
+        assertThat(query.clauses()).hasSize(3);
+        assertThat(query.clauses().get(0).getOccur()).isEqualTo(BooleanClause.Occur.MUST);
+        assertThat(query.clauses().get(1).getOccur()).isEqualTo(BooleanClause.Occur.FILTER);
+        assertThat(query.clauses().get(2).getOccur()).isEqualTo(BooleanClause.Occur.FILTER);
+    }
 }
@@ -0,0 +1,115 @@
+package com.searchcode.app.service;
+
+import com.searchcode.app.config.Values;
+import com.searchcode.app.util.CodeAnalyzer;
+import com.searchcode.app.util.CodeSymbolAnalyzer;
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.RAMDirectory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class CompletionServiceTest extends TestCase {
+
+    private IndexWriter getWriter() {
+        Map<String, Analyzer> fieldAnalyzers = new HashMap<>();
+        fieldAnalyzers.put(Values.FILENAMETERMS, new CodeSymbolAnalyzer());
+
+        try {
+            return new IndexWriter(new RAMDirectory(), new IndexWriterConfig(new PerFieldAnalyzerWrapper(new CodeAnalyzer(), fieldAnalyzers)));
+        }
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void addDocument(IndexWriter writer, String repoName, String fileName, String contents) throws IOException {
+        Document document = new Document();
+        document.add(new TextField(Values.REPONAME, repoName, Field.Store.NO));
+        document.add(new TextField(Values.FILENAMETERMS, fileName, Field.Store.NO));
+        document.add(new TextField(Values.CONTENTS, contents, Field.Store.NO));
+        writer.addDocument(document);
+    }
+
+    public void testCompleteMostFrequentFirst() throws IOException {
+        IndexWriter writer = this.getWriter();
+        this.addDocument(writer, "searchcode", "IndexService.java", "index indexer");
+        this.addDocument(writer, "searchcode", "Main.java", "index indexer");
+        this.addDocument(writer, "indexing", "Other.java", "index 1234");
+
+        CompletionService completionService = new CompletionService();
+        DirectoryReader reader = DirectoryReader.open(writer, true);
+        assertThat(completionService.update(reader)).isTrue();
+
+        assertThat(completionService.complete("ind", 10)).containsExactly("index", "indexer", "indexing", "indexservice", "indexservice.java");
+        assertThat(completionService.complete("IND", 2)).containsExactly("index", "indexer");
+        assertThat(completionService.complete("sea", 10)).containsExactly("searchcode");
+        assertThat(completionService.complete("123", 10)).isEmpty();
+        assertThat(completionService.complete("missing", 10)).isEmpty();
+        assertThat(completionService.complete("", 10)).isEmpty();
+
+        // Nothing has changed so nothing needs to be read again
+        assertThat(completionService.update(reader)).isFalse();
+
+        reader.close();
+        writer.close();
+    }
+
+    public void testUpdateReadsNewSegmentsAndForgetsDeleted() throws IOException {
+        IndexWriter writer = this.getWriter();
+        this.addDocument(writer, "first", "First.java", "alpha");
+        writer.commit();
+
+        CompletionService completionService = new CompletionService();
+        DirectoryReader reader = DirectoryReader.open(writer, true);
+        completionService.update(reader);
+        assertThat(completionService.complete("alp", 10)).containsExactly("alpha");
+
+        this.addDocument(writer, "second", "Second.java", "alphabet alpha");
+        writer.commit();
+
+        DirectoryReader newReader = DirectoryReader.openIfChanged(reader);
+        reader.close();
+        assertThat(completionService.update(newReader)).isTrue();
+        assertThat(completionService.complete("alp", 10)).containsExactly("alpha", "alphabet");
+
+        writer.deleteAll();
+        writer.commit();
+
+        reader = DirectoryReader.openIfChanged(newReader);
+        newReader.close();
+        assertThat(completionService.update(reader)).isTrue();
+        assertThat(completionService.complete("alp", 10)).isEmpty();
+
+        reader.close();
+        writer.close();
+    }
+
+    public void testKeepsMostFrequentTermsPerSegment() throws IOException {
+        IndexWriter writer = this.getWriter();
+        this.addDocument(writer, "repo", "a.c", "common rare");
+        this.addDocument(writer, "repo", "b.c", "common");
+
+        CompletionService completionService = new CompletionService(1);
+        DirectoryReader reader = DirectoryReader.open(writer, true);
+        completionService.update(reader);
+
+        assertThat(completionService.complete("com", 10)).containsExactly("common");
+        assertThat(completionService.complete("rar", 10)).isEmpty();
+        assertThat(completionService.complete("rep", 10)).containsExactly("repo");
+
+        reader.close();
+        writer.close();
+    }
+}
@@ -0,0 +1,35 @@
+package com.searchcode.app.service;
+
+import com.searchcode.app.config.Values;
+import com.searchcode.app.util.CodeAnalyzer;
+import junit.framework.TestCase;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.TermQuery;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class FilterCachingPolicyTest extends TestCase {
+
+    private QueryParser parser = new QueryParser(Values.CONTENTS, new CodeAnalyzer());
+
+    public void testIsFilterForFacetFields() throws ParseException {
+        FilterCachingPolicy policy = new FilterCachingPolicy();
+
+        assertThat(policy.isFilter(this.parser.parse("reponame:one"))).isTrue();
+        assertThat(policy.isFilter(this.parser.parse("reponame:one || reponame:two"))).isTrue();
+        assertThat(policy.isFilter(this.parser.parse("languagename:Java || codeowner:someone"))).isTrue();
+        assertThat(policy.isFilter(this.parser.parse("dateyear:2016"))).isTrue();
+        assertThat(policy.isFilter(new ConstantScoreQuery(new TermQuery(new Term(Values.REPONAME, "one"))))).isTrue();
+    }
+
+    public void testIsFilterForOtherQueries() throws ParseException {
+        FilterCachingPolicy policy = new FilterCachingPolicy();
+
+        assertThat(policy.isFilter(this.parser.parse("test"))).isFalse();
+        assertThat(policy.isFilter(this.parser.parse("reponame:one || test"))).isFalse();
+        assertThat(policy.isFilter(this.parser.parse("test*"))).isFalse();
+    }
+}
@@ -0,0 +1,82 @@
+package com.searchcode.app.service;
+
+import com.searchcode.app.dto.CodeFacetRepo;
+import com.searchcode.app.dto.CodeResult;
+import com.searchcode.app.dto.SearchResult;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class SearchResultCacheTest extends TestCase {
+
+    private SearchResult getSearchResult(String code) {
+        CodeResult codeResult = new CodeResult(Arrays.asList(code), null);
+        codeResult.setRepoName("repoName");
+
+        return new SearchResult(1, 0, "query", new ArrayList<>(Collections.singletonList(codeResult)), new ArrayList<>(), new ArrayList<>(),
+                new ArrayList<>(Collections.singletonList(new CodeFacetRepo("repoName", 1))), new ArrayList<>());
+    }
+
+    public void testReturnsCopyForSameGeneration() {
+        SearchResultCache cache = new SearchResultCache(100000);
+        SearchResult searchResult = this.getSearchResult("code");
+
+        cache.put("key", 1, searchResult);
+
+        // Changing what was stored or what is returned must not change the cached result
+        searchResult.getRepoFacetResults().get(0).setSelected(true);
+        searchResult.getCodeResultList().get(0).setCode(null);
+
+        SearchResult cached = cache.get("key", 1);
+        assertThat(cached).isNotSameAs(searchResult);
+        assertThat(cached.getRepoFacetResults().get(0).getSelected()).isFalse();
+        assertThat(cached.getCodeResultList().get(0).getCode()).containsExactly("code");
+        assertThat(cached.getCodeResultList().get(0).getRepoName()).isEqualTo("repoName");
+
+        cached.getCodeResultList().get(0).setCode(null);
+        assertThat(cache.get("key", 1).getCodeResultList().get(0).getCode()).containsExactly("code");
+
+        assertThat(cache.getHitCount()).isEqualTo(2);
+        assertThat(cache.getLookupCount()).isEqualTo(2);
+    }
+
+    public void testNewGenerationEmptiesCache() {
+        SearchResultCache cache = new SearchResultCache(100000);
+        cache.put("key", 1, this.getSearchResult("code"));
+
+        assertThat(cache.get("key", 2)).isNull();
+        assertThat(cache.size()).isEqualTo(0);
+        assertThat(cache.getCacheBytes()).isEqualTo(0);
+
+        // Results found before the searchers changed are not kept
+        cache.put("key", 1, this.getSearchResult("code"));
+        assertThat(cache.get("key", 2)).isNull();
+    }
+
+    public void testEvictsLeastRecentlyUsedWhenFull() {
+        long bytes = SearchResultCache.getSearchResultBytes(this.getSearchResult("code"));
+        SearchResultCache cache = new SearchResultCache(bytes * 2);
+
+        cache.put("first", 1, this.getSearchResult("code"));
+        cache.put("second", 1, this.getSearchResult("code"));
+        cache.get("first", 1);
+        cache.put("third", 1, this.getSearchResult("code"));
+
+        assertThat(cache.get("first", 1)).isNotNull();
+        assertThat(cache.get("second", 1)).isNull();
+        assertThat(cache.get("third", 1)).isNotNull();
+        assertThat(cache.getCacheBytes()).isEqualTo(bytes * 2);
+    }
+
+    public void testDisabledWhenNoCapacity() {
+        SearchResultCache cache = new SearchResultCache(0);
+        cache.put("key", 1, this.getSearchResult("code"));
+
+        assertThat(cache.get("key", 1)).isNull();
+        assertThat(cache.getLookupCount()).isEqualTo(0);
+    }
+}
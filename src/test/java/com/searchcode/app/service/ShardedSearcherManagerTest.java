@@ -0,0 +1,192 @@
+package com.searchcode.app.service;
+
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.mockito.Mockito.when;
+
+public class ShardedSearcherManagerTest extends TestCase {
+
+    private IndexWriter getWriter() throws IOException {
+        return new IndexWriter(new RAMDirectory(), new IndexWriterConfig(new StandardAnalyzer()));
+    }
+
+    private CodeIndexer getCodeIndexer(IndexWriter... writers) throws IOException {
+        CodeIndexer codeIndexer = Mockito.mock(CodeIndexer.class);
+        this.setShards(codeIndexer, writers);
+        return codeIndexer;
+    }
+
+    /**
+     * Each writer is the open writer of the shard named after its position
+     */
+    private void setShards(CodeIndexer codeIndexer, IndexWriter... writers) {
+        List<String> shards = new ArrayList<>();
+
+        for (int i = 0; i < writers.length; i++) {
+            shards.add("shard" + i);
+            when(codeIndexer.getOpenIndexWriter("shard" + i)).thenReturn(writers[i]);
+        }
+
+        when(codeIndexer.getShards()).thenReturn(shards);
+    }
+
+    private Document getDocument(String name) {
+        Document document = new Document();
+        document.add(new StringField("name", name, Field.Store.YES));
+        return document;
+    }
+
+    public void testSearchesAcrossShards() throws IOException {
+        IndexWriter[] writers = new IndexWriter[] { this.getWriter(), this.getWriter() };
+        writers[0].addDocument(this.getDocument("first"));
+        writers[1].addDocument(this.getDocument("second"));
+
+        ShardedSearcherManager searcherManager = new ShardedSearcherManager(this.getCodeIndexer(writers));
+        IndexSearcher searcher = searcherManager.acquire();
+
+        try {
+            assertThat(searcher.getIndexReader().numDocs()).isEqualTo(2);
+            assertThat(searcher.search(new TermQuery(new Term("name", "second")), 10).totalHits).isEqualTo(1);
+        }
+        finally {
+            searcherManager.release(searcher);
+        }
+
+        searcherManager.close();
+        writers[0].close();
+        writers[1].close();
+    }
+
+    public void testRefreshSeesChangesToOneShard() throws IOException {
+        IndexWriter[] writers = new IndexWriter[] { this.getWriter(), this.getWriter() };
+        writers[0].addDocument(this.getDocument("first"));
+
+        ShardedSearcherManager searcherManager = new ShardedSearcherManager(this.getCodeIndexer(writers));
+        IndexSearcher before = searcherManager.acquire();
+
+        writers[1].addDocument(this.getDocument("second"));
+        writers[0].deleteDocuments(new Term("name", "first"));
+        assertThat(searcherManager.maybeRefresh()).isTrue();
+
+        IndexSearcher after = searcherManager.acquire();
+
+        try {
+            // Searches holding the old searcher are unaffected by the refresh
+            assertThat(before.search(new TermQuery(new Term("name", "first")), 10).totalHits).isEqualTo(1);
+            assertThat(after.search(new TermQuery(new Term("name", "first")), 10).totalHits).isEqualTo(0);
+            assertThat(after.search(new TermQuery(new Term("name", "second")), 10).totalHits).isEqualTo(1);
+        }
+        finally {
+            searcherManager.release(before);
+            searcherManager.release(after);
+        }
+
+        assertThat(before.getIndexReader().getRefCount()).isEqualTo(0);
+
+        searcherManager.close();
+        assertThat(after.getIndexReader().getRefCount()).isEqualTo(0);
+
+        writers[0].close();
+        writers[1].close();
+    }
+
+    public void testRefreshFollowsAddedAndDroppedShards() throws IOException {
+        IndexWriter first = this.getWriter();
+        IndexWriter second = this.getWriter();
+        first.addDocument(this.getDocument("first"));
+        second.addDocument(this.getDocument("second"));
+
+        CodeIndexer codeIndexer = this.getCodeIndexer(first);
+        ShardedSearcherManager searcherManager = new ShardedSearcherManager(codeIndexer);
+
+        this.setShards(codeIndexer, first, second);
+        assertThat(searcherManager.maybeRefresh()).isTrue();
+        assertThat(this.getNumDocs(searcherManager)).isEqualTo(2);
+
+        when(codeIndexer.getShards()).thenReturn(Collections.singletonList("shard1"));
+        assertThat(searcherManager.maybeRefresh()).isTrue();
+        assertThat(this.getNumDocs(searcherManager)).isEqualTo(1);
+
+        // Dropped shards can be closed once no searcher uses them
+        first.rollback();
+        assertThat(searcherManager.maybeRefresh()).isTrue();
+        assertThat(this.getNumDocs(searcherManager)).isEqualTo(1);
+
+        searcherManager.close();
+        second.close();
+    }
+
+    public void testRefreshReadsShardFromDirectoryOnceWriterClosed() throws IOException {
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()));
+        writer.addDocument(this.getDocument("first"));
+
+        CodeIndexer codeIndexer = this.getCodeIndexer(writer);
+        when(codeIndexer.getShardDirectory("shard0")).thenReturn(directory);
+        ShardedSearcherManager searcherManager = new ShardedSearcherManager(codeIndexer);
+        assertThat(this.getNumDocs(searcherManager)).isEqualTo(1);
+
+        // Closing commits what was written so it is still found once the shard is read from disk
+        writer.addDocument(this.getDocument("second"));
+        writer.close();
+        when(codeIndexer.getOpenIndexWriter("shard0")).thenReturn(null);
+        assertThat(searcherManager.maybeRefresh()).isTrue();
+        assertThat(this.getNumDocs(searcherManager)).isEqualTo(2);
+
+        // Nothing has changed on disk so the reader is kept
+        IndexSearcher before = searcherManager.acquire();
+        searcherManager.maybeRefresh();
+        IndexSearcher after = searcherManager.acquire();
+        assertThat(after).isSameAs(before);
+        searcherManager.release(before);
+        searcherManager.release(after);
+
+        // Opening a writer again switches back to reading through it
+        IndexWriter reopened = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()));
+        reopened.addDocument(this.getDocument("third"));
+        when(codeIndexer.getOpenIndexWriter("shard0")).thenReturn(reopened);
+        assertThat(searcherManager.maybeRefresh()).isTrue();
+        assertThat(this.getNumDocs(searcherManager)).isEqualTo(3);
+
+        searcherManager.close();
+        reopened.close();
+    }
+
+    public void testShardWithoutIndexIsSkipped() throws IOException {
+        CodeIndexer codeIndexer = Mockito.mock(CodeIndexer.class);
+        when(codeIndexer.getShards()).thenReturn(Collections.singletonList("shard0"));
+        when(codeIndexer.getShardDirectory("shard0")).thenReturn(new RAMDirectory());
+
+        ShardedSearcherManager searcherManager = new ShardedSearcherManager(codeIndexer);
+        assertThat(this.getNumDocs(searcherManager)).isEqualTo(0);
+        searcherManager.close();
+    }
+
+    private int getNumDocs(ShardedSearcherManager searcherManager) throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+
+        try {
+            return searcher.getIndexReader().numDocs();
+        }
+        finally {
+            searcherManager.release(searcher);
+        }
+    }
+}
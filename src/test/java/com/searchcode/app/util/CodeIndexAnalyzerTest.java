@@ -0,0 +1,55 @@
+package com.searchcode.app.util;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class CodeIndexAnalyzerTest extends TestCase {
+
+    public void testTokensMatchStringPipeline() throws IOException {
+        String contents = "public class RegexIndexer extends BaseIndexer {\n" +
+                "    private Map<String, List<Integer>> lookup = new HashMap<>(); // linux2.7.4 and python3.*\n" +
+                "    @Override\n" +
+                "    for(int i=0;i<100;i++){ $_GET['some-thing'] = \"_updatedDate\"; #include <stdio.h> }\n" +
+                "    {AB3FBE3A-410C-4FB2-84E0-B2D3434D1995} a.b.c x->y HTTPServerThing camelCaseWord\n" +
+                "}";
+
+        assertThat(new HashSet<>(new CodeIndexAnalyzer().getTokens(contents))).isEqualTo(this.getPipelineTokens(contents));
+    }
+
+    public void testFinestSplitKeepsPositions() throws IOException {
+        List<String> tokens = new CodeIndexAnalyzer().getTokens("foo.bar");
+
+        assertThat(tokens.get(0)).isEqualTo("foo");
+        assertThat(tokens.get(1)).isEqualTo("bar");
+        assertThat(tokens).contains("foo.bar", ".");
+    }
+
+    public void testEmpty() throws IOException {
+        assertThat(new CodeIndexAnalyzer().getTokens("")).isEmpty();
+        assertThat(new CodeIndexAnalyzer().getTokens("  \n\t ")).isEmpty();
+    }
+
+    private Set<String> getPipelineTokens(String contents) {
+        SearchcodeLib searchcodeLib = new SearchcodeLib();
+
+        String indexContents = searchcodeLib.splitKeywords(contents) + " " +
+                searchcodeLib.codeCleanPipeline(contents) + " " +
+                searchcodeLib.findInterestingKeywords(contents) + " " +
+                searchcodeLib.findInterestingCharacters(contents);
+
+        Set<String> tokens = new HashSet<>();
+        for (String token: indexContents.toLowerCase().split("\\s+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+
+        return tokens;
+    }
+}
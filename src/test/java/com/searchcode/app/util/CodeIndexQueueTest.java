@@ -0,0 +1,98 @@
+package com.searchcode.app.util;
+
+import com.searchcode.app.dto.CodeIndexDocument;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class CodeIndexQueueTest extends TestCase {
+
+    private CodeIndexDocument getDocument(String contents, int lines) {
+        return new CodeIndexDocument("/", "repoName", "fileName", "fileLocation", "fileLocationFilename", "md5hash", "languageName", lines, contents, "repoRemoteLocation", "codeOwner");
+    }
+
+    public void testCountersTrackContents() {
+        CodeIndexQueue queue = new CodeIndexQueue(100);
+
+        assertThat(queue.offer(this.getDocument("aaaaa", 2))).isTrue();
+        assertThat(queue.offer(this.getDocument("bbbbb", 3))).isTrue();
+
+        assertThat(queue.size()).isEqualTo(2);
+        assertThat(queue.getQueueLines()).isEqualTo(5);
+        assertThat(queue.getQueueBytes()).isEqualTo(20);
+
+        queue.poll();
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(queue.getQueueLines()).isEqualTo(3);
+        assertThat(queue.getQueueBytes()).isEqualTo(10);
+
+        queue.poll();
+        assertThat(queue.poll()).isNull();
+        assertThat(queue.getQueueBytes()).isEqualTo(0);
+    }
+
+    public void testOfferRejectsWhenFull() throws InterruptedException {
+        CodeIndexQueue queue = new CodeIndexQueue(20);
+
+        assertThat(queue.offer(this.getDocument("aaaaaaaaaa", 1))).isTrue();
+        assertThat(queue.offer(this.getDocument("b", 1))).isFalse();
+        assertThat(queue.offer(this.getDocument("b", 1), 10, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(queue.size()).isEqualTo(1);
+    }
+
+    public void testOversizedDocumentAcceptedWhenEmpty() {
+        CodeIndexQueue queue = new CodeIndexQueue(1);
+
+        assertThat(queue.offer(this.getDocument("larger than the capacity", 1))).isTrue();
+        assertThat(queue.offer(this.getDocument("a", 1))).isFalse();
+    }
+
+    public void testNullContents() {
+        CodeIndexQueue queue = new CodeIndexQueue(1);
+
+        assertThat(queue.offer(this.getDocument(null, 0))).isTrue();
+        assertThat(queue.getQueueBytes()).isEqualTo(0);
+    }
+
+    public void testPutBlocksUntilDrained() throws InterruptedException {
+        CodeIndexQueue queue = new CodeIndexQueue(20);
+        queue.put(this.getDocument("aaaaaaaaaa", 1));
+
+        Thread producer = new Thread(() -> {
+            try {
+                queue.put(this.getDocument("bbbbbbbbbb", 1));
+            }
+            catch (InterruptedException ex) {}
+        });
+        producer.start();
+        producer.join(100);
+
+        assertThat(producer.isAlive()).isTrue();
+        assertThat(queue.size()).isEqualTo(1);
+
+        List<CodeIndexDocument> batch = new ArrayList<>();
+        assertThat(queue.drainTo(batch, 10)).isEqualTo(1);
+
+        producer.join(1000);
+        assertThat(producer.isAlive()).isFalse();
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(queue.take().getContents()).isEqualTo("bbbbbbbbbb");
+    }
+
+    public void testRemoveUpdatesCounters() {
+        CodeIndexQueue queue = new CodeIndexQueue(100);
+        CodeIndexDocument document = this.getDocument("aaaaa", 2);
+
+        queue.add(document);
+        queue.add(this.getDocument("bbbbb", 3));
+
+        assertThat(queue.remove(document)).isTrue();
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(queue.getQueueLines()).isEqualTo(3);
+        assertThat(queue.getQueueBytes()).isEqualTo(10);
+    }
+}
@@ -0,0 +1,29 @@
+package com.searchcode.app.util;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class CodeSymbolAnalyzerTest extends TestCase {
+
+    public void testSplitsPathIntoDirectoriesAndIdentifiers() throws IOException {
+        List<String> tokens = new CodeSymbolAnalyzer().getTokens("src/main_code/RegexIndexer.java");
+
+        assertThat(tokens.get(0)).isEqualTo("src/main_code/regexindexer.java");
+        assertThat(tokens).contains("src", "main_code", "main", "code", "regexindexer.java", "regexindexer", "regex", "indexer", "java");
+        assertThat(tokens).doesNotHaveDuplicates();
+    }
+
+    public void testSplitsCamelCaseKeepingCapitalsTogether() throws IOException {
+        assertThat(new CodeSymbolAnalyzer().getTokens("HTTPServerThing")).containsExactly("httpserverthing", "http", "server", "thing");
+        assertThat(new CodeSymbolAnalyzer().getTokens("snake_case-name")).containsExactly("snake_case-name", "snake", "case", "name");
+    }
+
+    public void testEmpty() throws IOException {
+        assertThat(new CodeSymbolAnalyzer().getTokens("")).isEmpty();
+        assertThat(new CodeSymbolAnalyzer().getTokens("  /  ")).containsExactly("/");
+    }
+}
@@ -0,0 +1,40 @@
+package com.searchcode.app.util;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class CodeTrigramAnalyzerTest extends TestCase {
+
+    public void testGetTrigrams() throws IOException {
+        CodeTrigramAnalyzer analyzer = new CodeTrigramAnalyzer();
+
+        assertThat(analyzer.getTrigrams("Writer(")).containsExactly("wri", "rit", "ite", "ter", "er(");
+        assertThat(analyzer.getTrigrams("a->b")).containsExactly("a->", "->b");
+        assertThat(analyzer.getTrigrams("aaaa")).containsExactly("aaa");
+        assertThat(analyzer.getTrigrams("ab")).isEmpty();
+    }
+
+    public void testGetRegexTrigrams() throws IOException {
+        CodeTrigramAnalyzer analyzer = new CodeTrigramAnalyzer();
+
+        assertThat(analyzer.getRegexTrigrams("Writer\\(")).containsExactly("wri", "rit", "ite", "ter", "er(");
+        assertThat(analyzer.getRegexTrigrams("void \\w+Index(er)?s*")).containsExactly("voi", "oid", "id ", "ind", "nde", "dex");
+        assertThat(analyzer.getRegexTrigrams("abcd?")).containsExactly("abc");
+        assertThat(analyzer.getRegexTrigrams("ab[cde]fg.hij")).containsExactly("hij");
+        assertThat(analyzer.getRegexTrigrams("\\x41BC\\p{Lu}DEF")).containsExactly("def");
+        assertThat(analyzer.getRegexTrigrams("\\Qa.b*c\\E")).containsExactly("a.b", ".b*", "b*c");
+        assertThat(analyzer.getRegexTrigrams("(?i)select")).contains("sel", "ect");
+    }
+
+    public void testGetRegexTrigramsRequiresNothingWhenUnsure() throws IOException {
+        CodeTrigramAnalyzer analyzer = new CodeTrigramAnalyzer();
+
+        assertThat(analyzer.getRegexTrigrams("foo|bar")).isEmpty();
+        assertThat(analyzer.getRegexTrigrams("(?x)a b c")).isEmpty();
+        assertThat(analyzer.getRegexTrigrams(".*")).isEmpty();
+        assertThat(analyzer.getRegexTrigrams("(abc|def)")).isEmpty();
+    }
+}
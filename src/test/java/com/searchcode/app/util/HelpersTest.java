@@ -1,11 +1,15 @@
 package com.searchcode.app.util;
 
+import com.searchcode.app.dto.FileIngestResult;
 import com.searchcode.app.service.Singleton;
 import junit.framework.TestCase;
 import org.mockito.Mockito;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +35,49 @@ public class HelpersTest extends TestCase {
         assertEquals(5, result.size());
     }
 
+    public void testIngestFileMatchesSeparateReads() throws IOException {
+        FileIngestResult result = this.helpers.ingestFile("./README.md", 10);
+
+        assertThat(result.getCodeLines()).isEqualTo(this.helpers.readFileLinesGuessEncoding("./README.md", 10));
+        assertThat(result.getMd5Hash()).isEqualTo(this.helpers.calculateMd5("./README.md"));
+        assertThat(result.getCharset()).isEqualTo(this.helpers.guessCharset(new File("./README.md")));
+
+        // Second read reuses the buffer from the first so should be unaffected by it
+        result = this.helpers.ingestFile("./LICENSE.txt", 5);
+        assertThat(result.getCodeLines()).isEqualTo(this.helpers.readFileLinesGuessEncoding("./LICENSE.txt", 5));
+        assertThat(result.getMd5Hash()).isEqualTo(this.helpers.calculateMd5("./LICENSE.txt"));
+    }
+
+    public void testIngestFileLargerThanCharsetGuess() throws IOException {
+        File file = File.createTempFile("ingest", ".txt");
+        file.deleteOnExit();
+
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            contents.append("line number ").append(i).append(" caf\u00e9\n");
+        }
+        Files.write(file.toPath(), contents.toString().getBytes(StandardCharsets.UTF_8));
+
+        // Stops part way through the file but still hashes all of it
+        FileIngestResult result = this.helpers.ingestFile(file.getPath(), 10);
+        assertThat(result.getCodeLines()).isEqualTo(this.helpers.readFileLinesGuessEncoding(file.getPath(), 10));
+        assertThat(result.getMd5Hash()).isEqualTo(this.helpers.calculateMd5(file.getPath()));
+
+        // Lines past the start of the file used to guess the charset are decoded the same way
+        result = this.helpers.ingestFile(file.getPath(), 30000);
+        assertThat(result.getCodeLines()).hasSize(20000);
+        assertThat(result.getCodeLines()).isEqualTo(this.helpers.readFileLinesGuessEncoding(file.getPath(), 30000));
+        assertThat(result.getMd5Hash()).isEqualTo(this.helpers.calculateMd5(file.getPath()));
+    }
+
+    public void testIngestFileMissing() {
+        try {
+            this.helpers.ingestFile("filedoesnotexist", 10);
+            fail();
+        }
+        catch (IOException ex) {}
+    }
+
     public void testIsNullEmptyOrWhitespace() {
         assertTrue(this.helpers.isNullEmptyOrWhitespace(null));
         assertTrue(this.helpers.isNullEmptyOrWhitespace(""));
@@ -428,6 +428,13 @@ public class SearchcodeLibTest extends TestCase {
         assertTrue(scl.languageCostIgnore("Configuration"));
     }
 
+    public void testGetFilters() {
+        SearchcodeLib scl = new SearchcodeLib();
+
+        assertThat(scl.getFilters()).isEmpty();
+        assertThat(scl.getFilters("", "reponame:one || reponame:two", null, "languagename:Java")).containsExactly("reponame:one || reponame:two", "languagename:Java");
+    }
+
     public void testFormatQueryStringAnd() {
         SearchcodeLib scl = new SearchcodeLib();
 
@@ -462,19 +469,28 @@ public class SearchcodeLibTest extends TestCase {
     }
 
     public void testGenerateAltQueries() {
-        SearchcodeLib scl = new SearchcodeLib();
+        // Other tests add words to the shared spelling corrector which could be closer than the ones below
+        ISpellingCorrector spellingCorrector = Singleton.getSpellingCorrector();
+        Singleton.setSpellingCorrector(new SearchcodeSpellingCorrector());
+
+        try {
+            SearchcodeLib scl = new SearchcodeLib();
 
-        assertEquals(0, scl.generateAltQueries("supercalifragilisticexpialidocious").size());
-        assertEquals("something", scl.generateAltQueries("something*").get(0));
-        assertEquals("a b", scl.generateAltQueries("a* b*").get(0));
+            assertEquals(0, scl.generateAltQueries("supercalifragilisticexpialidocious").size());
+            assertEquals("something", scl.generateAltQueries("something*").get(0));
+            assertEquals("a b", scl.generateAltQueries("a* b*").get(0));
 
-        Singleton.getSpellingCorrector().putWord("deh");
-        assertEquals("dep", scl.generateAltQueries("dep*").get(0));
-        assertEquals("deh", scl.generateAltQueries("den*").get(1));
+            Singleton.getSpellingCorrector().putWord("deh");
+            assertEquals("dep", scl.generateAltQueries("dep*").get(0));
+            assertEquals("deh", scl.generateAltQueries("den*").get(1));
 
-        Singleton.getSpellingCorrector().putWord("ann");
-        assertEquals("stuff OR other", scl.generateAltQueries("stuff AND other").get(1));
-        assertEquals("stuff other", scl.generateAltQueries("stuff NOT other").get(0));
+            Singleton.getSpellingCorrector().putWord("ann");
+            assertEquals("stuff OR other", scl.generateAltQueries("stuff AND other").get(1));
+            assertEquals("stuff other", scl.generateAltQueries("stuff NOT other").get(0));
+        }
+        finally {
+            Singleton.setSpellingCorrector(spellingCorrector);
+        }
     }
 
     public void testGenerateAltQueriesNoDupes() {
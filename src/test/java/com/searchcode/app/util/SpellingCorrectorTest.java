@@ -1,10 +1,14 @@
 package com.searchcode.app.util;
 
+import com.searchcode.app.config.Values;
 import com.searchcode.app.service.Singleton;
 import com.searchcode.app.service.StatsService;
 import junit.framework.TestCase;
 import org.apache.commons.lang3.RandomStringUtils;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Random;
 
 public class SpellingCorrectorTest extends TestCase {
@@ -101,6 +105,73 @@ public class SpellingCorrectorTest extends TestCase {
         assertEquals("test", test);
     }
 
+    public void testSpellingCorrectorTransposedLetters() {
+        ISpellingCorrector sc = getSpellingCorrector();
+        sc.putWord("indexer");
+
+        assertEquals("indexer", sc.correct("idnexer"));
+        assertEquals("indexer", sc.correct("INDXEER"));
+    }
+
+    public void testSpellingCorrectorLongWordChangedAfterPrefix() {
+        ISpellingCorrector sc = getSpellingCorrector();
+        sc.putWord("searchcodespellingcorrector");
+
+        assertEquals("searchcodespellingcorrector", sc.correct("searchcodespelingcorector"));
+        assertEquals("searchcodespellingcorrector", sc.correct("searchcodespellingcorrectorz"));
+        assertEquals("searchcodespellingcorrector", sc.correct("saerchcodespellingcorrector"));
+        assertEquals("searchcodespellingcorrector", sc.correct("sarchcodespellingcorrectorr"));
+        assertEquals("sarchcodespelingcorrectorr", sc.correct("sarchcodespelingcorrectorr"));
+        assertEquals("earchcodespellingcorrector", sc.correct("earchcodespellingcorrector"));
+    }
+
+    public void testSpellingCorrectorTooManyEdits() {
+        ISpellingCorrector sc = getSpellingCorrector();
+        sc.putWord("default");
+
+        assertEquals("dfalzt", sc.correct("dfalzt"));
+    }
+
+    public void testSpellingCorrectorForgetsEvictedWords() {
+        ISpellingCorrector sc = getSpellingCorrector();
+        sc.putWord("default");
+
+        for (int i = 0; i < Integer.parseInt(Values.DEFAULTSPELLINGCORRECTORSIZE); i++) {
+            sc.putWord("word" + i);
+        }
+
+        assertFalse(sc.containsWord("default"));
+        assertEquals("defaulz", sc.correct("defaulz"));
+    }
+
+    public void testSpellingCorrectorSaveAndLoad() throws IOException {
+        Path location = Files.createTempDirectory("spelling").resolve("words").resolve("dictionary.txt");
+
+        SearchcodeSpellingCorrector sc = new SearchcodeSpellingCorrector(location);
+        sc.putWord("testy");
+        sc.putWord("testy");
+        sc.putWord("tests");
+        assertTrue(sc.save());
+
+        SearchcodeSpellingCorrector loaded = new SearchcodeSpellingCorrector(location);
+        assertTrue(loaded.load());
+        assertEquals(2, loaded.getWordCount());
+        assertEquals("testy", loaded.correct("testz"));
+
+        assertFalse(new SearchcodeSpellingCorrector().save());
+        assertFalse(new SearchcodeSpellingCorrector(location.resolveSibling("missing.txt")).load());
+    }
+
+    public void testGetEditDistance() {
+        assertEquals(0, SearchcodeSpellingCorrector.getEditDistance("test", "test", 2));
+        assertEquals(1, SearchcodeSpellingCorrector.getEditDistance("test", "tests", 2));
+        assertEquals(1, SearchcodeSpellingCorrector.getEditDistance("test", "tset", 2));
+        assertEquals(2, SearchcodeSpellingCorrector.getEditDistance("test", "tt", 2));
+        assertEquals(2, SearchcodeSpellingCorrector.getEditDistance("", "ab", 2));
+        assertEquals(3, SearchcodeSpellingCorrector.getEditDistance("test", "abcd", 2));
+        assertEquals(3, SearchcodeSpellingCorrector.getEditDistance("a", "abcd", 2));
+    }
+
     /**
      * If there is a performance issue this takes forever to run
      */